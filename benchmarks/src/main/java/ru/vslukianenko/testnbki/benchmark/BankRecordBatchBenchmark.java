@@ -0,0 +1,154 @@
+package ru.vslukianenko.testnbki.benchmark;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+import org.springframework.context.ConfigurableApplicationContext;
+import org.springframework.jdbc.core.JdbcTemplate;
+import ru.vslukianenko.testnbki.dto.BatchReport;
+import ru.vslukianenko.testnbki.model.BankRecord;
+import ru.vslukianenko.testnbki.service.BankRecordParallelBatchExecutor;
+import ru.vslukianenko.testnbki.service.BankRecordService;
+
+import java.util.List;
+import java.util.Objects;
+import java.util.UUID;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Бенчмарки массовых операций {@link BankRecordService} для разных размеров пакета.
+ *
+ * <p>Каждый вызов обрабатывает {@code batchSize} записей. Данные для вызова готовятся и удаляются в
+ * {@link Level#Invocation}-фикстурах отдельно для каждого потока: новые записи для создания
+ * ({@link NewBatch}) и сохраненные записи для обновления и удаления ({@link ExistingBatch}),
+ * поэтому измеряется только сама массовая операция на таблице постоянного размера. {@code bulkInsertBankRecords} (JDBC-пакеты)
+ * сравнивается с {@code batchCreateBankRecords} (цикл {@code persist}/{@code flush}/{@code clear}).</p>
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 5)
+@Measurement(iterations = 5, time = 5)
+@Fork(1)
+public class BankRecordBatchBenchmark {
+
+    @Param({"100", "1000", "10000"})
+    private int batchSize;
+
+    private ConfigurableApplicationContext context;
+
+    private BankRecordService service;
+
+    private BankRecordParallelBatchExecutor parallelBatchExecutor;
+
+    private JdbcTemplate jdbcTemplate;
+
+    @Setup(Level.Trial)
+    public void setUp() {
+        context = BenchmarkApplication.start("batch");
+        service = context.getBean(BankRecordService.class);
+        parallelBatchExecutor = context.getBean(BankRecordParallelBatchExecutor.class);
+        jdbcTemplate = context.getBean(JdbcTemplate.class);
+    }
+
+    @TearDown(Level.Iteration)
+    public void cleanUp() {
+        jdbcTemplate.update("DELETE FROM bank_record");
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() {
+        context.close();
+    }
+
+    /**
+     * Новые записи одного вызова для операций создания. Созданные записи удаляются после вызова,
+     * поэтому размер таблицы не растет в течение итерации.
+     */
+    @State(Scope.Thread)
+    public static class NewBatch {
+
+        private List<BankRecord> records;
+
+        @Setup(Level.Invocation)
+        public void prepare(BankRecordBatchBenchmark benchmark) {
+            records = BenchmarkApplication.newRecords(benchmark.batchSize, "batch ");
+        }
+
+        @TearDown(Level.Invocation)
+        public void cleanUp(BankRecordBatchBenchmark benchmark) {
+            benchmark.service.batchDeleteBankRecords(
+                    records.stream().map(BankRecord::getId).filter(Objects::nonNull).toList());
+        }
+    }
+
+    /**
+     * Сохраненные перед вызовом записи для операций обновления и удаления. Записи удаляются после вызова,
+     * поэтому размер таблицы не растет в течение итерации.
+     */
+    @State(Scope.Thread)
+    public static class ExistingBatch {
+
+        private List<BankRecord> records;
+
+        private List<UUID> ids;
+
+        @Setup(Level.Invocation)
+        public void prepare(BankRecordBatchBenchmark benchmark) {
+            List<BankRecord> seeded = BenchmarkApplication.newRecords(benchmark.batchSize, "existing ");
+            benchmark.service.bulkInsertBankRecords(seeded);
+            ids = seeded.stream().map(BankRecord::getId).toList();
+            records = ids.stream().map(id -> {
+                BankRecord record = new BankRecord();
+                record.setId(id);
+                record.setData("updated " + id);
+                return record;
+            }).toList();
+        }
+
+        @TearDown(Level.Invocation)
+        public void cleanUp(BankRecordBatchBenchmark benchmark) {
+            benchmark.service.batchDeleteBankRecords(ids);
+        }
+    }
+
+    @Benchmark
+    public void batchCreateBankRecords(NewBatch batch) {
+        service.batchCreateBankRecords(batch.records);
+    }
+
+    @Benchmark
+    public void bulkInsertBankRecords(NewBatch batch) {
+        service.bulkInsertBankRecords(batch.records);
+    }
+
+    @Benchmark
+    public BatchReport parallelCreateBankRecords(NewBatch batch) {
+        return parallelBatchExecutor.createAll(batch.records);
+    }
+
+    @Benchmark
+    public void batchUpdateBankRecords(ExistingBatch batch) {
+        service.batchUpdateBankRecords(batch.records);
+    }
+
+    @Benchmark
+    public void batchUpsertBankRecords(ExistingBatch batch) {
+        service.batchUpsertBankRecords(batch.records);
+    }
+
+    @Benchmark
+    public void batchDeleteBankRecords(ExistingBatch batch) {
+        service.batchDeleteBankRecords(batch.ids);
+    }
+}
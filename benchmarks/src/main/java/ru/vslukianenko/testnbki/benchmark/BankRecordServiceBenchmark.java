@@ -0,0 +1,105 @@
+package ru.vslukianenko.testnbki.benchmark;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+import org.springframework.context.ConfigurableApplicationContext;
+import org.springframework.jdbc.core.JdbcTemplate;
+import ru.vslukianenko.testnbki.model.BankRecord;
+import ru.vslukianenko.testnbki.repo.BankRecordRepository;
+import ru.vslukianenko.testnbki.service.BankRecordService;
+
+import java.util.Optional;
+import java.util.UUID;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Бенчмарки одиночных операций {@link BankRecordService} и {@link BankRecordRepository}.
+ *
+ * <p>Перед измерениями в базу загружается {@code records} записей. Чтение выполняется по случайным
+ * идентификаторам, как в {@code PerformanceTest.testReadRecords}, с включенным и выключенным кэшем.
+ * Режим {@link Mode#SampleTime} дает распределение задержек (p50, p99, p99.9) в результатах.</p>
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode({Mode.Throughput, Mode.SampleTime})
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 5)
+@Measurement(iterations = 5, time = 5)
+@Fork(1)
+public class BankRecordServiceBenchmark {
+
+    @Param({"100000"})
+    private int records;
+
+    @Param({"true", "false"})
+    private boolean cacheEnabled;
+
+    private ConfigurableApplicationContext context;
+
+    private BankRecordService service;
+
+    private BankRecordRepository repository;
+
+    private JdbcTemplate jdbcTemplate;
+
+    private UUID[] ids;
+
+    @Setup(Level.Trial)
+    public void setUp() {
+        context = BenchmarkApplication.start("service", "bank-records.cache.enabled=" + cacheEnabled);
+        service = context.getBean(BankRecordService.class);
+        repository = context.getBean(BankRecordRepository.class);
+        jdbcTemplate = context.getBean(JdbcTemplate.class);
+        service.batchCreateBankRecords(BenchmarkApplication.newRecords(records, "record "));
+        ids = repository.findAll().stream().map(BankRecord::getId).toArray(UUID[]::new);
+    }
+
+    @TearDown(Level.Iteration)
+    public void removeCreatedRecords() {
+        jdbcTemplate.update("DELETE FROM bank_record WHERE data LIKE 'created %'");
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() {
+        context.close();
+    }
+
+    @Benchmark
+    public BankRecord createBankRecord() {
+        BankRecord record = new BankRecord();
+        record.setData("created " + ThreadLocalRandom.current().nextInt());
+        return service.createBankRecord(record);
+    }
+
+    @Benchmark
+    public Optional<BankRecord> getBankRecordById() {
+        return service.getBankRecordById(randomId());
+    }
+
+    @Benchmark
+    public Optional<BankRecord> repositoryFindById() {
+        return repository.findById(randomId());
+    }
+
+    @Benchmark
+    public Optional<BankRecord> updateBankRecord() {
+        BankRecord details = new BankRecord();
+        details.setData("updated " + ThreadLocalRandom.current().nextInt());
+        return service.updateBankRecord(randomId(), details);
+    }
+
+    private UUID randomId() {
+        return ids[ThreadLocalRandom.current().nextInt(ids.length)];
+    }
+}
@@ -0,0 +1,80 @@
+package ru.vslukianenko.testnbki.benchmark;
+
+import org.springframework.boot.WebApplicationType;
+import org.springframework.boot.builder.SpringApplicationBuilder;
+import org.springframework.context.ConfigurableApplicationContext;
+import ru.vslukianenko.testnbki.TestNbkiApplication;
+import ru.vslukianenko.testnbki.model.BankRecord;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.stream.Stream;
+
+/**
+ * Запуск приложения для бенчмарков.
+ *
+ * <p>Поднимает контекст {@link TestNbkiApplication} без веб-сервера (или со встроенным Tomcat,
+ * см. {@link #startServer(String, String...)}) поверх отдельной встроенной базы H2 в памяти. Каждый бенчмарк получает собственную базу, имя которой передается в {@code database}.
+ * Свойства передаются аргументами командной строки, чтобы они переопределяли {@code application.yaml}.</p>
+ */
+public final class BenchmarkApplication {
+
+    private BenchmarkApplication() {
+    }
+
+    /**
+     * Запускает контекст приложения.
+     *
+     * @param database   имя базы H2 в памяти
+     * @param properties дополнительные свойства в формате {@code key=value}
+     * @return запущенный контекст приложения
+     */
+    public static ConfigurableApplicationContext start(String database, String... properties) {
+        return start(WebApplicationType.NONE, database, properties);
+    }
+
+    /**
+     * Запускает контекст приложения со встроенным Tomcat на свободном порту. Порт доступен
+     * в свойстве окружения {@code local.server.port}.
+     *
+     * @param database   имя базы H2 в памяти
+     * @param properties дополнительные свойства в формате {@code key=value}
+     * @return запущенный контекст приложения
+     */
+    public static ConfigurableApplicationContext startServer(String database, String... properties) {
+        return start(WebApplicationType.SERVLET, database,
+                Stream.concat(Stream.of("server.port=0"), Stream.of(properties)).toArray(String[]::new));
+    }
+
+    private static ConfigurableApplicationContext start(WebApplicationType webApplicationType, String database,
+                                                        String... properties) {
+        String[] defaults = {
+                "spring.datasource.url=jdbc:h2:mem:" + database + ";DB_CLOSE_DELAY=-1",
+                "spring.jpa.open-in-view=false",
+                "spring.h2.console.enabled=false",
+                "logging.level.root=WARN"
+        };
+        return new SpringApplicationBuilder(TestNbkiApplication.class)
+                .web(webApplicationType)
+                .run(Stream.concat(Stream.of(defaults), Stream.of(properties))
+                        .map(property -> "--" + property)
+                        .toArray(String[]::new));
+    }
+
+    /**
+     * Создает список новых записей без идентификаторов.
+     *
+     * @param count  количество записей
+     * @param prefix префикс данных записи
+     * @return список записей
+     */
+    public static List<BankRecord> newRecords(int count, String prefix) {
+        List<BankRecord> records = new ArrayList<>(count);
+        for (int i = 0; i < count; i++) {
+            BankRecord record = new BankRecord();
+            record.setData(prefix + i);
+            records.add(record);
+        }
+        return records;
+    }
+}
@@ -0,0 +1,60 @@
+package ru.vslukianenko.testnbki.benchmark;
+
+import org.openjdk.jmh.results.RunResult;
+import org.openjdk.jmh.results.format.ResultFormatFactory;
+import org.openjdk.jmh.results.format.ResultFormatType;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.CommandLineOptionException;
+import org.openjdk.jmh.runner.options.ChainedOptionsBuilder;
+import org.openjdk.jmh.runner.options.CommandLineOptions;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * Точка входа модуля бенчмарков.
+ *
+ * <p>Принимает стандартные аргументы командной строки JMH и последовательно запускает выбранные
+ * бенчмарки для каждого количества потоков из системного свойства {@code bench.threads}
+ * (по умолчанию {@code 1,4,16}). Результаты всех запусков сохраняются в один файл
+ * (по умолчанию {@code jmh-result.json}, см. свойства {@code bench.result} и {@code bench.format}),
+ * который удобно сравнивать между релизами.</p>
+ *
+ * <p>На Java до 21 режим {@code virtual} бенчмарка {@link ServingModeBenchmark} не запускается,
+ * если параметр {@code serving} не задан явно.</p>
+ *
+ * <p>Пример запуска:</p>
+ * <pre>
+ *     java -Dbench.threads=1,8 -Dbench.result=results.json -jar benchmarks/target/benchmarks.jar BankRecordServiceBenchmark
+ * </pre>
+ */
+public final class BenchmarkRunner {
+
+    private BenchmarkRunner() {
+    }
+
+    public static void main(String[] args) throws RunnerException, CommandLineOptionException {
+        CommandLineOptions commandLineOptions = new CommandLineOptions(args);
+        int[] threadCounts = Arrays.stream(System.getProperty("bench.threads", "1,4,16").split(","))
+                .map(String::trim)
+                .mapToInt(Integer::parseInt)
+                .toArray();
+        String resultFile = System.getProperty("bench.result", "jmh-result.json");
+        ResultFormatType format = ResultFormatType.valueOf(System.getProperty("bench.format", "JSON").toUpperCase());
+
+        ChainedOptionsBuilder options = new OptionsBuilder().parent(commandLineOptions);
+        if (Runtime.version().feature() < ServingModeBenchmark.VIRTUAL_THREADS_JAVA_VERSION
+                && !commandLineOptions.getParameter("serving").hasValue()) {
+            options.param("serving", "platform");
+        }
+
+        List<RunResult> results = new ArrayList<>();
+        for (int threads : threadCounts) {
+            results.addAll(new Runner(options.threads(threads).build()).run());
+        }
+        ResultFormatFactory.getInstance(format, resultFile).writeOut(results);
+    }
+}
@@ -0,0 +1,122 @@
+package ru.vslukianenko.testnbki.benchmark;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+import org.springframework.context.ConfigurableApplicationContext;
+import org.springframework.util.FileSystemUtils;
+import ru.vslukianenko.testnbki.checkpoint.BankRecordCheckpointService;
+import ru.vslukianenko.testnbki.service.BankRecordService;
+
+import java.io.IOException;
+import java.lang.management.ManagementFactory;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.sql.Connection;
+import java.sql.DriverManager;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Время готовности приложения с {@code records} записями: запуск с восстановлением из контрольной точки
+ * ({@code restoreFromCheckpoint}) и запуск с пустой базой данных и повторным созданием записей через
+ * {@link BankRecordService#batchCreateBankRecords} пакетами по 1000 ({@code rebuildWithBatchCreate}).
+ *
+ * <p>Каждая итерация - один запуск контекста приложения до готовности ({@code SingleShotTime}).
+ * Полный снимок записывается один раз перед измерениями; после каждой итерации база данных H2 в памяти
+ * удаляется. Полнотекстовый индекс выключен: его триггеры замедляют любую массовую вставку одинаково
+ * и не относятся к способу загрузки. Занятая после загрузки куча выводится в лог строкой {@code heap used};
+ * база H2 в памяти находится в куче, поэтому для 10 млн записей нужен соответствующий {@code -Xmx}
+ * (параметр JMH {@code -jvmArgsAppend}).</p>
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.SingleShotTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 1)
+@Measurement(iterations = 3)
+@Fork(1)
+public class CheckpointRestoreBenchmark {
+
+    private static final int CHUNK_SIZE = 1000;
+
+    private static final String DATABASE = "checkpoint-restore";
+
+    @Param({"1000000", "10000000"})
+    private int records;
+
+    private Path directory;
+
+    private ConfigurableApplicationContext context;
+
+    @Setup(Level.Trial)
+    public void writeCheckpoint() throws IOException, SQLException {
+        directory = Files.createTempDirectory("bank-records-checkpoint");
+        try (ConfigurableApplicationContext source = start("checkpoint-source", true)) {
+            BankRecordService service = source.getBean(BankRecordService.class);
+            for (int created = 0; created < records; created += CHUNK_SIZE * 10) {
+                service.bulkInsertBankRecords(BenchmarkApplication.newRecords(
+                        Math.min(CHUNK_SIZE * 10, records - created), "record " + created + "-"));
+            }
+            source.getBean(BankRecordCheckpointService.class).checkpoint();
+        }
+        shutdownDatabase("checkpoint-source");
+    }
+
+    @TearDown(Level.Iteration)
+    public void closeApplication() throws SQLException {
+        System.gc();
+        System.out.printf("%nheap used: records=%d heapMb=%d%n", records,
+                ManagementFactory.getMemoryMXBean().getHeapMemoryUsage().getUsed() / (1024 * 1024));
+        context.close();
+        shutdownDatabase(DATABASE);
+    }
+
+    @TearDown(Level.Trial)
+    public void deleteCheckpoint() {
+        FileSystemUtils.deleteRecursively(directory.toFile());
+    }
+
+    @Benchmark
+    public long restoreFromCheckpoint() {
+        context = start(DATABASE, true);
+        return context.getBean(BankRecordService.class).countBankRecords();
+    }
+
+    @Benchmark
+    public long rebuildWithBatchCreate() {
+        context = start(DATABASE, false);
+        BankRecordService service = context.getBean(BankRecordService.class);
+        for (int created = 0; created < records; created += CHUNK_SIZE) {
+            service.batchCreateBankRecords(BenchmarkApplication.newRecords(
+                    Math.min(CHUNK_SIZE, records - created), "record " + created + "-"));
+        }
+        return service.countBankRecords();
+    }
+
+    private ConfigurableApplicationContext start(String database, boolean checkpoint) {
+        return BenchmarkApplication.start(database,
+                "bank-records.search.full-text-enabled=false",
+                "bank-records.checkpoint.enabled=" + checkpoint,
+                "bank-records.checkpoint.directory=" + directory,
+                "bank-records.checkpoint.interval=1h",
+                "logging.level.ru.vslukianenko.testnbki.checkpoint=INFO");
+    }
+
+    private static void shutdownDatabase(String database) throws SQLException {
+        try (Connection connection = DriverManager.getConnection("jdbc:h2:mem:" + database, "sa", "password");
+             Statement statement = connection.createStatement()) {
+            statement.execute("SHUTDOWN");
+        }
+    }
+}
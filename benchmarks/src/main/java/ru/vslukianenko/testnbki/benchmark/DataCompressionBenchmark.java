@@ -0,0 +1,137 @@
+package ru.vslukianenko.testnbki.benchmark;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+import org.springframework.context.ConfigurableApplicationContext;
+import ru.vslukianenko.testnbki.model.BankRecord;
+import ru.vslukianenko.testnbki.service.BankRecordService;
+
+import java.lang.management.ManagementFactory;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Optional;
+import java.util.Queue;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Сжатие данных записей банка выключено ({@code off}) и включено ({@code on}) на записях
+ * с повторяющимся текстом размером около {@code dataSize} символов.
+ *
+ * <p>Перед измерениями загружается {@code records} записей; кэш чтения и поиск (вместе с полнотекстовым
+ * индексом) выключены в обоих режимах, чтобы измерялись сохранение и чтение данных. Измеряются чтение по
+ * случайному идентификатору с чтением данных, обновление одной записи и массовое создание 100 записей.
+ * Созданные записи удаляются после каждой итерации. Занятая после загрузки куча (база H2 в памяти
+ * находится в куче) выводится в лог запуска строкой {@code heap used}.</p>
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 5)
+@Measurement(iterations = 5, time = 5)
+@Fork(1)
+public class DataCompressionBenchmark {
+
+    private static final int BATCH_SIZE = 100;
+
+    private static final String LINE = "payment order; account 40702810900000000001; status ACCEPTED; ";
+
+    @Param({"off", "on"})
+    private String compression;
+
+    @Param({"4096"})
+    private int dataSize;
+
+    @Param({"50000"})
+    private int records;
+
+    private ConfigurableApplicationContext context;
+
+    private BankRecordService service;
+
+    private UUID[] ids;
+
+    private final Queue<UUID> created = new ConcurrentLinkedQueue<>();
+
+    @Setup(Level.Trial)
+    public void setUp() {
+        context = BenchmarkApplication.start("compression",
+                "bank-records.cache.enabled=false",
+                "bank-records.search.enabled=false",
+                "bank-records.compression.enabled=" + "on".equals(compression));
+        service = context.getBean(BankRecordService.class);
+        for (int loaded = 0; loaded < records; loaded += BATCH_SIZE * 10) {
+            service.bulkInsertBankRecords(newRecords(Math.min(BATCH_SIZE * 10, records - loaded)));
+        }
+        ids = service.getBankRecordsPage(null, records).stream().map(BankRecord::getId).toArray(UUID[]::new);
+        System.gc();
+        System.out.printf("%nheap used: compression=%s records=%d dataSize=%d heapMb=%d%n", compression, records,
+                dataSize, ManagementFactory.getMemoryMXBean().getHeapMemoryUsage().getUsed() / (1024 * 1024));
+    }
+
+    @TearDown(Level.Iteration)
+    public void removeCreatedRecords() {
+        List<UUID> batch = new ArrayList<>();
+        UUID id;
+        while ((id = created.poll()) != null) {
+            batch.add(id);
+        }
+        service.batchDeleteBankRecords(batch);
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() {
+        context.close();
+    }
+
+    @Benchmark
+    public int getBankRecordById() {
+        Optional<BankRecord> record = service.getBankRecordById(randomId());
+        return record.map(found -> found.getData().length()).orElse(0);
+    }
+
+    @Benchmark
+    public Optional<BankRecord> updateBankRecord() {
+        return service.updateBankRecord(randomId(), newRecords(1).get(0));
+    }
+
+    @Benchmark
+    public List<BankRecord> bulkInsertBankRecords() {
+        List<BankRecord> batch = newRecords(BATCH_SIZE);
+        service.bulkInsertBankRecords(batch);
+        batch.forEach(record -> created.add(record.getId()));
+        return batch;
+    }
+
+    private List<BankRecord> newRecords(int count) {
+        List<BankRecord> batch = new ArrayList<>(count);
+        for (int i = 0; i < count; i++) {
+            StringBuilder data = new StringBuilder(dataSize + LINE.length());
+            data.append(ThreadLocalRandom.current().nextLong()).append(": ");
+            while (data.length() < dataSize) {
+                data.append(LINE);
+            }
+            BankRecord record = new BankRecord();
+            record.setData(data.toString());
+            batch.add(record);
+        }
+        return batch;
+    }
+
+    private UUID randomId() {
+        return ids[ThreadLocalRandom.current().nextInt(ids.length)];
+    }
+}
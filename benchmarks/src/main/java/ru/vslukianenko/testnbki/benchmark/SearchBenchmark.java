@@ -0,0 +1,106 @@
+package ru.vslukianenko.testnbki.benchmark;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+import org.springframework.context.ConfigurableApplicationContext;
+import ru.vslukianenko.testnbki.dto.SearchPage;
+import ru.vslukianenko.testnbki.model.BankRecord;
+import ru.vslukianenko.testnbki.service.BankRecordSearchService;
+import ru.vslukianenko.testnbki.service.BankRecordService;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Время запроса первой страницы (100 записей) поиска по данным в зависимости от размера таблицы.
+ *
+ * <p>Данные записи имеют вид {@code customerN cityM}, где {@code N} - номер записи по модулю 10000,
+ * {@code M} - по модулю 100. Каждый вызов ищет случайного клиента:</p>
+ * <ul>
+ *   <li>{@code exact} - точное совпадение {@code customerN cityM}, по индексу {@code (data, id)};</li>
+ *   <li>{@code prefix} - префикс {@code customerN}, по тому же индексу;</li>
+ *   <li>{@code fullText} - слова {@code customerN cityM}, по полнотекстовому индексу H2.</li>
+ * </ul>
+ *
+ * <p>Полнотекстовый индекс по умолчанию выключен, поэтому бенчмарк включает его явно.</p>
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 5)
+@Measurement(iterations = 5, time = 5)
+@Fork(1)
+public class SearchBenchmark {
+
+    private static final int CUSTOMERS = 10_000;
+
+    private static final int CITIES = 100;
+
+    private static final int PAGE_SIZE = 100;
+
+    private static final int INSERT_CHUNK = 10_000;
+
+    @Param({"10000", "100000", "1000000"})
+    private int records;
+
+    private ConfigurableApplicationContext context;
+
+    private BankRecordSearchService searchService;
+
+    @Setup(Level.Trial)
+    public void setUp() {
+        context = BenchmarkApplication.start("search", "bank-records.search.full-text-enabled=true");
+        searchService = context.getBean(BankRecordSearchService.class);
+        BankRecordService service = context.getBean(BankRecordService.class);
+        for (int from = 0; from < records; from += INSERT_CHUNK) {
+            List<BankRecord> chunk = new ArrayList<>(INSERT_CHUNK);
+            for (int i = from; i < Math.min(from + INSERT_CHUNK, records); i++) {
+                BankRecord record = new BankRecord();
+                record.setData(data(i));
+                chunk.add(record);
+            }
+            service.bulkInsertBankRecords(chunk);
+        }
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() {
+        context.close();
+    }
+
+    @Benchmark
+    public SearchPage exact() {
+        return searchService.findByData(data(randomCustomer()), null, PAGE_SIZE);
+    }
+
+    @Benchmark
+    public SearchPage prefix() {
+        return searchService.findByDataPrefix("customer" + randomCustomer(), null, PAGE_SIZE);
+    }
+
+    @Benchmark
+    public SearchPage fullText() {
+        return searchService.searchFullText(data(randomCustomer()), null, PAGE_SIZE);
+    }
+
+    private static int randomCustomer() {
+        return ThreadLocalRandom.current().nextInt(CUSTOMERS);
+    }
+
+    private static String data(int i) {
+        return "customer" + (i % CUSTOMERS) + " city" + (i % CITIES);
+    }
+}
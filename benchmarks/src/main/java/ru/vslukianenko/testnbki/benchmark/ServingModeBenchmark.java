@@ -0,0 +1,107 @@
+package ru.vslukianenko.testnbki.benchmark;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+import org.springframework.context.ConfigurableApplicationContext;
+import ru.vslukianenko.testnbki.model.BankRecord;
+import ru.vslukianenko.testnbki.service.BankRecordService;
+
+import java.io.IOException;
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.util.List;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Сравнение платформенных и виртуальных потоков Tomcat при многих одновременных клиентах.
+ *
+ * <p>Приложение запускается со встроенным Tomcat на свободном порту, кэш чтения выключен, поэтому каждый
+ * запрос {@code GET /api/records/{id}} проходит через Tomcat, контроллер и ограничитель
+ * {@code bank-records.db-concurrency} до базы данных. В режиме {@code platform} запросы обслуживает пул
+ * Tomcat из 200 потоков (размер по умолчанию), в режиме {@code virtual} - отдельный виртуальный поток
+ * на запрос ({@code spring.threads.virtual.enabled}).</p>
+ *
+ * <p>Каждый поток JMH - это клиент, который отправляет запросы синхронно, занимая одно соединение
+ * на время запроса, поэтому количество одновременных клиентов задается количеством потоков:
+ * {@code -Dbench.threads=100,1000,10000}. Измеряются пропускная способность и задержка отдельного
+ * запроса ({@link Mode#SampleTime}: процентили p50-p99.99 попадают в результаты JMH).</p>
+ *
+ * <p>Режим {@code virtual} требует Java 21+: на более ранних версиях Spring Boot игнорирует
+ * {@code spring.threads.virtual.enabled}, поэтому {@link BenchmarkRunner} запускает только режим
+ * {@code platform}, а явно заданный режим {@code virtual} завершается ошибкой.</p>
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode({Mode.Throughput, Mode.SampleTime})
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 5)
+@Measurement(iterations = 5, time = 5)
+@Fork(1)
+public class ServingModeBenchmark {
+
+    /**
+     * Первая версия Java с виртуальными потоками.
+     */
+    static final int VIRTUAL_THREADS_JAVA_VERSION = 21;
+
+    private static final int RECORDS = 10_000;
+
+    @Param({"platform", "virtual"})
+    private String serving;
+
+    private ConfigurableApplicationContext context;
+
+    private HttpClient client;
+
+    private URI[] uris;
+
+    @Setup(Level.Trial)
+    public void setUp() {
+        boolean virtual = "virtual".equals(serving);
+        if (virtual && Runtime.version().feature() < VIRTUAL_THREADS_JAVA_VERSION) {
+            throw new IllegalStateException("Serving mode 'virtual' requires Java "
+                    + VIRTUAL_THREADS_JAVA_VERSION + "+, running on " + Runtime.version());
+        }
+        context = BenchmarkApplication.startServer("serving",
+                "bank-records.cache.enabled=false",
+                "spring.threads.virtual.enabled=" + virtual,
+                "server.tomcat.max-connections=-1");
+        BankRecordService service = context.getBean(BankRecordService.class);
+        List<BankRecord> records = BenchmarkApplication.newRecords(RECORDS, "record ");
+        service.bulkInsertBankRecords(records);
+        String baseUri = "http://localhost:" + context.getEnvironment().getProperty("local.server.port")
+                + "/api/records/";
+        uris = records.stream().map(record -> URI.create(baseUri + record.getId())).toArray(URI[]::new);
+        client = HttpClient.newBuilder().version(HttpClient.Version.HTTP_1_1).build();
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() {
+        context.close();
+    }
+
+    @Benchmark
+    public String getBankRecordById() throws IOException, InterruptedException {
+        HttpRequest request = HttpRequest.newBuilder(uris[ThreadLocalRandom.current().nextInt(uris.length)])
+                .GET()
+                .build();
+        HttpResponse<String> response = client.send(request, HttpResponse.BodyHandlers.ofString());
+        if (response.statusCode() != 200) {
+            throw new IllegalStateException("Unexpected status " + response.statusCode());
+        }
+        return response.body();
+    }
+}
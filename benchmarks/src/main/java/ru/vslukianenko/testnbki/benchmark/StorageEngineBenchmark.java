@@ -0,0 +1,132 @@
+package ru.vslukianenko.testnbki.benchmark;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+import org.springframework.context.ConfigurableApplicationContext;
+import org.springframework.util.FileSystemUtils;
+import ru.vslukianenko.testnbki.model.BankRecord;
+import ru.vslukianenko.testnbki.service.BankRecordService;
+
+import java.io.IOException;
+import java.lang.management.ManagementFactory;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Optional;
+import java.util.Queue;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Сравнение хранилищ записей банка на операциях {@code PerformanceTest}: JPA поверх H2 ({@code jpa})
+ * и хранилище вне кучи с журналом ({@code off-heap}).
+ *
+ * <p>Перед измерениями загружается {@code records} записей; кэш чтения выключен, чтобы измерялось
+ * само хранилище. Измеряются чтение по случайному идентификатору, создание и обновление одной записи
+ * и массовое создание 1000 записей. Созданные записи удаляются после каждой итерации. Занятая после
+ * загрузки куча выводится в лог запуска строкой {@code heap used}.</p>
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 5)
+@Measurement(iterations = 5, time = 5)
+@Fork(1)
+public class StorageEngineBenchmark {
+
+    private static final int BATCH_SIZE = 1000;
+
+    @Param({"jpa", "off-heap"})
+    private String storage;
+
+    @Param({"100000"})
+    private int records;
+
+    private Path logDirectory;
+
+    private ConfigurableApplicationContext context;
+
+    private BankRecordService service;
+
+    private UUID[] ids;
+
+    private final Queue<UUID> created = new ConcurrentLinkedQueue<>();
+
+    @Setup(Level.Trial)
+    public void setUp() throws IOException {
+        logDirectory = Files.createTempDirectory("bank-records-log");
+        context = BenchmarkApplication.start("storage",
+                "bank-records.cache.enabled=false",
+                "bank-records.storage.mode=" + ("jpa".equals(storage) ? "single" : storage),
+                "bank-records.storage.off-heap.log-path=" + logDirectory.resolve("bank-records.log"));
+        service = context.getBean(BankRecordService.class);
+        service.batchCreateBankRecords(BenchmarkApplication.newRecords(records, "record "));
+        ids = service.getBankRecordsPage(null, records).stream().map(BankRecord::getId).toArray(UUID[]::new);
+        System.gc();
+        System.out.printf("%nheap used: storage=%s records=%d heapMb=%d%n", storage, records,
+                ManagementFactory.getMemoryMXBean().getHeapMemoryUsage().getUsed() / (1024 * 1024));
+    }
+
+    @TearDown(Level.Iteration)
+    public void removeCreatedRecords() {
+        List<UUID> batch = new ArrayList<>();
+        UUID id;
+        while ((id = created.poll()) != null) {
+            batch.add(id);
+        }
+        service.batchDeleteBankRecords(batch);
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() {
+        context.close();
+        FileSystemUtils.deleteRecursively(logDirectory.toFile());
+    }
+
+    @Benchmark
+    public Optional<BankRecord> getBankRecordById() {
+        return service.getBankRecordById(randomId());
+    }
+
+    @Benchmark
+    public BankRecord createBankRecord() {
+        BankRecord record = new BankRecord();
+        record.setData("created " + ThreadLocalRandom.current().nextInt());
+        BankRecord saved = service.createBankRecord(record);
+        created.add(saved.getId());
+        return saved;
+    }
+
+    @Benchmark
+    public Optional<BankRecord> updateBankRecord() {
+        BankRecord details = new BankRecord();
+        details.setData("updated " + ThreadLocalRandom.current().nextInt());
+        return service.updateBankRecord(randomId(), details);
+    }
+
+    @Benchmark
+    public List<BankRecord> batchCreateBankRecords() {
+        List<BankRecord> batch = BenchmarkApplication.newRecords(BATCH_SIZE, "created ");
+        service.batchCreateBankRecords(batch);
+        batch.forEach(record -> created.add(record.getId()));
+        return batch;
+    }
+
+    private UUID randomId() {
+        return ids[ThreadLocalRandom.current().nextInt(ids.length)];
+    }
+}
@@ -0,0 +1,99 @@
+package ru.vslukianenko.testnbki.benchmark;
+
+import com.fasterxml.jackson.core.type.TypeReference;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.dataformat.cbor.databind.CBORMapper;
+import com.fasterxml.jackson.dataformat.smile.SmileGenerator;
+import com.fasterxml.jackson.dataformat.smile.databind.SmileMapper;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import ru.vslukianenko.testnbki.config.BinaryWireFormatConfiguration;
+import ru.vslukianenko.testnbki.id.UuidV7;
+import ru.vslukianenko.testnbki.model.BankRecord;
+
+import java.io.IOException;
+import java.util.List;
+import java.util.UUID;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Сравнение форматов обмена массовых эндпоинтов: JSON, Smile и CBOR.
+ *
+ * <p>Для {@code records} записей с идентификаторами (тело {@code PUT /api/records/list}) и списка
+ * их идентификаторов (тело {@code DELETE /api/records/list} и {@code POST /api/records/lookup}) измеряется
+ * время разбора и записи. Размеры тел запросов в байтах выводятся в лог запуска строкой {@code payload size}.</p>
+ *
+ * <p>Настройки форматов совпадают с {@link BinaryWireFormatConfiguration}.</p>
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class WireFormatBenchmark {
+
+    private static final TypeReference<List<BankRecord>> RECORDS = new TypeReference<>() {
+    };
+
+    private static final TypeReference<List<UUID>> IDS = new TypeReference<>() {
+    };
+
+    @Param({"json", "smile", "cbor"})
+    private String format;
+
+    @Param({"1000", "10000"})
+    private int records;
+
+    private ObjectMapper mapper;
+
+    private List<BankRecord> recordList;
+
+    private List<UUID> idList;
+
+    private byte[] recordsPayload;
+
+    private byte[] idsPayload;
+
+    @Setup(Level.Trial)
+    public void setUp() throws IOException {
+        mapper = switch (format) {
+            case "json" -> new ObjectMapper();
+            case "smile" -> SmileMapper.builder().disable(SmileGenerator.Feature.ENCODE_BINARY_AS_7BIT).build();
+            case "cbor" -> new CBORMapper();
+            default -> throw new IllegalArgumentException("Unknown format: " + format);
+        };
+        recordList = BenchmarkApplication.newRecords(records, "record ");
+        recordList.forEach(record -> record.setId(UuidV7.generate()));
+        idList = recordList.stream().map(BankRecord::getId).toList();
+        recordsPayload = mapper.writeValueAsBytes(recordList);
+        idsPayload = mapper.writeValueAsBytes(idList);
+        System.out.printf("%npayload size: format=%s records=%d recordsBytes=%d idsBytes=%d%n",
+                format, records, recordsPayload.length, idsPayload.length);
+    }
+
+    @Benchmark
+    public List<BankRecord> parseRecords() throws IOException {
+        return mapper.readValue(recordsPayload, RECORDS);
+    }
+
+    @Benchmark
+    public byte[] writeRecords() throws IOException {
+        return mapper.writeValueAsBytes(recordList);
+    }
+
+    @Benchmark
+    public List<UUID> parseIds() throws IOException {
+        return mapper.readValue(idsPayload, IDS);
+    }
+}
@@ -0,0 +1,153 @@
+package ru.vslukianenko.testnbki.cache;
+
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import com.github.benmanes.caffeine.cache.stats.CacheStats;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.binder.cache.CaffeineCacheMetrics;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+import ru.vslukianenko.testnbki.config.BankRecordCacheProperties;
+import ru.vslukianenko.testnbki.model.BankRecord;
+
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.Optional;
+import java.util.Set;
+import java.util.UUID;
+import java.util.function.Function;
+
+/**
+ * Кэш чтения записей банка по идентификатору.
+ *
+ * <p>Построен на Caffeine с политикой вытеснения W-TinyLFU, ограничен по размеру и времени жизни
+ * (см. {@link BankRecordCacheProperties}). Статистика попаданий, промахов и вытеснений публикуется
+ * в {@link MeterRegistry} под именем {@code bankRecords} (метрики {@code cache.gets}, {@code cache.evictions} и др.).</p>
+ *
+ * <p>В кэше хранятся копии сущностей, поэтому изменения возвращенных объектов вызывающим кодом
+ * не влияют на содержимое кэша. Сжатые данные записей копируются без распаковки.</p>
+ *
+ * <p>Инвалидация внутри транзакции выполняется дважды: сразу и после фиксации транзакции.
+ * Повторная инвалидация удаляет значение, которое могло быть загружено параллельным читателем
+ * до фиксации изменений.</p>
+ */
+@Component
+public class BankRecordCache {
+
+    private static final String CACHE_NAME = "bankRecords";
+
+    private final boolean enabled;
+
+    private final Cache<UUID, BankRecord> cache;
+
+    public BankRecordCache(BankRecordCacheProperties properties, MeterRegistry meterRegistry) {
+        this.enabled = properties.isEnabled();
+        this.cache = Caffeine.newBuilder()
+                .maximumSize(properties.getMaximumSize())
+                .expireAfterWrite(properties.getExpireAfterWrite())
+                .recordStats()
+                .build();
+        CaffeineCacheMetrics.monitor(meterRegistry, cache, CACHE_NAME);
+    }
+
+    /**
+     * Возвращает запись из кэша или загружает её с помощью {@code loader} и помещает в кэш.
+     * Отсутствующие записи не кэшируются.
+     *
+     * @param id     уникальный идентификатор записи банка
+     * @param loader функция загрузки записи из базы данных при промахе
+     * @return {@link Optional} с копией найденной записи или пустой {@link Optional}
+     */
+    public Optional<BankRecord> get(UUID id, Function<UUID, Optional<BankRecord>> loader) {
+        if (!enabled) {
+            return loader.apply(id);
+        }
+        BankRecord cached = cache.get(id, key -> loader.apply(key).map(BankRecordCache::copyOf).orElse(null));
+        return Optional.ofNullable(cached).map(BankRecordCache::copyOf);
+    }
+
+    /**
+     * Возвращает записи из кэша, загружая отсутствующие одним вызовом {@code loader}.
+     * Отсутствующие в базе данных записи не кэшируются и не попадают в результат.
+     *
+     * <p>В отличие от {@link #get(UUID, Function)}, пакетная загрузка не атомарна по отношению
+     * к инвалидации: значение, загруженное одновременно с фиксацией изменения, может остаться
+     * в кэше до истечения {@code expire-after-write}.</p>
+     *
+     * @param ids    уникальные идентификаторы записей банка
+     * @param loader функция загрузки записей, не найденных в кэше, по их идентификаторам
+     * @return копии найденных записей по идентификаторам
+     */
+    public Map<UUID, BankRecord> getAll(Collection<UUID> ids, Function<Set<UUID>, Map<UUID, BankRecord>> loader) {
+        if (!enabled) {
+            return loader.apply(Set.copyOf(ids));
+        }
+        Map<UUID, BankRecord> cached = cache.getAll(ids, missing -> {
+            Map<UUID, BankRecord> loaded = new HashMap<>();
+            loader.apply(Set.copyOf(missing)).forEach((id, bankRecord) -> loaded.put(id, copyOf(bankRecord)));
+            return loaded;
+        });
+        Map<UUID, BankRecord> result = new HashMap<>(cached.size());
+        cached.forEach((id, bankRecord) -> result.put(id, copyOf(bankRecord)));
+        return result;
+    }
+
+    /**
+     * Удаляет запись из кэша.
+     *
+     * @param id уникальный идентификатор записи банка
+     */
+    public void invalidate(UUID id) {
+        invalidateAll(List.of(id));
+    }
+
+    /**
+     * Удаляет записи из кэша. Если вызов выполняется внутри транзакции,
+     * записи дополнительно удаляются после её фиксации.
+     *
+     * @param ids уникальные идентификаторы записей банка
+     */
+    public void invalidateAll(Collection<UUID> ids) {
+        if (!enabled) {
+            return;
+        }
+        List<UUID> keys = ids.stream().filter(Objects::nonNull).toList();
+        if (keys.isEmpty()) {
+            return;
+        }
+        cache.invalidateAll(keys);
+        if (TransactionSynchronizationManager.isSynchronizationActive()) {
+            TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+                @Override
+                public void afterCommit() {
+                    cache.invalidateAll(keys);
+                }
+            });
+        }
+    }
+
+    /**
+     * Возвращает накопленную статистику кэша: попадания, промахи, вытеснения.
+     *
+     * @return снимок статистики {@link CacheStats}
+     */
+    public CacheStats stats() {
+        return cache.stats();
+    }
+
+    private static BankRecord copyOf(BankRecord bankRecord) {
+        BankRecord copy = new BankRecord();
+        copy.setId(bankRecord.getId());
+        if (bankRecord.getCompressedData() != null) {
+            copy.setCompressedData(bankRecord.getCompressedData());
+        } else {
+            copy.setData(bankRecord.getData());
+        }
+        copy.setVersion(bankRecord.getVersion());
+        return copy;
+    }
+}
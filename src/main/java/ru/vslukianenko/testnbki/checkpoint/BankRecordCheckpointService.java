@@ -0,0 +1,399 @@
+package ru.vslukianenko.testnbki.checkpoint;
+
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.SmartLifecycle;
+import org.springframework.context.event.EventListener;
+import org.springframework.scheduling.concurrent.CustomizableThreadFactory;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+import ru.vslukianenko.testnbki.compression.BankRecordDataCodec;
+import ru.vslukianenko.testnbki.config.BankRecordCheckpointProperties;
+import ru.vslukianenko.testnbki.model.BankRecord;
+import ru.vslukianenko.testnbki.repo.BankRecordStore;
+
+import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.io.UncheckedIOException;
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.UUID;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Контрольные точки записей банка: периодическая запись двоичных снимков и восстановление из них при запуске.
+ *
+ * <p>Контрольная точка записывается каждые {@code interval} в каталог {@code directory} (см. {@link SnapshotFile}).
+ * Каждая {@code full-snapshot-every}-я контрольная точка - полный снимок всех записей, читаемых keyset-пагинацией
+ * по идентификатору; остальные содержат только записи, отмеченные {@link DirtyRecordTracker} с предыдущей
+ * контрольной точки, а для отсутствующих в хранилище записей - признак удаления. Записи, измененные во время
+ * записи снимка, попадают и в следующую контрольную точку, поэтому снимку не нужна согласованная транзакция
+ * чтения. Сжатые данные записей ({@link BankRecordDataCodec}) записываются в файл и восстанавливаются
+ * в хранилище сжатыми, без распаковки. После записи полного снимка более старые файлы удаляются. При остановке приложения записывается
+ * последняя контрольная точка: после остановки веб-сервера и очереди отложенной записи, поэтому в нее попадают
+ * изменения последних принятых запросов.</p>
+ *
+ * <p>Восстановление выполняется при запуске {@link SmartLifecycle} до веб-сервера, поэтому сервер не принимает
+ * запросы, пока хранилище не загружено, и готовность ({@code ReadinessState.ACCEPTING_TRAFFIC},
+ * {@code /actuator/health/readiness}) публикуется после восстановления. Применяются
+ * последний полный снимок и следующие за ним изменения. Файл читается одним потоком, а записи сохраняются
+ * частями по {@code chunk-size} в {@code restore-threads} потоках, каждая часть - одной транзакцией
+ * через {@link BankRecordStore#restoreAll}. Внутри файла каждая запись встречается один раз, поэтому части
+ * независимы; следующий файл применяется после завершения предыдущего. Если хранилище при запуске
+ * не пусто (например, база данных не в памяти), восстановление пропускается, а первая контрольная точка
+ * записывается полным снимком.</p>
+ *
+ * <p>Метрики:</p>
+ * <ul>
+ *   <li>{@code bank.records.checkpoint.write} - время записи контрольной точки, тег {@code type}
+ *   ({@code full} или {@code delta}).</li>
+ *   <li>{@code bank.records.checkpoint.restore} - время восстановления при запуске.</li>
+ *   <li>{@code bank.records.checkpoint.dirty} - количество записей, измененных с последней контрольной точки.</li>
+ * </ul>
+ */
+@Slf4j
+@Service
+@ConditionalOnProperty(prefix = "bank-records.checkpoint", name = "enabled", havingValue = "true")
+public class BankRecordCheckpointService implements SmartLifecycle {
+
+    private final BankRecordStore bankRecordStore;
+
+    private final DirtyRecordTracker dirtyRecordTracker;
+
+    private final TransactionTemplate transactionTemplate;
+
+    private final BankRecordDataCodec codec;
+
+    private final BankRecordCheckpointProperties properties;
+
+    private final Timer fullSnapshotTimer;
+
+    private final Timer deltaTimer;
+
+    private final Timer restoreTimer;
+
+    private volatile ScheduledExecutorService scheduler;
+
+    /**
+     * Номер последней записанной или найденной при запуске контрольной точки.
+     */
+    private long sequence;
+
+    /**
+     * Количество изменений после последнего полного снимка или {@code -1}, если следующая контрольная точка
+     * должна быть полным снимком.
+     */
+    private int deltasSinceFullSnapshot = -1;
+
+    private volatile boolean restored;
+
+    public BankRecordCheckpointService(BankRecordStore bankRecordStore,
+                                       DirtyRecordTracker dirtyRecordTracker,
+                                       PlatformTransactionManager transactionManager,
+                                       BankRecordDataCodec codec,
+                                       BankRecordCheckpointProperties properties,
+                                       MeterRegistry meterRegistry) {
+        this.bankRecordStore = bankRecordStore;
+        this.dirtyRecordTracker = dirtyRecordTracker;
+        this.transactionTemplate = new TransactionTemplate(transactionManager);
+        this.codec = codec;
+        this.properties = properties;
+        this.fullSnapshotTimer = writeTimer("full", meterRegistry);
+        this.deltaTimer = writeTimer("delta", meterRegistry);
+        this.restoreTimer = Timer.builder("bank.records.checkpoint.restore")
+                .description("Time to restore records from checkpoint files at startup")
+                .register(meterRegistry);
+        Gauge.builder("bank.records.checkpoint.dirty", dirtyRecordTracker, DirtyRecordTracker::size)
+                .description("Records changed since the last checkpoint")
+                .register(meterRegistry);
+    }
+
+    /**
+     * Восстанавливает записи из контрольных точек и запускает периодическую запись контрольных точек.
+     */
+    @Override
+    public void start() {
+        restoreTimer.record(this::restore);
+        restored = true;
+        scheduler = Executors.newSingleThreadScheduledExecutor(task -> {
+            Thread thread = new Thread(task, "bank-record-checkpoint");
+            thread.setDaemon(true);
+            return thread;
+        });
+        long interval = properties.getInterval().toMillis();
+        scheduler.scheduleWithFixedDelay(this::checkpointQuietly, interval, interval, TimeUnit.MILLISECONDS);
+    }
+
+    @EventListener
+    public void onReady(ApplicationReadyEvent event) {
+        if (event.getTimeTaken() != null) {
+            log.info("Ready to accept traffic {} ms after startup began", event.getTimeTaken().toMillis());
+        }
+    }
+
+    /**
+     * Записывает контрольную точку: полный снимок или изменения с предыдущей контрольной точки.
+     *
+     * @return количество элементов записанного файла; 0, если изменений не было и файл не записан
+     * @throws UncheckedIOException если не удалось записать файл; отметки изменений при этом сохраняются
+     */
+    public synchronized long checkpoint() {
+        boolean full = deltasSinceFullSnapshot < 0 || deltasSinceFullSnapshot + 1 >= properties.getFullSnapshotEvery();
+        Set<UUID> dirty = dirtyRecordTracker.drain();
+        if (!full && dirty.isEmpty()) {
+            return 0;
+        }
+        Timer.Sample sample = Timer.start();
+        try {
+            long written = full ? writeFullSnapshot() : writeDelta(dirty);
+            sample.stop(full ? fullSnapshotTimer : deltaTimer);
+            return written;
+        } catch (IOException e) {
+            dirtyRecordTracker.markDirty(dirty);
+            throw new UncheckedIOException("Failed to write checkpoint to " + properties.getDirectory(), e);
+        } catch (RuntimeException e) {
+            dirtyRecordTracker.markDirty(dirty);
+            throw e;
+        }
+    }
+
+    /**
+     * Останавливает периодическую запись и записывает последнюю контрольную точку.
+     * Если восстановление при запуске не выполнялось, контрольная точка не записывается, чтобы не заменить
+     * существующие файлы снимком незагруженного хранилища.
+     */
+    @Override
+    public void stop() {
+        ScheduledExecutorService running = scheduler;
+        if (running == null) {
+            return;
+        }
+        scheduler = null;
+        running.shutdown();
+        try {
+            running.awaitTermination(1, TimeUnit.MINUTES);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        if (restored) {
+            checkpointQuietly();
+        }
+    }
+
+    @Override
+    public boolean isRunning() {
+        return scheduler != null;
+    }
+
+    /**
+     * Контрольные точки запускаются раньше очереди отложенной записи и веб-сервера, чтобы восстановить
+     * хранилище до первых запросов, и останавливаются после них.
+     */
+    @Override
+    public int getPhase() {
+        return SmartLifecycle.DEFAULT_PHASE - 8192;
+    }
+
+    private void checkpointQuietly() {
+        try {
+            checkpoint();
+        } catch (RuntimeException e) {
+            log.error("Failed to write bank record checkpoint", e);
+        }
+    }
+
+    private long writeFullSnapshot() throws IOException {
+        long written;
+        SnapshotFile.Checkpoint checkpoint;
+        try (SnapshotFile.Writer writer = SnapshotFile.create(properties.getDirectory(), sequence + 1,
+                SnapshotFile.Type.FULL)) {
+            UUID after = null;
+            List<BankRecord> page;
+            do {
+                page = bankRecordStore.findPageAfter(after, properties.getChunkSize());
+                for (BankRecord bankRecord : page) {
+                    writer.put(bankRecord);
+                }
+                if (!page.isEmpty()) {
+                    after = page.get(page.size() - 1).getId();
+                }
+            } while (page.size() == properties.getChunkSize());
+            written = writer.count();
+            checkpoint = writer.commit();
+        }
+        sequence = checkpoint.sequence();
+        deltasSinceFullSnapshot = 0;
+        for (SnapshotFile.Checkpoint older : SnapshotFile.list(properties.getDirectory())) {
+            if (older.sequence() < sequence) {
+                Files.deleteIfExists(older.path());
+            }
+        }
+        log.debug("Wrote full snapshot {} with {} records", checkpoint.path(), written);
+        return written;
+    }
+
+    private long writeDelta(Set<UUID> dirty) throws IOException {
+        long written;
+        SnapshotFile.Checkpoint checkpoint;
+        try (SnapshotFile.Writer writer = SnapshotFile.create(properties.getDirectory(), sequence + 1,
+                SnapshotFile.Type.DELTA)) {
+            List<UUID> ids = List.copyOf(dirty);
+            for (int from = 0; from < ids.size(); from += properties.getChunkSize()) {
+                List<UUID> chunk = ids.subList(from, Math.min(from + properties.getChunkSize(), ids.size()));
+                Set<UUID> deleted = new HashSet<>(chunk);
+                for (BankRecord bankRecord : bankRecordStore.findAllByIds(chunk)) {
+                    writer.put(bankRecord);
+                    deleted.remove(bankRecord.getId());
+                }
+                for (UUID id : deleted) {
+                    writer.delete(id);
+                }
+            }
+            written = writer.count();
+            checkpoint = writer.commit();
+        }
+        sequence = checkpoint.sequence();
+        deltasSinceFullSnapshot++;
+        log.debug("Wrote delta {} with {} records", checkpoint.path(), written);
+        return written;
+    }
+
+    private synchronized void restore() {
+        List<SnapshotFile.Checkpoint> chain;
+        try {
+            chain = restoreChain(SnapshotFile.list(properties.getDirectory()));
+        } catch (IOException e) {
+            throw new UncheckedIOException("Failed to list checkpoints in " + properties.getDirectory(), e);
+        }
+        if (chain.isEmpty()) {
+            log.info("No checkpoint found in {}", properties.getDirectory());
+            return;
+        }
+        if (bankRecordStore.count() > 0) {
+            log.warn("Bank record store is not empty, checkpoint {} is not restored", chain.get(0).path());
+            return;
+        }
+        long started = System.nanoTime();
+        long entries = 0;
+        ExecutorService executor = Executors.newFixedThreadPool(properties.getRestoreThreads(), new CustomizableThreadFactory("bank-record-restore-"));
+        try {
+            for (SnapshotFile.Checkpoint checkpoint : chain) {
+                entries += load(checkpoint, executor);
+            }
+        } catch (IOException e) {
+            throw new UncheckedIOException("Failed to restore checkpoint from " + properties.getDirectory(), e);
+        } finally {
+            executor.shutdownNow();
+        }
+        deltasSinceFullSnapshot = chain.size() - 1;
+        log.info("Restored {} records from {} checkpoint files ({} entries) in {} ms", bankRecordStore.count(),
+                chain.size(), entries, TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - started));
+    }
+
+    /**
+     * Выбирает последний полный снимок и непрерывную последовательность изменений после него.
+     * Номер последней контрольной точки запоминается, чтобы новые файлы получали следующие номера.
+     */
+    private List<SnapshotFile.Checkpoint> restoreChain(List<SnapshotFile.Checkpoint> checkpoints) {
+        if (!checkpoints.isEmpty()) {
+            sequence = checkpoints.get(checkpoints.size() - 1).sequence();
+        }
+        int full = -1;
+        for (int i = 0; i < checkpoints.size(); i++) {
+            if (checkpoints.get(i).type() == SnapshotFile.Type.FULL) {
+                full = i;
+            }
+        }
+        List<SnapshotFile.Checkpoint> chain = new ArrayList<>();
+        if (full < 0) {
+            return chain;
+        }
+        chain.add(checkpoints.get(full));
+        for (SnapshotFile.Checkpoint delta : checkpoints.subList(full + 1, checkpoints.size())) {
+            if (delta.sequence() != chain.get(chain.size() - 1).sequence() + 1) {
+                log.warn("Checkpoint {} does not follow {}, later checkpoints are ignored",
+                        delta.path(), chain.get(chain.size() - 1).path());
+                break;
+            }
+            chain.add(delta);
+        }
+        return chain;
+    }
+
+    /**
+     * Читает файл контрольной точки и сохраняет его элементы частями в пуле {@code executor}.
+     * Количество частей, ожидающих сохранения, ограничено, чтобы чтение не опережало сохранение без предела.
+     */
+    private long load(SnapshotFile.Checkpoint checkpoint, ExecutorService executor) throws IOException {
+        int chunkSize = properties.getChunkSize();
+        Semaphore pending = new Semaphore(properties.getRestoreThreads() * 2);
+        List<CompletableFuture<Void>> tasks = new ArrayList<>();
+        long entries = 0;
+        try (SnapshotFile.Reader reader = SnapshotFile.open(checkpoint, codec)) {
+            List<BankRecord> records = new ArrayList<>(chunkSize);
+            List<UUID> deleted = new ArrayList<>();
+            SnapshotFile.Entry entry;
+            while ((entry = reader.next()) != null) {
+                if (entry.record() != null) {
+                    records.add(entry.record());
+                } else {
+                    deleted.add(entry.deletedId());
+                }
+                if (records.size() + deleted.size() == chunkSize) {
+                    tasks.add(submit(records, deleted, pending, executor));
+                    entries += chunkSize;
+                    records = new ArrayList<>(chunkSize);
+                    deleted = new ArrayList<>();
+                }
+            }
+            tasks.add(submit(records, deleted, pending, executor));
+            entries += records.size() + deleted.size();
+        }
+        try {
+            CompletableFuture.allOf(tasks.toArray(CompletableFuture[]::new)).join();
+        } catch (CompletionException e) {
+            throw new IllegalStateException("Failed to restore checkpoint " + checkpoint.path(), e.getCause());
+        }
+        return entries;
+    }
+
+    private CompletableFuture<Void> submit(List<BankRecord> records, List<UUID> deleted, Semaphore pending,
+                                           ExecutorService executor) throws InterruptedIOException {
+        try {
+            pending.acquire();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new InterruptedIOException("Interrupted while restoring checkpoint");
+        }
+        return CompletableFuture.runAsync(() -> transactionTemplate.executeWithoutResult(status -> {
+                    if (!records.isEmpty()) {
+                        bankRecordStore.restoreAll(records);
+                    }
+                    if (!deleted.isEmpty()) {
+                        bankRecordStore.deleteAllByIds(deleted);
+                    }
+                }), executor)
+                .whenComplete((result, error) -> pending.release());
+    }
+
+    private static Timer writeTimer(String type, MeterRegistry meterRegistry) {
+        return Timer.builder("bank.records.checkpoint.write")
+                .description("Time to write one checkpoint file")
+                .tag("type", type)
+                .register(meterRegistry);
+    }
+}
@@ -0,0 +1,80 @@
+package ru.vslukianenko.testnbki.checkpoint;
+
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+import ru.vslukianenko.testnbki.config.BankRecordCheckpointProperties;
+
+import java.util.Collection;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Objects;
+import java.util.Set;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Идентификаторы записей банка, измененных с последней контрольной точки.
+ *
+ * <p>Записи отмечаются в тех же местах сервиса, где инвалидируется кэш чтения. Если отметка выполняется
+ * внутри транзакции, идентификаторы добавляются после её завершения: иначе контрольная точка могла бы
+ * забрать идентификатор и прочитать запись до фиксации изменения, и изменение не попало бы ни в одну
+ * контрольную точку. После отката записи тоже отмечаются - лишняя запись в контрольной точке безвредна.</p>
+ *
+ * <p>Если контрольные точки выключены, отметки не накапливаются.</p>
+ */
+@Component
+public class DirtyRecordTracker {
+
+    private final boolean enabled;
+
+    private final Set<UUID> dirty = ConcurrentHashMap.newKeySet();
+
+    public DirtyRecordTracker(BankRecordCheckpointProperties properties) {
+        this.enabled = properties.isEnabled();
+    }
+
+    /**
+     * Отмечает записи как измененные.
+     *
+     * @param ids идентификаторы измененных, созданных или удаленных записей
+     */
+    public void markDirty(Collection<UUID> ids) {
+        if (!enabled) {
+            return;
+        }
+        List<UUID> keys = ids.stream().filter(Objects::nonNull).toList();
+        if (keys.isEmpty()) {
+            return;
+        }
+        if (TransactionSynchronizationManager.isSynchronizationActive()) {
+            TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+                @Override
+                public void afterCompletion(int status) {
+                    dirty.addAll(keys);
+                }
+            });
+        } else {
+            dirty.addAll(keys);
+        }
+    }
+
+    /**
+     * Забирает накопленные идентификаторы; следующие изменения накапливаются заново.
+     *
+     * @return идентификаторы записей, измененных с предыдущего вызова
+     */
+    Set<UUID> drain() {
+        Set<UUID> drained = new HashSet<>();
+        for (UUID id : dirty) {
+            if (dirty.remove(id)) {
+                drained.add(id);
+            }
+        }
+        return drained;
+    }
+
+    int size() {
+        return dirty.size();
+    }
+}
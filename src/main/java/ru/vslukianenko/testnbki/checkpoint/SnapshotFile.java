@@ -0,0 +1,344 @@
+package ru.vslukianenko.testnbki.checkpoint;
+
+import ru.vslukianenko.testnbki.compression.BankRecordDataCodec;
+import ru.vslukianenko.testnbki.model.BankRecord;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.Closeable;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Locale;
+import java.util.UUID;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+import java.util.stream.Stream;
+
+/**
+ * Двоичный файл контрольной точки: полный снимок всех записей или изменения с предыдущей контрольной точки.
+ *
+ * <p>Формат: заголовок (сигнатура {@code int}, версия формата {@code byte}, тип файла {@code byte},
+ * номер контрольной точки {@code long}), затем элементы, каждый из которых начинается с байта операции:</p>
+ * <ul>
+ *   <li>{@code PUT} - идентификатор (два {@code long}), версия ({@code long}), признак сжатия ({@code byte}),
+ *   длина данных в байтах ({@code int}, {@code -1} для {@code null}) и данные: в UTF-8 или, если признак
+ *   равен {@code 1}, сжатые байты в формате {@link BankRecordDataCodec} без распаковки;</li>
+ *   <li>{@code DELETE} - идентификатор удаленной записи;</li>
+ *   <li>{@code END} - количество элементов файла ({@code long}); признак того, что файл записан полностью.</li>
+ * </ul>
+ *
+ * <p>Файлы версии 1 не содержат признака сжатия: все данные в них записаны в UTF-8. Такие файлы
+ * по-прежнему читаются.</p>
+ *
+ * <p>Файл записывается во временный файл, сбрасывается на диск и атомарно переименовывается, поэтому
+ * в каталоге контрольных точек видны только полностью записанные файлы. Имя файла содержит номер
+ * контрольной точки с ведущими нулями и тип: {@code checkpoint-00000000000000000042-delta.bin}.</p>
+ */
+final class SnapshotFile {
+
+    private static final int MAGIC = 0x424E4B43;
+
+    private static final byte FORMAT_VERSION = 2;
+
+    /**
+     * Версия формата без признака сжатия данных.
+     */
+    private static final byte PLAIN_FORMAT_VERSION = 1;
+
+    private static final byte PLAIN = 0;
+
+    private static final byte COMPRESSED = 1;
+
+    private static final byte END = 0;
+
+    private static final byte PUT = 1;
+
+    private static final byte DELETE = 2;
+
+    private static final int BUFFER_SIZE = 1 << 16;
+
+    private static final Pattern NAME = Pattern.compile("checkpoint-(\\d{20})-(full|delta)\\.bin");
+
+    private SnapshotFile() {
+    }
+
+    /**
+     * Тип файла контрольной точки.
+     */
+    enum Type {
+        FULL,
+        DELTA;
+
+        private String suffix() {
+            return name().toLowerCase(Locale.ROOT);
+        }
+    }
+
+    /**
+     * Файл контрольной точки в каталоге.
+     *
+     * @param sequence номер контрольной точки
+     * @param type     тип файла
+     * @param path     путь к файлу
+     */
+    record Checkpoint(long sequence, Type type, Path path) {
+    }
+
+    /**
+     * Элемент файла: запись ({@code record}) или идентификатор удаленной записи ({@code deletedId}).
+     */
+    record Entry(BankRecord record, UUID deletedId) {
+    }
+
+    /**
+     * Возвращает файлы контрольных точек каталога в порядке возрастания номера.
+     *
+     * @param directory каталог контрольных точек
+     * @return файлы контрольных точек или пустой список, если каталога нет
+     * @throws IOException если не удалось прочитать каталог
+     */
+    static List<Checkpoint> list(Path directory) throws IOException {
+        if (!Files.isDirectory(directory)) {
+            return List.of();
+        }
+        List<Checkpoint> checkpoints = new ArrayList<>();
+        try (Stream<Path> files = Files.list(directory)) {
+            files.forEach(path -> {
+                Matcher matcher = NAME.matcher(path.getFileName().toString());
+                if (matcher.matches()) {
+                    checkpoints.add(new Checkpoint(Long.parseLong(matcher.group(1)),
+                            Type.valueOf(matcher.group(2).toUpperCase(Locale.ROOT)), path));
+                }
+            });
+        }
+        checkpoints.sort(Comparator.comparingLong(Checkpoint::sequence));
+        return checkpoints;
+    }
+
+    /**
+     * Создает файл контрольной точки. Файл появляется в каталоге только после {@link Writer#commit()}.
+     *
+     * @param directory каталог контрольных точек
+     * @param sequence  номер контрольной точки
+     * @param type      тип файла
+     * @return запись файла
+     * @throws IOException если не удалось создать файл
+     */
+    static Writer create(Path directory, long sequence, Type type) throws IOException {
+        Files.createDirectories(directory);
+        Path path = directory.resolve(String.format("checkpoint-%020d-%s.bin", sequence, type.suffix()));
+        return new Writer(new Checkpoint(sequence, type, path));
+    }
+
+    /**
+     * Открывает файл контрольной точки для чтения и проверяет заголовок.
+     *
+     * @param checkpoint файл контрольной точки
+     * @param codec      сжатие, которым читаются сжатые данные записей
+     * @return чтение файла
+     * @throws IOException если файл не удалось открыть или его заголовок не соответствует формату
+     */
+    static Reader open(Checkpoint checkpoint, BankRecordDataCodec codec) throws IOException {
+        return new Reader(checkpoint, codec);
+    }
+
+    /**
+     * Последовательная запись элементов файла контрольной точки.
+     */
+    static final class Writer implements Closeable {
+
+        private final Checkpoint checkpoint;
+
+        private final Path temporary;
+
+        private final FileOutputStream file;
+
+        private final DataOutputStream output;
+
+        private long count;
+
+        private boolean committed;
+
+        private Writer(Checkpoint checkpoint) throws IOException {
+            this.checkpoint = checkpoint;
+            this.temporary = checkpoint.path().resolveSibling(checkpoint.path().getFileName() + ".tmp");
+            this.file = new FileOutputStream(temporary.toFile());
+            this.output = new DataOutputStream(new BufferedOutputStream(file, BUFFER_SIZE));
+            output.writeInt(MAGIC);
+            output.writeByte(FORMAT_VERSION);
+            output.writeByte(checkpoint.type().ordinal());
+            output.writeLong(checkpoint.sequence());
+        }
+
+        void put(BankRecord bankRecord) throws IOException {
+            output.writeByte(PUT);
+            writeId(bankRecord.getId());
+            output.writeLong(bankRecord.getVersion() == null ? 0 : bankRecord.getVersion());
+            if (bankRecord.getCompressedData() != null) {
+                byte[] compressed = bankRecord.getCompressedData().bytes();
+                output.writeByte(COMPRESSED);
+                output.writeInt(compressed.length);
+                output.write(compressed);
+                count++;
+                return;
+            }
+            output.writeByte(PLAIN);
+            if (bankRecord.getData() == null) {
+                output.writeInt(-1);
+            } else {
+                byte[] data = bankRecord.getData().getBytes(StandardCharsets.UTF_8);
+                output.writeInt(data.length);
+                output.write(data);
+            }
+            count++;
+        }
+
+        void delete(UUID id) throws IOException {
+            output.writeByte(DELETE);
+            writeId(id);
+            count++;
+        }
+
+        /**
+         * Завершает файл, сбрасывает его на диск и атомарно переименовывает в итоговое имя.
+         *
+         * @return записанный файл контрольной точки
+         * @throws IOException если не удалось записать или переименовать файл
+         */
+        Checkpoint commit() throws IOException {
+            output.writeByte(END);
+            output.writeLong(count);
+            output.flush();
+            file.getChannel().force(true);
+            output.close();
+            Files.move(temporary, checkpoint.path(), StandardCopyOption.ATOMIC_MOVE);
+            committed = true;
+            return checkpoint;
+        }
+
+        long count() {
+            return count;
+        }
+
+        /**
+         * Закрывает файл; незавершенный файл удаляется.
+         */
+        @Override
+        public void close() throws IOException {
+            if (!committed) {
+                output.close();
+                Files.deleteIfExists(temporary);
+            }
+        }
+
+        private void writeId(UUID id) throws IOException {
+            output.writeLong(id.getMostSignificantBits());
+            output.writeLong(id.getLeastSignificantBits());
+        }
+    }
+
+    /**
+     * Последовательное чтение элементов файла контрольной точки.
+     */
+    static final class Reader implements Closeable {
+
+        private final Checkpoint checkpoint;
+
+        private final BankRecordDataCodec codec;
+
+        private final DataInputStream input;
+
+        private final boolean compressionFlags;
+
+        private long count;
+
+        private Reader(Checkpoint checkpoint, BankRecordDataCodec codec) throws IOException {
+            this.checkpoint = checkpoint;
+            this.codec = codec;
+            this.input = new DataInputStream(new BufferedInputStream(Files.newInputStream(checkpoint.path()), BUFFER_SIZE));
+            try {
+                if (input.readInt() != MAGIC) {
+                    throw new IOException("Not a checkpoint file or unexpected header: " + checkpoint.path());
+                }
+                byte version = input.readByte();
+                compressionFlags = version == FORMAT_VERSION;
+                if (version != FORMAT_VERSION && version != PLAIN_FORMAT_VERSION
+                        || input.readByte() != checkpoint.type().ordinal() || input.readLong() != checkpoint.sequence()) {
+                    throw new IOException("Not a checkpoint file or unexpected header: " + checkpoint.path());
+                }
+            } catch (IOException e) {
+                input.close();
+                throw e;
+            }
+        }
+
+        /**
+         * Читает следующий элемент.
+         *
+         * @return элемент или {@code null}, если достигнут конец файла
+         * @throws IOException если файл поврежден или обрывается до признака конца
+         */
+        Entry next() throws IOException {
+            byte operation = input.readByte();
+            switch (operation) {
+                case PUT -> {
+                    BankRecord bankRecord = new BankRecord();
+                    bankRecord.setId(readId());
+                    bankRecord.setVersion(input.readLong());
+                    boolean compressed = compressionFlags && readCompressionFlag() == COMPRESSED;
+                    int length = input.readInt();
+                    if (length >= 0) {
+                        byte[] data = new byte[length];
+                        input.readFully(data);
+                        if (compressed) {
+                            bankRecord.setCompressedData(codec.wrap(data));
+                        } else {
+                            bankRecord.setData(new String(data, StandardCharsets.UTF_8));
+                        }
+                    }
+                    count++;
+                    return new Entry(bankRecord, null);
+                }
+                case DELETE -> {
+                    count++;
+                    return new Entry(null, readId());
+                }
+                case END -> {
+                    long expected = input.readLong();
+                    if (expected != count) {
+                        throw new IOException("Checkpoint " + checkpoint.path() + " declares " + expected
+                                + " entries, but contains " + count);
+                    }
+                    return null;
+                }
+                default -> throw new IOException("Unknown operation " + operation + " in " + checkpoint.path());
+            }
+        }
+
+        @Override
+        public void close() throws IOException {
+            input.close();
+        }
+
+        private UUID readId() throws IOException {
+            return new UUID(input.readLong(), input.readLong());
+        }
+
+        private byte readCompressionFlag() throws IOException {
+            byte flag = input.readByte();
+            if (flag != PLAIN && flag != COMPRESSED) {
+                throw new IOException("Unknown data flag " + flag + " in " + checkpoint.path());
+            }
+            return flag;
+        }
+    }
+}
@@ -0,0 +1,27 @@
+package ru.vslukianenko.testnbki.compression;
+
+import jakarta.persistence.PrePersist;
+import jakarta.persistence.PreUpdate;
+import ru.vslukianenko.testnbki.model.BankRecord;
+
+/**
+ * Сжимает данные записей, сохраняемых через JPA, перед вставкой и обновлением
+ * (см. {@link BankRecordDataCodec#compress(BankRecord)}).
+ *
+ * <p>Создается Hibernate через контейнер бинов Spring, поэтому получает {@link BankRecordDataCodec}
+ * из контекста.</p>
+ */
+public class BankRecordCompressionListener {
+
+    private final BankRecordDataCodec codec;
+
+    public BankRecordCompressionListener(BankRecordDataCodec codec) {
+        this.codec = codec;
+    }
+
+    @PrePersist
+    @PreUpdate
+    public void compress(BankRecord bankRecord) {
+        codec.compress(bankRecord);
+    }
+}
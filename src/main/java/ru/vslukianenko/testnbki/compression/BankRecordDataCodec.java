@@ -0,0 +1,168 @@
+package ru.vslukianenko.testnbki.compression;
+
+import org.springframework.stereotype.Component;
+import ru.vslukianenko.testnbki.config.BankRecordCompressionProperties;
+import ru.vslukianenko.testnbki.model.BankRecord;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.util.Arrays;
+import java.util.zip.Adler32;
+import java.util.zip.DataFormatException;
+import java.util.zip.Deflater;
+import java.util.zip.Inflater;
+
+/**
+ * Сжатие данных записей банка для хранения в базе данных.
+ *
+ * <p>Данные длиной не меньше {@code min-length} символов сжимаются deflate (формат zlib) с необязательным
+ * словарем (см. {@link BankRecordCompressionProperties}). Сжатое представление - длина исходных данных
+ * в UTF-8 ({@code int}), затем поток zlib. Если сжатие не уменьшает размер, данные хранятся как есть.</p>
+ *
+ * <p>Распаковка не зависит от {@code enabled} и {@code min-length}: записи, сжатые ранее, читаются
+ * и после выключения сжатия.</p>
+ */
+@Component
+public class BankRecordDataCodec {
+
+    private static final int HEADER_SIZE = Integer.BYTES;
+
+    /**
+     * Размер окна deflate: более ранняя часть словаря не используется.
+     */
+    private static final int MAX_DICTIONARY_SIZE = 32 * 1024;
+
+    private final boolean enabled;
+
+    private final int minLength;
+
+    private final int level;
+
+    private final byte[] dictionary;
+
+    private final long dictionaryId;
+
+    public BankRecordDataCodec(BankRecordCompressionProperties properties) {
+        this.enabled = properties.isEnabled();
+        this.minLength = Math.max(properties.getMinLength(), HEADER_SIZE + 1);
+        this.level = properties.getLevel();
+        this.dictionary = properties.getDictionary() == null ? null : readDictionary(properties);
+        this.dictionaryId = dictionary == null ? 0 : adler32(dictionary);
+    }
+
+    /**
+     * Сжимает данные, если сжатие включено, данные не короче {@code min-length} и сжатие уменьшает их размер.
+     *
+     * @param data данные записи
+     * @return сжатые данные или {@code null}, если данные нужно хранить как есть
+     */
+    public CompressedData compress(String data) {
+        if (!enabled || data == null || data.length() < minLength) {
+            return null;
+        }
+        byte[] input = data.getBytes(StandardCharsets.UTF_8);
+        byte[] output = new byte[input.length];
+        Deflater deflater = new Deflater(level);
+        try {
+            if (dictionary != null) {
+                deflater.setDictionary(dictionary);
+            }
+            deflater.setInput(input);
+            deflater.finish();
+            int length = HEADER_SIZE;
+            while (!deflater.finished() && length < output.length) {
+                length += deflater.deflate(output, length, output.length - length);
+            }
+            if (!deflater.finished()) {
+                return null;
+            }
+            writeInt(output, input.length);
+            return new CompressedData(Arrays.copyOf(output, length), this);
+        } finally {
+            deflater.end();
+        }
+    }
+
+    /**
+     * Заменяет данные записи сжатыми, если их нужно сжимать (см. {@link #compress(String)}).
+     * Записи, данные которых уже сжаты, не изменяются.
+     *
+     * @param bankRecord сохраняемая запись
+     */
+    public void compress(BankRecord bankRecord) {
+        if (bankRecord.getCompressedData() != null) {
+            return;
+        }
+        CompressedData compressed = compress(bankRecord.getData());
+        if (compressed != null) {
+            bankRecord.setCompressedData(compressed);
+        }
+    }
+
+    /**
+     * Оборачивает сжатые байты, прочитанные из базы данных, без распаковки.
+     *
+     * @param bytes значение столбца {@code data_compressed}
+     * @return сжатые данные или {@code null}, если {@code bytes} равен {@code null}
+     */
+    public CompressedData wrap(byte[] bytes) {
+        return bytes == null ? null : new CompressedData(bytes, this);
+    }
+
+    String decompress(byte[] compressed) {
+        byte[] output = new byte[readInt(compressed)];
+        Inflater inflater = new Inflater();
+        try {
+            inflater.setInput(compressed, HEADER_SIZE, compressed.length - HEADER_SIZE);
+            int length = 0;
+            while (length < output.length) {
+                int inflated = inflater.inflate(output, length, output.length - length);
+                if (inflated == 0 && inflater.needsDictionary()) {
+                    if (dictionary == null || inflater.getAdler() != dictionaryId) {
+                        throw new IllegalStateException("Bank record data was compressed with another dictionary");
+                    }
+                    inflater.setDictionary(dictionary);
+                } else if (inflated == 0 && (inflater.needsInput() || inflater.finished())) {
+                    throw new IllegalStateException("Compressed bank record data is truncated");
+                }
+                length += inflated;
+            }
+            return new String(output, StandardCharsets.UTF_8);
+        } catch (DataFormatException e) {
+            throw new IllegalStateException("Compressed bank record data is corrupted", e);
+        } finally {
+            inflater.end();
+        }
+    }
+
+    private static byte[] readDictionary(BankRecordCompressionProperties properties) {
+        byte[] dictionary;
+        try {
+            dictionary = Files.readAllBytes(properties.getDictionary());
+        } catch (IOException e) {
+            throw new UncheckedIOException("Failed to read compression dictionary " + properties.getDictionary(), e);
+        }
+        return dictionary.length <= MAX_DICTIONARY_SIZE
+                ? dictionary
+                : Arrays.copyOfRange(dictionary, dictionary.length - MAX_DICTIONARY_SIZE, dictionary.length);
+    }
+
+    private static long adler32(byte[] bytes) {
+        Adler32 adler32 = new Adler32();
+        adler32.update(bytes);
+        return adler32.getValue();
+    }
+
+    private static void writeInt(byte[] bytes, int value) {
+        bytes[0] = (byte) (value >>> 24);
+        bytes[1] = (byte) (value >>> 16);
+        bytes[2] = (byte) (value >>> 8);
+        bytes[3] = (byte) value;
+    }
+
+    private static int readInt(byte[] bytes) {
+        return (bytes[0] & 0xFF) << 24 | (bytes[1] & 0xFF) << 16 | (bytes[2] & 0xFF) << 8 | bytes[3] & 0xFF;
+    }
+}
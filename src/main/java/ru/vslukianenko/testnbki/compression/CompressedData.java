@@ -0,0 +1,58 @@
+package ru.vslukianenko.testnbki.compression;
+
+import java.util.Arrays;
+
+/**
+ * Сжатые данные записи банка в том виде, в котором они хранятся в столбце {@code data_compressed}.
+ *
+ * <p>Данные распаковываются только при вызове {@link #decompress()}, поэтому записи, данные которых
+ * не читаются (проверки существования, копирование в кэш, выгрузка без данных), распаковку не выполняют.
+ * Объект неизменяем и может разделяться между копиями записи; распакованные данные запоминает
+ * {@link ru.vslukianenko.testnbki.model.BankRecord#getData()} в каждой копии отдельно, чтобы кэш
+ * хранил только сжатое представление.</p>
+ */
+public final class CompressedData {
+
+    private final byte[] bytes;
+
+    private final BankRecordDataCodec codec;
+
+    CompressedData(byte[] bytes, BankRecordDataCodec codec) {
+        this.bytes = bytes;
+        this.codec = codec;
+    }
+
+    /**
+     * Распаковывает данные. Результат не запоминается: каждый вызов распаковывает данные заново.
+     *
+     * @return исходные данные записи
+     * @throws IllegalStateException если данные повреждены или сжаты с другим словарем
+     */
+    public String decompress() {
+        return codec.decompress(bytes);
+    }
+
+    /**
+     * Возвращает сжатое представление без копирования; изменять массив нельзя.
+     *
+     * @return сжатые байты в формате {@link BankRecordDataCodec}
+     */
+    public byte[] bytes() {
+        return bytes;
+    }
+
+    @Override
+    public boolean equals(Object o) {
+        return o instanceof CompressedData other && Arrays.equals(bytes, other.bytes);
+    }
+
+    @Override
+    public int hashCode() {
+        return Arrays.hashCode(bytes);
+    }
+
+    @Override
+    public String toString() {
+        return "CompressedData[" + bytes.length + " bytes]";
+    }
+}
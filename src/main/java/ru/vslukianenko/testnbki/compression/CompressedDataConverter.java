@@ -0,0 +1,34 @@
+package ru.vslukianenko.testnbki.compression;
+
+import jakarta.persistence.AttributeConverter;
+import jakarta.persistence.Converter;
+import org.hibernate.annotations.Mutability;
+import org.hibernate.type.descriptor.java.Immutability;
+
+/**
+ * Отображает {@link CompressedData} в столбец {@code data_compressed} и обратно без распаковки.
+ *
+ * <p>Создается Hibernate через контейнер бинов Spring, поэтому получает {@link BankRecordDataCodec}
+ * из контекста. {@link CompressedData} неизменяем, поэтому Hibernate не копирует значение
+ * для проверки изменений.</p>
+ */
+@Converter
+@Mutability(Immutability.class)
+public class CompressedDataConverter implements AttributeConverter<CompressedData, byte[]> {
+
+    private final BankRecordDataCodec codec;
+
+    public CompressedDataConverter(BankRecordDataCodec codec) {
+        this.codec = codec;
+    }
+
+    @Override
+    public byte[] convertToDatabaseColumn(CompressedData compressedData) {
+        return compressedData == null ? null : compressedData.bytes();
+    }
+
+    @Override
+    public CompressedData convertToEntityAttribute(byte[] bytes) {
+        return codec.wrap(bytes);
+    }
+}
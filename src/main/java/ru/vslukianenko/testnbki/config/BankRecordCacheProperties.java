@@ -0,0 +1,29 @@
+package ru.vslukianenko.testnbki.config;
+
+import lombok.Getter;
+import lombok.Setter;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+
+import java.time.Duration;
+
+/**
+ * Настройки кэша записей банка.
+ *
+ * <p>Свойства задаются с префиксом {@code bank-records.cache}:</p>
+ * <ul>
+ *   <li>{@code enabled} - включает кэш чтения; при значении {@code false} все запросы идут напрямую в базу данных.</li>
+ *   <li>{@code maximum-size} - максимальное количество записей в кэше, после которого начинается вытеснение.</li>
+ *   <li>{@code expire-after-write} - время жизни записи в кэше с момента загрузки.</li>
+ * </ul>
+ */
+@Getter
+@Setter
+@ConfigurationProperties(prefix = "bank-records.cache")
+public class BankRecordCacheProperties {
+
+    private boolean enabled = true;
+
+    private long maximumSize = 100_000;
+
+    private Duration expireAfterWrite = Duration.ofMinutes(10);
+}
@@ -0,0 +1,41 @@
+package ru.vslukianenko.testnbki.config;
+
+import lombok.Getter;
+import lombok.Setter;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+
+import java.nio.file.Path;
+import java.time.Duration;
+
+/**
+ * Настройки контрольных точек записей банка.
+ *
+ * <p>Свойства задаются с префиксом {@code bank-records.checkpoint}:</p>
+ * <ul>
+ *   <li>{@code enabled} - включает запись контрольных точек и восстановление из них при запуске.</li>
+ *   <li>{@code directory} - каталог файлов полных снимков и изменений.</li>
+ *   <li>{@code interval} - период записи контрольной точки.</li>
+ *   <li>{@code full-snapshot-every} - каждая какая контрольная точка записывается полным снимком;
+ *   остальные содержат только записи, измененные с предыдущей контрольной точки.</li>
+ *   <li>{@code restore-threads} - количество потоков, сохраняющих записи при восстановлении.</li>
+ *   <li>{@code chunk-size} - количество записей, читаемых из хранилища одним запросом при записи снимка
+ *   и сохраняемых одной транзакцией при восстановлении.</li>
+ * </ul>
+ */
+@Getter
+@Setter
+@ConfigurationProperties(prefix = "bank-records.checkpoint")
+public class BankRecordCheckpointProperties {
+
+    private boolean enabled = false;
+
+    private Path directory = Path.of("data", "checkpoint");
+
+    private Duration interval = Duration.ofMinutes(1);
+
+    private int fullSnapshotEvery = 10;
+
+    private int restoreThreads = 4;
+
+    private int chunkSize = 10_000;
+}
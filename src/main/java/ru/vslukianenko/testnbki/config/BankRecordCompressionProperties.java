@@ -0,0 +1,36 @@
+package ru.vslukianenko.testnbki.config;
+
+import lombok.Getter;
+import lombok.Setter;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+
+import java.nio.file.Path;
+
+/**
+ * Настройки сжатия данных записей банка.
+ *
+ * <p>Свойства задаются с префиксом {@code bank-records.compression}:</p>
+ * <ul>
+ *   <li>{@code enabled} - сжимает данные записей при сохранении в базу данных. Выключает поиск по данным,
+ *   если {@code bank-records.search.enabled} не задано явно, и не поддерживается хранилищем вне кучи
+ *   ({@code bank-records.storage.mode=off-heap}).</li>
+ *   <li>{@code min-length} - данные короче этого количества символов сохраняются как есть.</li>
+ *   <li>{@code level} - уровень сжатия deflate от 1 (быстрее) до 9 (меньше).</li>
+ *   <li>{@code dictionary} - необязательный файл словаря deflate, например несколько типичных записей подряд;
+ *   используются последние 32 КБ файла. Данные, сжатые со словарем, читаются только с тем же словарем,
+ *   поэтому для существующих данных его менять нельзя.</li>
+ * </ul>
+ */
+@Getter
+@Setter
+@ConfigurationProperties(prefix = "bank-records.compression")
+public class BankRecordCompressionProperties {
+
+    private boolean enabled = false;
+
+    private int minLength = 512;
+
+    private int level = 6;
+
+    private Path dictionary;
+}
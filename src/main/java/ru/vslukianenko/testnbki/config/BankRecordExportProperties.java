@@ -0,0 +1,21 @@
+package ru.vslukianenko.testnbki.config;
+
+import lombok.Getter;
+import lombok.Setter;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+
+/**
+ * Настройки потоковой выгрузки записей банка.
+ *
+ * <p>Свойства задаются с префиксом {@code bank-records.export}:</p>
+ * <ul>
+ *   <li>{@code page-size} - количество записей, читаемых из базы данных одним запросом.</li>
+ * </ul>
+ */
+@Getter
+@Setter
+@ConfigurationProperties(prefix = "bank-records.export")
+public class BankRecordExportProperties {
+
+    private int pageSize = 1000;
+}
@@ -0,0 +1,25 @@
+package ru.vslukianenko.testnbki.config;
+
+import lombok.Getter;
+import lombok.Setter;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+
+/**
+ * Настройки потоковой загрузки записей банка.
+ *
+ * <p>Свойства задаются с префиксом {@code bank-records.ingest}:</p>
+ * <ul>
+ *   <li>{@code chunk-size} - количество записей, передаваемых в базу данных одним пакетом.</li>
+ *   <li>{@code max-line-length} - максимальная длина строки в символах; более длинные строки отклоняются
+ *   без чтения в память.</li>
+ * </ul>
+ */
+@Getter
+@Setter
+@ConfigurationProperties(prefix = "bank-records.ingest")
+public class BankRecordIngestProperties {
+
+    private int chunkSize = 1000;
+
+    private int maxLineLength = 1_000_000;
+}
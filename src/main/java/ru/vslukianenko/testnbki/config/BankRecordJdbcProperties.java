@@ -0,0 +1,21 @@
+package ru.vslukianenko.testnbki.config;
+
+import lombok.Getter;
+import lombok.Setter;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+
+/**
+ * Настройки прямого JDBC-доступа к записям банка.
+ *
+ * <p>Свойства задаются с префиксом {@code bank-records.jdbc}:</p>
+ * <ul>
+ *   <li>{@code batch-size} - количество строк, отправляемых в базу данных одним JDBC-пакетом.</li>
+ * </ul>
+ */
+@Getter
+@Setter
+@ConfigurationProperties(prefix = "bank-records.jdbc")
+public class BankRecordJdbcProperties {
+
+    private int batchSize = 1000;
+}
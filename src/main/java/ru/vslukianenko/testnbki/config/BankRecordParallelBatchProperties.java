@@ -0,0 +1,37 @@
+package ru.vslukianenko.testnbki.config;
+
+import lombok.Getter;
+import lombok.Setter;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+
+import java.time.Duration;
+
+/**
+ * Настройки параллельного выполнения массовых операций с записями банка.
+ *
+ * <p>Свойства задаются с префиксом {@code bank-records.parallel-batch}:</p>
+ * <ul>
+ *   <li>{@code workers} - количество потоков, обрабатывающих части одной операции параллельно.</li>
+ *   <li>{@code chunk-size} - начальный размер части, сохраняемой отдельной транзакцией.</li>
+ *   <li>{@code adaptive} - подстраивать ли размер части под {@code target-chunk-duration}.</li>
+ *   <li>{@code min-chunk-size}, {@code max-chunk-size} - границы адаптивного размера части.</li>
+ *   <li>{@code target-chunk-duration} - желаемое время обработки одной части.</li>
+ * </ul>
+ */
+@Getter
+@Setter
+@ConfigurationProperties(prefix = "bank-records.parallel-batch")
+public class BankRecordParallelBatchProperties {
+
+    private int workers = 4;
+
+    private int chunkSize = 1000;
+
+    private boolean adaptive = true;
+
+    private int minChunkSize = 100;
+
+    private int maxChunkSize = 10_000;
+
+    private Duration targetChunkDuration = Duration.ofMillis(200);
+}
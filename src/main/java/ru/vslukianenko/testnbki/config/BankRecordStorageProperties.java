@@ -0,0 +1,99 @@
+package ru.vslukianenko.testnbki.config;
+
+import lombok.Getter;
+import lombok.Setter;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.util.unit.DataSize;
+
+import java.nio.file.Path;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Настройки хранилища записей банка.
+ *
+ * <p>Свойства задаются с префиксом {@code bank-records.storage}:</p>
+ * <ul>
+ *   <li>{@code mode} - {@code single}: все записи хранятся в основной базе данных ({@code spring.datasource});
+ *   {@code partitioned}: записи распределяются по хешу идентификатора между базами данных {@code partitions};
+ *   {@code off-heap}: записи хранятся вне кучи и в журнале {@code off-heap.log-path}.</li>
+ *   <li>{@code partitions} - базы данных секций: {@code url}, {@code username}, {@code password}
+ *   и {@code maximum-pool-size} пула соединений секции. Порядок секций определяет распределение записей
+ *   и не должен меняться для существующих данных.</li>
+ *   <li>{@code fan-out-workers} - количество потоков, выполняющих запросы к секциям параллельно.</li>
+ *   <li>{@code off-heap.log-path} - файл журнала записей, который воспроизводится при запуске.</li>
+ *   <li>{@code off-heap.segment-size} - размер сегмента памяти вне кучи; ограничивает и размер одной записи.</li>
+ *   <li>{@code off-heap.fsync} - сбрасывать ли журнал на диск после каждой операции записи.</li>
+ *   <li>{@code off-heap.compaction-interval} - период проверки необходимости сжатия журнала.</li>
+ *   <li>{@code off-heap.compaction-ratio}, {@code off-heap.compaction-min-log-size} - журнал сжимается,
+ *   если он больше минимального размера и во столько раз больше актуальных записей.</li>
+ * </ul>
+ */
+@Getter
+@Setter
+@ConfigurationProperties(prefix = "bank-records.storage")
+public class BankRecordStorageProperties {
+
+    private Mode mode = Mode.SINGLE;
+
+    private List<Partition> partitions = new ArrayList<>();
+
+    private int fanOutWorkers = 8;
+
+    private OffHeap offHeap = new OffHeap();
+
+    /**
+     * Проверяет, хранятся ли записи в основной базе данных, с которой работает JPA.
+     *
+     * @return true, если {@code mode} равен {@code single}
+     */
+    public boolean isJpaStorage() {
+        return mode == Mode.SINGLE;
+    }
+
+    /**
+     * Режим хранилища записей.
+     */
+    public enum Mode {
+        SINGLE,
+        PARTITIONED,
+        OFF_HEAP
+    }
+
+    /**
+     * Подключение к базе данных одной секции.
+     */
+    @Getter
+    @Setter
+    public static class Partition {
+
+        private String url;
+
+        private String username = "sa";
+
+        private String password = "";
+
+        private int maximumPoolSize = 10;
+    }
+
+    /**
+     * Настройки хранилища вне кучи.
+     */
+    @Getter
+    @Setter
+    public static class OffHeap {
+
+        private Path logPath = Path.of("data", "bank-records.log");
+
+        private DataSize segmentSize = DataSize.ofMegabytes(64);
+
+        private boolean fsync = false;
+
+        private Duration compactionInterval = Duration.ofMinutes(1);
+
+        private double compactionRatio = 2.0;
+
+        private DataSize compactionMinLogSize = DataSize.ofMegabytes(16);
+    }
+}
@@ -0,0 +1,21 @@
+package ru.vslukianenko.testnbki.config;
+
+import lombok.Getter;
+import lombok.Setter;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+
+/**
+ * Настройки массовой вставки-или-обновления (upsert) записей банка.
+ *
+ * <p>Свойства задаются с префиксом {@code bank-records.upsert}:</p>
+ * <ul>
+ *   <li>{@code chunk-size} - количество записей, обрабатываемых одним пакетом MERGE.</li>
+ * </ul>
+ */
+@Getter
+@Setter
+@ConfigurationProperties(prefix = "bank-records.upsert")
+public class BankRecordUpsertProperties {
+
+    private int chunkSize = 1000;
+}
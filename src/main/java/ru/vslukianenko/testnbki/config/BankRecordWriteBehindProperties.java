@@ -0,0 +1,39 @@
+package ru.vslukianenko.testnbki.config;
+
+import lombok.Getter;
+import lombok.Setter;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+
+import java.time.Duration;
+
+/**
+ * Настройки асинхронной записи (write-behind) одиночных записей банка.
+ *
+ * <p>Свойства задаются с префиксом {@code bank-records.write-behind}:</p>
+ * <ul>
+ *   <li>{@code enabled} - включает асинхронный режим создания записей.</li>
+ *   <li>{@code queue-capacity} - максимальное количество записей, ожидающих сохранения.</li>
+ *   <li>{@code max-batch-size} - максимальное количество записей, сохраняемых одной транзакцией.</li>
+ *   <li>{@code max-delay} - максимальное время ожидания пополнения пакета перед сохранением.</li>
+ *   <li>{@code offer-timeout} - время ожидания места в заполненной очереди, после которого запрос отклоняется.</li>
+ *   <li>{@code dead-letter-capacity} - максимальное количество записей, которые не удалось сохранить
+ *   и которые хранятся для повторной попытки.</li>
+ * </ul>
+ */
+@Getter
+@Setter
+@ConfigurationProperties(prefix = "bank-records.write-behind")
+public class BankRecordWriteBehindProperties {
+
+    private boolean enabled = false;
+
+    private int queueCapacity = 100_000;
+
+    private int maxBatchSize = 1000;
+
+    private Duration maxDelay = Duration.ofMillis(10);
+
+    private Duration offerTimeout = Duration.ofMillis(100);
+
+    private int deadLetterCapacity = 10_000;
+}
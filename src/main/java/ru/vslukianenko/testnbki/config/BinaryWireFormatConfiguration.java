@@ -0,0 +1,40 @@
+package ru.vslukianenko.testnbki.config;
+
+import com.fasterxml.jackson.dataformat.cbor.CBORFactory;
+import com.fasterxml.jackson.dataformat.smile.SmileFactory;
+import com.fasterxml.jackson.dataformat.smile.SmileGenerator;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.http.converter.cbor.MappingJackson2CborHttpMessageConverter;
+import org.springframework.http.converter.json.Jackson2ObjectMapperBuilder;
+import org.springframework.http.converter.smile.MappingJackson2SmileHttpMessageConverter;
+
+/**
+ * Двоичные форматы обмена для эндпоинтов записей банка.
+ *
+ * <p>Помимо JSON, запросы и ответы могут передаваться в форматах Smile
+ * ({@code application/x-jackson-smile}) и CBOR ({@code application/cbor}); формат выбирается по заголовкам
+ * {@code Content-Type} и {@code Accept}. В обоих форматах UUID передается 16 байтами вместо строки из 36 символов,
+ * а строки и числа не требуют текстового разбора, поэтому массовые запросы меньше по размеру и быстрее разбираются.
+ * Двоичные значения в Smile записываются без 7-битного кодирования, которое увеличивает их размер на 1/7.</p>
+ *
+ * <p>Конвертеры строятся из настроенного Spring Boot {@link Jackson2ObjectMapperBuilder}, поэтому
+ * используют те же модули и настройки {@code spring.jackson.*}, что и JSON.</p>
+ */
+@Configuration
+public class BinaryWireFormatConfiguration {
+
+    @Bean
+    public MappingJackson2SmileHttpMessageConverter smileHttpMessageConverter(Jackson2ObjectMapperBuilder builder) {
+        return new MappingJackson2SmileHttpMessageConverter(builder.createXmlMapper(false)
+                .factory(SmileFactory.builder().disable(SmileGenerator.Feature.ENCODE_BINARY_AS_7BIT).build())
+                .build());
+    }
+
+    @Bean
+    public MappingJackson2CborHttpMessageConverter cborHttpMessageConverter(Jackson2ObjectMapperBuilder builder) {
+        return new MappingJackson2CborHttpMessageConverter(builder.createXmlMapper(false)
+                .factory(new CBORFactory())
+                .build());
+    }
+}
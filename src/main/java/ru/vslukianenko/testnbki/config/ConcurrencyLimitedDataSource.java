@@ -0,0 +1,147 @@
+package ru.vslukianenko.testnbki.config;
+
+import io.micrometer.core.instrument.Timer;
+import org.springframework.jdbc.datasource.DelegatingDataSource;
+
+import javax.sql.DataSource;
+import java.io.Closeable;
+import java.io.IOException;
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Proxy;
+import java.sql.Connection;
+import java.sql.SQLException;
+import java.sql.SQLTransientConnectionException;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+/**
+ * Источник данных, ограничивающий количество одновременно выданных соединений.
+ *
+ * <p>Перед получением соединения из целевого пула поток получает разрешение семафора, а при закрытии
+ * соединения разрешение возвращается. Количество разрешений равно размеру пула, поэтому потоки сверх
+ * этого количества ждут в справедливой очереди семафора и не создают нагрузку на пул и базу данных.
+ * Это важно для виртуальных потоков: их количество не ограничено пулом потоков сервера, и без
+ * ограничения тысячи одновременных запросов конкурировали бы за несколько соединений.</p>
+ *
+ * <p>Закрытие источника данных закрывает целевой пул соединений, если пул реализует {@link Closeable}
+ * (как HikariCP).</p>
+ *
+ * <p>Запросы, которым не нужна база данных (например, чтение из кэша), ограничением не затрагиваются.</p>
+ */
+public class ConcurrencyLimitedDataSource extends DelegatingDataSource implements Closeable {
+
+    private final Semaphore permits;
+
+    private final long acquireTimeoutNanos;
+
+    private volatile Timer acquireTimer;
+
+    public ConcurrencyLimitedDataSource(DataSource targetDataSource, int maxConcurrent, long acquireTimeoutNanos) {
+        super(targetDataSource);
+        this.permits = new Semaphore(maxConcurrent, true);
+        this.acquireTimeoutNanos = acquireTimeoutNanos;
+    }
+
+    @Override
+    public Connection getConnection() throws SQLException {
+        acquire();
+        try {
+            return limited(super.getConnection());
+        } catch (SQLException | RuntimeException e) {
+            permits.release();
+            throw e;
+        }
+    }
+
+    @Override
+    public Connection getConnection(String username, String password) throws SQLException {
+        acquire();
+        try {
+            return limited(super.getConnection(username, password));
+        } catch (SQLException | RuntimeException e) {
+            permits.release();
+            throw e;
+        }
+    }
+
+    /**
+     * Возвращает количество потоков, ожидающих разрешения.
+     *
+     * @return длина очереди ожидания
+     */
+    public int getWaitingThreads() {
+        return permits.getQueueLength();
+    }
+
+    /**
+     * Возвращает количество свободных разрешений.
+     *
+     * @return количество соединений, которые можно получить без ожидания
+     */
+    public int getAvailablePermits() {
+        return permits.availablePermits();
+    }
+
+    /**
+     * Задает таймер, в который записывается время ожидания разрешения, включая неудачные ожидания.
+     *
+     * @param acquireTimer таймер ожидания разрешения
+     */
+    public void setAcquireTimer(Timer acquireTimer) {
+        this.acquireTimer = acquireTimer;
+    }
+
+    /**
+     * Закрывает целевой пул соединений при остановке приложения.
+     */
+    @Override
+    public void close() throws IOException {
+        if (obtainTargetDataSource() instanceof Closeable closeable) {
+            closeable.close();
+        }
+    }
+
+    private void acquire() throws SQLException {
+        long start = System.nanoTime();
+        try {
+            boolean acquired = permits.tryAcquire(acquireTimeoutNanos, TimeUnit.NANOSECONDS);
+            Timer timer = acquireTimer;
+            if (timer != null) {
+                timer.record(System.nanoTime() - start, TimeUnit.NANOSECONDS);
+            }
+            if (!acquired) {
+                throw new SQLTransientConnectionException(
+                        "Database concurrency limit reached, no connection permit within "
+                                + TimeUnit.NANOSECONDS.toMillis(acquireTimeoutNanos) + " ms");
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new SQLTransientConnectionException("Interrupted while waiting for a connection permit", e);
+        }
+    }
+
+    private Connection limited(Connection connection) {
+        AtomicBoolean released = new AtomicBoolean();
+        return (Connection) Proxy.newProxyInstance(Connection.class.getClassLoader(), new Class<?>[]{Connection.class},
+                (proxy, method, args) -> {
+                    switch (method.getName()) {
+                        case "equals":
+                            return proxy == args[0];
+                        case "hashCode":
+                            return System.identityHashCode(proxy);
+                        default:
+                            break;
+                    }
+                    try {
+                        return method.invoke(connection, args);
+                    } catch (InvocationTargetException e) {
+                        throw e.getCause();
+                    } finally {
+                        if (method.getName().equals("close") && released.compareAndSet(false, true)) {
+                            permits.release();
+                        }
+                    }
+                });
+    }
+}
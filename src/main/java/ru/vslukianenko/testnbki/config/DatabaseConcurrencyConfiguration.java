@@ -0,0 +1,94 @@
+package ru.vslukianenko.testnbki.config;
+
+import com.zaxxer.hikari.HikariDataSource;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.Timer;
+import io.micrometer.core.instrument.binder.MeterBinder;
+import org.springframework.beans.factory.config.BeanPostProcessor;
+import org.springframework.boot.context.properties.bind.Binder;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.core.env.Environment;
+
+import javax.sql.DataSource;
+
+/**
+ * Подключает {@link ConcurrencyLimitedDataSource} к пулам соединений Hikari приложения.
+ *
+ * <p>Каждый {@link HikariDataSource} оборачивается после инициализации, количество разрешений
+ * равно {@code bank-records.db-concurrency.max-concurrent} или, если оно не задано, размеру пула.
+ * Пулы секций не являются бинами и оборачиваются при создании в {@link PartitionedStorageConfiguration}
+ * тем же методом {@link #limit(DataSource, int, DatabaseConcurrencyProperties)}.</p>
+ */
+@Configuration
+public class DatabaseConcurrencyConfiguration {
+
+    private static final int DEFAULT_POOL_SIZE = 10;
+
+    /**
+     * Настройки связываются напрямую из {@link Environment}: пост-процессор создается раньше
+     * бинов {@code @ConfigurationProperties} и не может от них зависеть.
+     */
+    @Bean
+    public static BeanPostProcessor concurrencyLimitedDataSourcePostProcessor(Environment environment) {
+        return new BeanPostProcessor() {
+            @Override
+            public Object postProcessAfterInitialization(Object bean, String beanName) {
+                if (!(bean instanceof HikariDataSource hikari)) {
+                    return bean;
+                }
+                DatabaseConcurrencyProperties concurrency = Binder.get(environment)
+                        .bindOrCreate("bank-records.db-concurrency", DatabaseConcurrencyProperties.class);
+                return limit(hikari, poolSize(hikari), concurrency);
+            }
+        };
+    }
+
+    /**
+     * Оборачивает пул соединений в {@link ConcurrencyLimitedDataSource}, если ограничение включено.
+     *
+     * @param dataSource  пул соединений
+     * @param poolSize    размер пула, используется при {@code max-concurrent = 0}
+     * @param concurrency настройки ограничения
+     * @return ограниченный источник данных или исходный пул, если ограничение выключено
+     */
+    static DataSource limit(DataSource dataSource, int poolSize, DatabaseConcurrencyProperties concurrency) {
+        if (!concurrency.isEnabled()) {
+            return dataSource;
+        }
+        int maxConcurrent = concurrency.getMaxConcurrent() > 0 ? concurrency.getMaxConcurrent() : poolSize;
+        return new ConcurrencyLimitedDataSource(dataSource, maxConcurrent, concurrency.getAcquireTimeout().toNanos());
+    }
+
+    /**
+     * Метрики ограничения: {@code bank.records.db.concurrency.waiting} - потоки, ожидающие соединения,
+     * {@code bank.records.db.concurrency.available} - свободные разрешения,
+     * {@code bank.records.db.concurrency.acquire} - время ожидания разрешения. Время ожидания соединения
+     * в самом пуле публикуется Hikari в {@code hikaricp.connections.acquire}.
+     */
+    @Bean
+    public MeterBinder databaseConcurrencyMetrics(DataSource dataSource) {
+        return registry -> {
+            if (dataSource instanceof ConcurrencyLimitedDataSource limited) {
+                Gauge.builder("bank.records.db.concurrency.waiting", limited, ConcurrencyLimitedDataSource::getWaitingThreads)
+                        .description("Threads waiting for a database connection permit")
+                        .register(registry);
+                Gauge.builder("bank.records.db.concurrency.available", limited, ConcurrencyLimitedDataSource::getAvailablePermits)
+                        .description("Free database connection permits")
+                        .register(registry);
+                limited.setAcquireTimer(Timer.builder("bank.records.db.concurrency.acquire")
+                        .description("Time spent waiting for a database connection permit")
+                        .publishPercentiles(0.5, 0.95, 0.99)
+                        .register(registry));
+            }
+        };
+    }
+
+    /**
+     * Размер пула Hikari; до запуска пула не заданный размер равен {@code -1}, и Hikari использует
+     * значение по умолчанию.
+     */
+    private static int poolSize(HikariDataSource hikari) {
+        return hikari.getMaximumPoolSize() > 0 ? hikari.getMaximumPoolSize() : DEFAULT_POOL_SIZE;
+    }
+}
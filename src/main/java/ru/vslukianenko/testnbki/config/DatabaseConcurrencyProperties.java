@@ -0,0 +1,30 @@
+package ru.vslukianenko.testnbki.config;
+
+import lombok.Getter;
+import lombok.Setter;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+
+import java.time.Duration;
+
+/**
+ * Настройки ограничения количества одновременных обращений к базе данных.
+ *
+ * <p>Свойства задаются с префиксом {@code bank-records.db-concurrency}:</p>
+ * <ul>
+ *   <li>{@code enabled} - включает ограничение.</li>
+ *   <li>{@code max-concurrent} - максимальное количество одновременно открытых соединений;
+ *   значение {@code 0} означает размер пула Hikari ({@code spring.datasource.hikari.maximum-pool-size}).</li>
+ *   <li>{@code acquire-timeout} - время ожидания разрешения, после которого запрос соединения завершается ошибкой.</li>
+ * </ul>
+ */
+@Getter
+@Setter
+@ConfigurationProperties(prefix = "bank-records.db-concurrency")
+public class DatabaseConcurrencyProperties {
+
+    private boolean enabled = true;
+
+    private int maxConcurrent = 0;
+
+    private Duration acquireTimeout = Duration.ofSeconds(30);
+}
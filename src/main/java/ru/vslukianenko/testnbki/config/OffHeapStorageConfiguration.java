@@ -0,0 +1,32 @@
+package ru.vslukianenko.testnbki.config;
+
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.context.annotation.Primary;
+import ru.vslukianenko.testnbki.repo.offheap.OffHeapBankRecordStore;
+
+/**
+ * Подключает {@link OffHeapBankRecordStore} при {@code bank-records.storage.mode=off-heap}.
+ *
+ * <p>Хранилище становится основным {@link ru.vslukianenko.testnbki.repo.BankRecordStore}; основная база данных
+ * и JPA остаются в контексте, но записи банка в них не хранятся.</p>
+ *
+ * <p>Хранилище вне кучи не сжимает данные записей ({@code bank-records.compression}), поэтому такая
+ * конфигурация отклоняется при запуске, а не сохраняет данные несжатыми незаметно для пользователя.</p>
+ */
+@Configuration
+@ConditionalOnProperty(name = "bank-records.storage.mode", havingValue = "off-heap")
+public class OffHeapStorageConfiguration {
+
+    @Bean
+    @Primary
+    public OffHeapBankRecordStore offHeapBankRecordStore(BankRecordStorageProperties storageProperties,
+                                                         BankRecordCompressionProperties compressionProperties) {
+        if (compressionProperties.isEnabled()) {
+            throw new IllegalStateException("Off-heap storage does not compress record data: set "
+                    + "bank-records.compression.enabled=false to use bank-records.storage.mode=off-heap");
+        }
+        return new OffHeapBankRecordStore(storageProperties.getOffHeap());
+    }
+}
@@ -0,0 +1,65 @@
+package ru.vslukianenko.testnbki.config;
+
+import com.zaxxer.hikari.HikariDataSource;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.boot.autoconfigure.thread.Threading;
+import org.springframework.boot.jdbc.DataSourceBuilder;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.context.annotation.Primary;
+import org.springframework.core.env.Environment;
+import ru.vslukianenko.testnbki.compression.BankRecordDataCodec;
+import ru.vslukianenko.testnbki.repo.PartitionedBankRecordStore;
+
+import javax.sql.DataSource;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Подключает {@link PartitionedBankRecordStore} при {@code bank-records.storage.mode=partitioned}.
+ *
+ * <p>Пулы соединений секций создаются здесь, а не бинами {@link DataSource}: иначе Spring Boot
+ * не выбрал бы основной источник данных для JPA. Хранилище секций становится основным
+ * {@link ru.vslukianenko.testnbki.repo.BankRecordStore}. Поэтому пулы секций не проходят через
+ * пост-процессор {@link DatabaseConcurrencyConfiguration} и ограничиваются {@code bank-records.db-concurrency}
+ * здесь же, при создании; {@code max-concurrent = 0} означает размер пула секции.</p>
+ */
+@Configuration
+@ConditionalOnProperty(name = "bank-records.storage.mode", havingValue = "partitioned")
+public class PartitionedStorageConfiguration {
+
+    private static final String POOL_NAME_PREFIX = "bank-record-partition-";
+
+    @Bean
+    @Primary
+    public PartitionedBankRecordStore partitionedBankRecordStore(BankRecordStorageProperties storageProperties,
+                                                                 BankRecordJdbcProperties jdbcProperties,
+                                                                 BankRecordDataCodec codec,
+                                                                 DatabaseConcurrencyProperties concurrency,
+                                                                 Environment environment) {
+        List<BankRecordStorageProperties.Partition> partitions = storageProperties.getPartitions();
+        if (partitions.isEmpty()) {
+            throw new IllegalStateException("bank-records.storage.partitions must not be empty in partitioned mode");
+        }
+        List<DataSource> dataSources = new ArrayList<>(partitions.size());
+        for (int i = 0; i < partitions.size(); i++) {
+            BankRecordStorageProperties.Partition partition = partitions.get(i);
+            dataSources.add(DatabaseConcurrencyConfiguration.limit(dataSource(partition, i),
+                    partition.getMaximumPoolSize(), concurrency));
+        }
+        return new PartitionedBankRecordStore(dataSources, jdbcProperties, codec,
+                storageProperties.getFanOutWorkers(), Threading.VIRTUAL.isActive(environment));
+    }
+
+    private static HikariDataSource dataSource(BankRecordStorageProperties.Partition partition, int index) {
+        HikariDataSource dataSource = DataSourceBuilder.create()
+                .type(HikariDataSource.class)
+                .url(partition.getUrl())
+                .username(partition.getUsername())
+                .password(partition.getPassword())
+                .build();
+        dataSource.setMaximumPoolSize(partition.getMaximumPoolSize());
+        dataSource.setPoolName(POOL_NAME_PREFIX + index);
+        return dataSource;
+    }
+}
@@ -0,0 +1,24 @@
+package ru.vslukianenko.testnbki.config;
+
+import org.springframework.boot.autoconfigure.condition.ConditionalOnJava;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.boot.system.JavaVersion;
+import org.springframework.context.annotation.Configuration;
+
+/**
+ * Запрещает запуск с {@code spring.threads.virtual.enabled=true} на Java до 21.
+ *
+ * <p>Spring Boot на таких версиях молча игнорирует свойство, и Tomcat, пулы параллельных массовых операций
+ * и секций работают на платформенных потоках. Чтобы запуск в режиме виртуальных потоков не подменялся
+ * незаметно другим режимом, приложение завершается с ошибкой при старте.</p>
+ */
+@Configuration
+@ConditionalOnProperty(name = "spring.threads.virtual.enabled", havingValue = "true")
+@ConditionalOnJava(range = ConditionalOnJava.Range.OLDER_THAN, value = JavaVersion.TWENTY_ONE)
+public class VirtualThreadsConfiguration {
+
+    public VirtualThreadsConfiguration() {
+        throw new IllegalStateException("spring.threads.virtual.enabled=true requires Java 21+, running on Java "
+                + Runtime.version().feature() + "; unset VIRTUAL_THREADS_ENABLED or run on Java 21+");
+    }
+}
@@ -1,19 +1,47 @@
 package ru.vslukianenko.testnbki.controller;
 
 
+import jakarta.persistence.OptimisticLockException;
 import lombok.RequiredArgsConstructor;
+import org.springframework.beans.factory.ObjectProvider;
+import org.springframework.dao.OptimisticLockingFailureException;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
 import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.annotation.DeleteMapping;
+import org.springframework.web.bind.annotation.ExceptionHandler;
 import org.springframework.web.bind.annotation.GetMapping;
 import org.springframework.web.bind.annotation.PathVariable;
 import org.springframework.web.bind.annotation.PostMapping;
 import org.springframework.web.bind.annotation.PutMapping;
 import org.springframework.web.bind.annotation.RequestBody;
+import org.springframework.web.bind.annotation.RequestHeader;
 import org.springframework.web.bind.annotation.RequestMapping;
+import org.springframework.web.bind.annotation.RequestParam;
 import org.springframework.web.bind.annotation.RestController;
+import org.springframework.web.context.request.WebRequest;
+import org.springframework.web.servlet.mvc.method.annotation.StreamingResponseBody;
+import ru.vslukianenko.testnbki.dto.BatchReport;
+import ru.vslukianenko.testnbki.dto.FailedWrite;
+import ru.vslukianenko.testnbki.dto.IngestResult;
+import ru.vslukianenko.testnbki.dto.LookupResult;
+import ru.vslukianenko.testnbki.dto.SearchPage;
+import ru.vslukianenko.testnbki.dto.UpsertResult;
 import ru.vslukianenko.testnbki.model.BankRecord;
+import ru.vslukianenko.testnbki.service.BankRecordExportService;
+import ru.vslukianenko.testnbki.service.BankRecordIngestException;
+import ru.vslukianenko.testnbki.service.BankRecordIngestService;
+import ru.vslukianenko.testnbki.service.BankRecordParallelBatchExecutor;
+import ru.vslukianenko.testnbki.service.BankRecordSearchService;
 import ru.vslukianenko.testnbki.service.BankRecordService;
+import ru.vslukianenko.testnbki.service.BankRecordWriteBehindQueue;
+import ru.vslukianenko.testnbki.service.InvalidIngestLineException;
+import ru.vslukianenko.testnbki.service.InvalidSearchRequestException;
 
+import java.io.IOException;
+import java.io.InputStream;
+import java.net.URI;
 import java.util.List;
 import java.util.Optional;
 import java.util.UUID;
@@ -35,15 +63,72 @@ public class BankRecordController {
 
 
     private final BankRecordService bankRecordService;
+
+    private final BankRecordIngestService bankRecordIngestService;
+
+    private final BankRecordExportService bankRecordExportService;
+
+    private final ObjectProvider<BankRecordWriteBehindQueue> writeBehindQueueProvider;
+
+    private final BankRecordParallelBatchExecutor bankRecordParallelBatchExecutor;
+
+    private final BankRecordSearchService bankRecordSearchService;
     /**
      * Создает новую запись банка.
      *
+     * <p>Если включен асинхронный режим ({@code bank-records.write-behind.enabled}), запись получает
+     * идентификатор и ставится в очередь {@link BankRecordWriteBehindQueue}, а ответ со статусом 202
+     * возвращается сразу. Если очередь заполнена, возвращается статус 503.</p>
+     *
+     * <p>Статус 202 означает только, что запись принята в очередь в памяти: до фиксации её пакета запись
+     * не видна по адресу из заголовка {@code Location} и теряется при аварийном завершении процесса.
+     * Запись, которую не удалось сохранить, возвращается методом {@link #getFailedWrites()} и может быть
+     * сохранена повторно методом {@link #retryFailedWrites()}.</p>
+     *
      * @param bankRecord объект {@link BankRecord}, представляющий данные новой записи
-     * @return созданная запись банка
+     * @return {@link ResponseEntity} с созданной (или принятой к созданию) записью банка
+     * @throws InterruptedException если поток был прерван во время ожидания места в очереди
      */
     @PostMapping
-    public BankRecord createBankRecord(@RequestBody BankRecord bankRecord) {
-        return bankRecordService.createBankRecord(bankRecord);
+    public ResponseEntity<BankRecord> createBankRecord(@RequestBody BankRecord bankRecord) throws InterruptedException {
+        BankRecordWriteBehindQueue writeBehindQueue = writeBehindQueueProvider.getIfAvailable();
+        if (writeBehindQueue == null) {
+            return ResponseEntity.ok(bankRecordService.createBankRecord(bankRecord));
+        }
+        if (!writeBehindQueue.enqueue(bankRecord)) {
+            return ResponseEntity.status(HttpStatus.SERVICE_UNAVAILABLE)
+                    .header(HttpHeaders.RETRY_AFTER, "1")
+                    .build();
+        }
+        return ResponseEntity.accepted()
+                .location(URI.create("/api/records/" + bankRecord.getId()))
+                .body(bankRecord);
+    }
+
+    /**
+     * Возвращает записи, принятые в асинхронном режиме, которые не удалось сохранить.
+     *
+     * @return {@link ResponseEntity} со списком недоставленных записей или статусом 404,
+     * если асинхронный режим выключен
+     */
+    @GetMapping("/write-behind/failed")
+    public ResponseEntity<List<FailedWrite>> getFailedWrites() {
+        return Optional.ofNullable(writeBehindQueueProvider.getIfAvailable())
+                .map(writeBehindQueue -> ResponseEntity.ok(writeBehindQueue.getFailed()))
+                .orElseGet(() -> ResponseEntity.notFound().build());
+    }
+
+    /**
+     * Повторно сохраняет записи, принятые в асинхронном режиме, которые не удалось сохранить.
+     *
+     * @return {@link ResponseEntity} со списком записей, которые не удалось сохранить и при повторной попытке,
+     * или статусом 404, если асинхронный режим выключен
+     */
+    @PostMapping("/write-behind/failed/retry")
+    public ResponseEntity<List<FailedWrite>> retryFailedWrites() {
+        return Optional.ofNullable(writeBehindQueueProvider.getIfAvailable())
+                .map(writeBehindQueue -> ResponseEntity.ok(writeBehindQueue.retryFailed()))
+                .orElseGet(() -> ResponseEntity.notFound().build());
     }
     /**
      * Массовое создание записей банка.
@@ -54,29 +139,165 @@ public class BankRecordController {
     public void batchCreateBankRecords(@RequestBody List<BankRecord> bankRecords) {
         bankRecordService.batchCreateBankRecords(bankRecords);
     }
+    /**
+     * Массовое создание записей банка по частям в параллельных транзакциях.
+     *
+     * @param bankRecords список объектов {@link BankRecord}, представляющих данные новых записей
+     * @return {@link BatchReport} с результатом по каждой части
+     */
+    @PostMapping("/list/parallel")
+    public BatchReport parallelCreateBankRecords(@RequestBody List<BankRecord> bankRecords) {
+        return bankRecordParallelBatchExecutor.createAll(bankRecords);
+    }
+    /**
+     * Потоковая загрузка записей банка в формате NDJSON (одна JSON-запись на строку).
+     * Записи сохраняются пакетами по мере чтения тела запроса, без загрузки его целиком в память.
+     * Некорректные и слишком длинные строки отклоняются. Строка, которая содержит не JSON-объект,
+     * прекращает загрузку со статусом 400 и номером строки в ответе. Если пакет не удалось сохранить,
+     * загрузка прекращается и возвращается статус 500 с количеством записей, сохраненных до сбоя.
+     *
+     * @param body поток тела запроса
+     * @return {@link IngestResult} с количеством принятых записей и отклоненных строк
+     * @throws IOException если не удалось прочитать тело запроса
+     */
+    @PostMapping(value = "/stream", consumes = "application/x-ndjson")
+    public IngestResult ingestBankRecords(InputStream body) throws IOException {
+        return bankRecordIngestService.ingest(body);
+    }
+    /**
+     * Потоковая выгрузка всех записей банка в формате NDJSON (одна JSON-запись на строку).
+     * Записи читаются из базы данных страницами по мере отправки клиенту.
+     *
+     * @return тело ответа, записываемое в поток по мере чтения страниц
+     */
+    @GetMapping(value = "/export", produces = "application/x-ndjson")
+    public ResponseEntity<StreamingResponseBody> exportBankRecords() {
+        StreamingResponseBody body = bankRecordExportService::export;
+        return ResponseEntity.ok()
+                .contentType(MediaType.parseMediaType("application/x-ndjson"))
+                .body(body);
+    }
+    /**
+     * Возвращает количество записей банка без загрузки строк.
+     *
+     * @return количество записей
+     */
+    @GetMapping("/count")
+    public long countBankRecords() {
+        return bankRecordService.countBankRecords();
+    }
     /**
      * Получает запись банка по её идентификатору.
      *
+     * <p>Ответ содержит заголовок {@code ETag} с версией записи. Если версия совпадает с заголовком
+     * {@code If-None-Match}, возвращается статус 304 без тела.</p>
+     *
      * @param id уникальный идентификатор записи банка
-     * @return {@link ResponseEntity} с найденной записью банка или статусом 404, если запись не найдена
+     * @param request текущий запрос для проверки {@code If-None-Match}
+     * @return {@link ResponseEntity} с найденной записью банка, статусом 304, если запись не изменилась,
+     * или статусом 404, если запись не найдена
      */
     @GetMapping("/{id}")
-    public ResponseEntity<BankRecord> getBankRecordById(@PathVariable UUID id) {
+    public ResponseEntity<BankRecord> getBankRecordById(@PathVariable UUID id, WebRequest request) {
         Optional<BankRecord> bankRecord = bankRecordService.getBankRecordById(id);
-        return bankRecord.map(ResponseEntity::ok)
-                .orElseGet(() -> ResponseEntity.notFound().build());
+        if (bankRecord.isEmpty()) {
+            return ResponseEntity.notFound().build();
+        }
+        String eTag = eTag(bankRecord.get());
+        if (request.checkNotModified(eTag)) {
+            return ResponseEntity.status(HttpStatus.NOT_MODIFIED).eTag(eTag).build();
+        }
+        return ResponseEntity.ok().eTag(eTag).body(bankRecord.get());
+    }
+    /**
+     * Получает записи банка по списку идентификаторов за один запрос.
+     *
+     * @param ids      список уникальных идентификаторов записей банка
+     * @param useCache использовать ли кэш записей (по умолчанию true)
+     * @return {@link LookupResult} с найденными записями и идентификаторами отсутствующих записей
+     */
+    @PostMapping("/lookup")
+    public LookupResult getBankRecordsByIds(@RequestBody List<UUID> ids,
+                                            @RequestParam(name = "cache", defaultValue = "true") boolean useCache) {
+        return bankRecordService.getBankRecordsByIds(ids, useCache);
+    }
+    /**
+     * Ищет записи банка с данными, равными {@code data}, по индексу с keyset-пагинацией.
+     *
+     * @param data   искомые данные
+     * @param cursor курсор следующей страницы из предыдущего ответа
+     * @param limit  размер страницы
+     * @return {@link ResponseEntity} с {@link SearchPage} или статусом 501, если поиск выключен
+     */
+    @GetMapping("/search/exact")
+    public ResponseEntity<SearchPage> findBankRecordsByData(@RequestParam String data,
+                                                            @RequestParam(required = false) String cursor,
+                                                            @RequestParam(required = false) Integer limit) {
+        if (!bankRecordSearchService.isEnabled()) {
+            return ResponseEntity.status(HttpStatus.NOT_IMPLEMENTED).build();
+        }
+        return ResponseEntity.ok(bankRecordSearchService.findByData(data, cursor, limit));
+    }
+    /**
+     * Ищет записи банка, данные которых начинаются с {@code prefix}, по индексу с keyset-пагинацией.
+     *
+     * @param prefix префикс данных
+     * @param cursor курсор следующей страницы из предыдущего ответа
+     * @param limit  размер страницы
+     * @return {@link ResponseEntity} с {@link SearchPage} или статусом 501, если поиск выключен
+     */
+    @GetMapping("/search/prefix")
+    public ResponseEntity<SearchPage> findBankRecordsByDataPrefix(@RequestParam String prefix,
+                                                                  @RequestParam(required = false) String cursor,
+                                                                  @RequestParam(required = false) Integer limit) {
+        if (!bankRecordSearchService.isEnabled()) {
+            return ResponseEntity.status(HttpStatus.NOT_IMPLEMENTED).build();
+        }
+        return ResponseEntity.ok(bankRecordSearchService.findByDataPrefix(prefix, cursor, limit));
+    }
+    /**
+     * Полнотекстовый поиск записей банка, данные которых содержат все слова запроса.
+     *
+     * @param query  слова для поиска
+     * @param cursor курсор следующей страницы из предыдущего ответа
+     * @param limit  размер страницы
+     * @return {@link ResponseEntity} с {@link SearchPage} или статусом 501, если поиск или полнотекстовый индекс
+     * выключен
+     */
+    @GetMapping("/search/text")
+    public ResponseEntity<SearchPage> searchBankRecords(@RequestParam String query,
+                                                        @RequestParam(required = false) String cursor,
+                                                        @RequestParam(required = false) Integer limit) {
+        if (!bankRecordSearchService.isFullTextEnabled()) {
+            return ResponseEntity.status(HttpStatus.NOT_IMPLEMENTED).build();
+        }
+        return ResponseEntity.ok(bankRecordSearchService.searchFullText(query, cursor, limit));
     }
     /**
      * Обновляет существующую запись банка.
      *
+     * <p>Если передан заголовок {@code If-Match} с ETag записи, обновление выполняется только при совпадении
+     * версии, иначе возвращается статус 412. Без заголовка (или с {@code If-Match: *}) запись обновляется
+     * независимо от версии. Ответ содержит заголовок {@code ETag} с новой версией.</p>
+     *
      * @param id уникальный идентификатор записи банка
      * @param bankRecordDetails объект {@link BankRecord}, содержащий обновленные данные
-     * @return {@link ResponseEntity} с обновленной записью банка или статусом 404, если запись не найдена
+     * @param ifMatch значение заголовка {@code If-Match}
+     * @return {@link ResponseEntity} с обновленной записью банка, статусом 404, если запись не найдена,
+     * или статусом 412, если версия записи не совпадает с {@code If-Match}
      */
     @PutMapping("/{id}")
-    public ResponseEntity<BankRecord> updateBankRecord(@PathVariable UUID id, @RequestBody BankRecord bankRecordDetails) {
-        Optional<BankRecord> updatedBankRecord = bankRecordService.updateBankRecord(id, bankRecordDetails);
-        return updatedBankRecord.map(ResponseEntity::ok)
+    public ResponseEntity<BankRecord> updateBankRecord(@PathVariable UUID id, @RequestBody BankRecord bankRecordDetails,
+                                                       @RequestHeader(name = HttpHeaders.IF_MATCH, required = false) String ifMatch) {
+        Long expectedVersion = null;
+        if (ifMatch != null && !ifMatch.isBlank() && !ifMatch.trim().equals("*")) {
+            expectedVersion = parseVersion(ifMatch);
+            if (expectedVersion == null) {
+                return ResponseEntity.status(HttpStatus.PRECONDITION_FAILED).build();
+            }
+        }
+        Optional<BankRecord> updatedBankRecord = bankRecordService.updateBankRecord(id, bankRecordDetails, expectedVersion);
+        return updatedBankRecord.map(bankRecord -> ResponseEntity.ok().eTag(eTag(bankRecord)).body(bankRecord))
                 .orElseGet(() -> ResponseEntity.notFound().build());
     }
     /**
@@ -88,6 +309,26 @@ public class BankRecordController {
     public void batchUpdateBankRecords(@RequestBody List<BankRecord> bankRecords) {
         bankRecordService.batchUpdateBankRecords(bankRecords);
     }
+    /**
+     * Массовая вставка-или-обновление записей банка пакетами операторов MERGE.
+     *
+     * @param bankRecords список объектов {@link BankRecord}; записи без идентификатора вставляются как новые
+     * @return {@link UpsertResult} с количеством вставленных и обновленных записей по каждому пакету
+     */
+    @PutMapping("/list/upsert")
+    public UpsertResult batchUpsertBankRecords(@RequestBody List<BankRecord> bankRecords) {
+        return bankRecordService.batchUpsertBankRecords(bankRecords);
+    }
+    /**
+     * Массовая вставка-или-обновление записей банка по частям в параллельных транзакциях.
+     *
+     * @param bankRecords список объектов {@link BankRecord} для вставки или обновления
+     * @return {@link BatchReport} с результатом по каждой части
+     */
+    @PutMapping("/list/parallel")
+    public BatchReport parallelUpsertBankRecords(@RequestBody List<BankRecord> bankRecords) {
+        return bankRecordParallelBatchExecutor.upsertAll(bankRecords);
+    }
     /**
      * Удаляет запись банка по её идентификатору.
      *
@@ -106,9 +347,85 @@ public class BankRecordController {
      * Массовое удаление записей банка.
      *
      * @param ids список уникальных идентификаторов записей банка для удаления
+     * @return идентификаторы записей, которые существовали и были удалены
      */
     @DeleteMapping("/list")
-    public void batchDeleteBankRecords(@RequestBody List<UUID> ids) {
-        bankRecordService.batchDeleteBankRecords(ids);
+    public List<UUID> batchDeleteBankRecords(@RequestBody List<UUID> ids) {
+        return bankRecordService.batchDeleteBankRecords(ids);
+    }
+    /**
+     * Массовое удаление записей банка по частям в параллельных транзакциях.
+     *
+     * @param ids список уникальных идентификаторов записей банка для удаления
+     * @return {@link BatchReport} с результатом по каждой части
+     */
+    @DeleteMapping("/list/parallel")
+    public BatchReport parallelDeleteBankRecords(@RequestBody List<UUID> ids) {
+        return bankRecordParallelBatchExecutor.deleteAll(ids);
+    }
+
+    /**
+     * Конфликт версий при обновлении записи: версия записи изменилась после того, как клиент её прочитал.
+     * {@link OptimisticLockException} выбрасывается JPA при сбросе массового обновления и не преобразуется
+     * в исключение Spring, так как сервис не является репозиторием.
+     *
+     * @return ответ со статусом 412
+     */
+    @ExceptionHandler({OptimisticLockingFailureException.class, OptimisticLockException.class})
+    public ResponseEntity<Void> handleVersionConflict() {
+        return ResponseEntity.status(HttpStatus.PRECONDITION_FAILED).build();
+    }
+
+    /**
+     * Сбой сохранения при потоковой загрузке: пакеты до сбоя сохранены, остальные записи - нет.
+     *
+     * @param e исключение с результатом загрузки до сбоя
+     * @return ответ со статусом 500 и {@link IngestResult} до сбоя
+     */
+    @ExceptionHandler(BankRecordIngestException.class)
+    public ResponseEntity<IngestResult> handleIngestFailure(BankRecordIngestException e) {
+        return ResponseEntity.status(HttpStatus.INTERNAL_SERVER_ERROR).body(e.getResult());
+    }
+
+    /**
+     * Строка потоковой загрузки содержит не JSON-объект: пакеты до этой строки сохранены, остальные записи - нет.
+     *
+     * @param e исключение с номером строки и результатом загрузки до нее
+     * @return ответ со статусом 400 и описанием ошибки с номером строки
+     */
+    @ExceptionHandler(InvalidIngestLineException.class)
+    public ResponseEntity<String> handleInvalidIngestLine(InvalidIngestLineException e) {
+        return ResponseEntity.badRequest().body(e.getMessage());
+    }
+
+    /**
+     * Некорректный поисковый запрос: пустой полнотекстовый запрос или поврежденный курсор поиска.
+     *
+     * @param e исключение с описанием ошибки
+     * @return ответ со статусом 400 и описанием ошибки
+     */
+    @ExceptionHandler(InvalidSearchRequestException.class)
+    public ResponseEntity<String> handleInvalidSearchRequest(InvalidSearchRequestException e) {
+        return ResponseEntity.badRequest().body(e.getMessage());
+    }
+
+    private static String eTag(BankRecord bankRecord) {
+        return "\"" + bankRecord.getVersion() + "\"";
+    }
+
+    /**
+     * Извлекает версию из сильного ETag вида {@code "5"}; для слабых, составных и некорректных значений
+     * возвращает {@code null}, так как они не могут совпасть с версией записи.
+     */
+    private static Long parseVersion(String ifMatch) {
+        String value = ifMatch.trim();
+        if (value.length() < 3 || value.charAt(0) != '"' || value.charAt(value.length() - 1) != '"') {
+            return null;
+        }
+        try {
+            return Long.parseLong(value.substring(1, value.length() - 1));
+        } catch (NumberFormatException e) {
+            return null;
+        }
     }
-}
\ No newline at end of file
+}
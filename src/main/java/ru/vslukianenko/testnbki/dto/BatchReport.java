@@ -0,0 +1,35 @@
+package ru.vslukianenko.testnbki.dto;
+
+import java.util.List;
+
+/**
+ * Отчет о параллельном выполнении массовой операции по частям.
+ *
+ * <p>Каждая часть выполняется в отдельной транзакции, поэтому при частичной ошибке
+ * повторно отправить нужно только записи неуспешных частей: диапазон
+ * {@code [offset, offset + size)} исходного списка.</p>
+ *
+ * @param processed количество записей в успешно выполненных частях
+ * @param failed    количество записей в неуспешных частях
+ * @param inserted  количество вставленных записей в успешных частях
+ * @param updated   количество обновленных записей в успешных частях (только для вставки-или-обновления)
+ * @param chunks    результаты по частям в порядке следования в исходном списке
+ */
+public record BatchReport(long processed, long failed, long inserted, long updated, List<Chunk> chunks) {
+
+    /**
+     * Результат выполнения одной части.
+     *
+     * @param index          порядковый номер части, начиная с нуля
+     * @param offset         позиция первой записи части в исходном списке
+     * @param size           количество записей в части
+     * @param success        успешно ли зафиксирована транзакция части
+     * @param inserted       количество вставленных записей части
+     * @param updated        количество обновленных записей части
+     * @param durationMillis время выполнения части в миллисекундах
+     * @param error          сообщение об ошибке для неуспешной части, иначе {@code null}
+     */
+    public record Chunk(int index, int offset, int size, boolean success, long inserted, long updated,
+                        long durationMillis, String error) {
+    }
+}
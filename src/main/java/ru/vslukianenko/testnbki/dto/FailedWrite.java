@@ -0,0 +1,18 @@
+package ru.vslukianenko.testnbki.dto;
+
+import ru.vslukianenko.testnbki.model.BankRecord;
+
+import java.time.Instant;
+
+/**
+ * Запись банка, принятая в асинхронном режиме, которую не удалось сохранить.
+ *
+ * <p>Такие записи хранятся в очереди недоставленных записей, пока их не удастся сохранить
+ * повторной попыткой; данные возвращаются, чтобы клиент мог отправить запись заново.</p>
+ *
+ * @param record   запись с идентификатором, выданным при постановке в очередь
+ * @param error    сообщение об ошибке последней попытки сохранения
+ * @param failedAt время последней неудачной попытки
+ */
+public record FailedWrite(BankRecord record, String error, Instant failedAt) {
+}
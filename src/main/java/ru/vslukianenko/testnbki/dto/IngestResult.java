@@ -0,0 +1,10 @@
+package ru.vslukianenko.testnbki.dto;
+
+/**
+ * Результат потоковой загрузки записей банка.
+ *
+ * @param accepted количество сохраненных записей
+ * @param rejected количество отклоненных строк: некорректные и слишком длинные
+ */
+public record IngestResult(long accepted, long rejected) {
+}
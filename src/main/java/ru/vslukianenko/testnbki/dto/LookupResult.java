@@ -0,0 +1,15 @@
+package ru.vslukianenko.testnbki.dto;
+
+import ru.vslukianenko.testnbki.model.BankRecord;
+
+import java.util.List;
+import java.util.UUID;
+
+/**
+ * Результат пакетного поиска записей банка по идентификаторам.
+ *
+ * @param found   найденные записи в порядке идентификаторов запроса
+ * @param missing идентификаторы, для которых записи не найдены
+ */
+public record LookupResult(List<BankRecord> found, List<UUID> missing) {
+}
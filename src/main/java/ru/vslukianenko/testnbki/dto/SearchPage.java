@@ -0,0 +1,15 @@
+package ru.vslukianenko.testnbki.dto;
+
+import ru.vslukianenko.testnbki.model.BankRecord;
+
+import java.util.List;
+
+/**
+ * Страница результатов поиска записей банка.
+ *
+ * @param records найденные записи страницы
+ * @param next    курсор следующей страницы, который передается в следующий запрос параметром {@code cursor},
+ *                или {@code null}, если страница последняя
+ */
+public record SearchPage(List<BankRecord> records, String next) {
+}
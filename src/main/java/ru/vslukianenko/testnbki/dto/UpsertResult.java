@@ -0,0 +1,23 @@
+package ru.vslukianenko.testnbki.dto;
+
+import java.util.List;
+
+/**
+ * Результат массовой вставки-или-обновления записей банка.
+ *
+ * @param inserted общее количество вставленных записей
+ * @param updated  общее количество обновленных записей
+ * @param batches  результаты по каждому пакету в порядке обработки
+ */
+public record UpsertResult(long inserted, long updated, List<Batch> batches) {
+
+    /**
+     * Результат обработки одного пакета.
+     *
+     * @param index    порядковый номер пакета, начиная с нуля
+     * @param inserted количество вставленных записей
+     * @param updated  количество обновленных записей
+     */
+    public record Batch(int index, int inserted, int updated) {
+    }
+}
@@ -0,0 +1,47 @@
+package ru.vslukianenko.testnbki.id;
+
+import java.util.UUID;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Генератор упорядоченных по времени идентификаторов UUID версии 7 (RFC 9562).
+ *
+ * <p>Старшие 48 бит содержат время в миллисекундах, следующие 12 бит ({@code rand_a}) используются
+ * как счетчик внутри одной миллисекунды, младшие 62 бита заполняются случайными значениями.
+ * Благодаря счетчику идентификаторы, выданные одним процессом, строго возрастают, поэтому новые
+ * записи добавляются в конец индекса первичного ключа, а не в случайные страницы B-дерева.</p>
+ *
+ * <p>При переполнении счетчика значение времени сдвигается вперед на одну миллисекунду, что сохраняет
+ * монотонность без блокировок.</p>
+ */
+public final class UuidV7 {
+
+    private static final int COUNTER_BITS = 12;
+
+    private static final long VERSION = 0x7000L;
+
+    private static final long VARIANT = 0x8000_0000_0000_0000L;
+
+    private static final long RAND_B_MASK = 0x3FFF_FFFF_FFFF_FFFFL;
+
+    private static final AtomicLong LAST = new AtomicLong();
+
+    private UuidV7() {
+    }
+
+    /**
+     * Генерирует новый идентификатор UUID версии 7.
+     *
+     * @return идентификатор, больший всех ранее выданных этим процессом
+     */
+    public static UUID generate() {
+        long now = System.currentTimeMillis() << COUNTER_BITS;
+        long state = LAST.updateAndGet(last -> Math.max(last + 1, now));
+        long timestamp = state >>> COUNTER_BITS;
+        long counter = state & ((1L << COUNTER_BITS) - 1);
+        long mostSigBits = (timestamp << 16) | VERSION | counter;
+        long leastSigBits = VARIANT | (ThreadLocalRandom.current().nextLong() & RAND_B_MASK);
+        return new UUID(mostSigBits, leastSigBits);
+    }
+}
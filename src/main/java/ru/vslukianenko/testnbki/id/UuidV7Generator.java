@@ -0,0 +1,36 @@
+package ru.vslukianenko.testnbki.id;
+
+import org.hibernate.engine.spi.SharedSessionContractImplementor;
+import org.hibernate.generator.BeforeExecutionGenerator;
+import org.hibernate.generator.EventType;
+import org.hibernate.generator.EventTypeSets;
+
+import java.util.EnumSet;
+
+/**
+ * Генератор идентификаторов Hibernate, выдающий {@link UuidV7} на стороне приложения.
+ *
+ * <p>Идентификатор известен до выполнения INSERT, поэтому Hibernate может объединять вставки
+ * в JDBC-пакеты. Если идентификатор уже задан приложением, он сохраняется без изменений.</p>
+ *
+ * @see GeneratedUuidV7
+ */
+public class UuidV7Generator implements BeforeExecutionGenerator {
+
+    private static final long serialVersionUID = 1L;
+
+    @Override
+    public Object generate(SharedSessionContractImplementor session, Object owner, Object currentValue, EventType eventType) {
+        return currentValue != null ? currentValue : UuidV7.generate();
+    }
+
+    @Override
+    public EnumSet<EventType> getEventTypes() {
+        return EventTypeSets.INSERT_ONLY;
+    }
+
+    @Override
+    public boolean allowAssignedIdentifiers() {
+        return true;
+    }
+}
@@ -1,12 +1,24 @@
 package ru.vslukianenko.testnbki.model;
 
 
+import com.fasterxml.jackson.annotation.JsonIgnore;
+import jakarta.persistence.Column;
+import jakarta.persistence.Convert;
 import jakarta.persistence.Entity;
-import jakarta.persistence.GeneratedValue;
-import jakarta.persistence.GenerationType;
+import jakarta.persistence.EntityListeners;
 import jakarta.persistence.Id;
+import jakarta.persistence.Index;
+import jakarta.persistence.Table;
+import jakarta.persistence.Transient;
+import jakarta.persistence.Version;
+import lombok.AccessLevel;
 import lombok.Getter;
 import lombok.Setter;
+import ru.vslukianenko.testnbki.compression.BankRecordCompressionListener;
+import ru.vslukianenko.testnbki.compression.CompressedData;
+import ru.vslukianenko.testnbki.compression.CompressedDataConverter;
+import ru.vslukianenko.testnbki.id.GeneratedUuidV7;
+import ru.vslukianenko.testnbki.id.UuidV7;
 
 import java.util.UUID;
 
@@ -20,16 +32,21 @@ import java.util.UUID;
  * <p>Аннотации:</p>
  * <ul>
  *   <li>{@link Entity} - Указывает, что класс является сущностью и отображается в таблицу базы данных.</li>
+ *   <li>{@link Table} - Объявляет индекс {@code (data, id)} для поиска по данным с keyset-пагинацией.</li>
  *   <li>{@link Getter} - Аннотация Lombok для генерации методов получения (геттеров) для всех полей.</li>
  *   <li>{@link Setter} - Аннотация Lombok для генерации методов установки (сеттеров) для всех полей.</li>
  *   <li>{@link Id} - Указывает первичный ключ сущности.</li>
- *   <li>{@link GeneratedValue} - Определяет стратегии генерации значений для первичных ключей.</li>
+ *   <li>{@link GeneratedUuidV7} - Генерирует первичный ключ в приложении как упорядоченный по времени UUID версии 7.</li>
+ *   <li>{@link Version} - Включает оптимистичную блокировку по номеру версии записи.</li>
+ *   <li>{@link EntityListeners} - Сжимает данные перед сохранением через JPA ({@link BankRecordCompressionListener}).</li>
  * </ul>
  *
  * <p>Поля:</p>
  * <ul>
- *   <li>{@code id} - Уникальный идентификатор записи банка, генерируется автоматически.</li>
+ *   <li>{@code id} - Уникальный идентификатор записи банка, генерируется автоматически, если не задан.</li>
  *   <li>{@code data} - Произвольные данные, связанные с записью банка.</li>
+ *   <li>{@code compressedData} - Сжатые данные, если они хранятся сжатыми; тогда столбец {@code data} пуст.</li>
+ *   <li>{@code version} - Номер версии записи, увеличивается при каждом изменении.</li>
  * </ul>
  *
  * <p>Пример использования:</p>
@@ -44,23 +61,100 @@ import java.util.UUID;
  * @see Getter
  * @see Setter
  * @see Id
- * @see GeneratedValue
+ * @see GeneratedUuidV7
+ * @see Version
  */
 
 @Entity
+@EntityListeners(BankRecordCompressionListener.class)
+@Table(indexes = @Index(name = "idx_bank_record_data", columnList = "data, id"))
 @Getter
 @Setter
 public class BankRecord {
     /**
      * Уникальный идентификатор записи банка.
-     * Генерируется автоматически с использованием {@link GenerationType#AUTO}.
+     * Генерируется в приложении с использованием {@link UuidV7}, поэтому новые записи
+     * добавляются в индекс первичного ключа последовательно.
      */
     @Id
-    @GeneratedValue(strategy = GenerationType.AUTO)
+    @GeneratedUuidV7
     private UUID id;
     /**
-     * Произвольные данные, связанные с записью банка.
+     * Произвольные данные, связанные с записью банка. Равны {@code null}, если данные хранятся сжатыми.
      */
+    @Column(length = 1_000_000)
     private String data;
+    /**
+     * Сжатые данные записи (см. {@link ru.vslukianenko.testnbki.compression.BankRecordDataCodec}).
+     * Распаковываются при первом вызове {@link #getData()}, но не при загрузке записи.
+     */
+    @JsonIgnore
+    @Convert(converter = CompressedDataConverter.class)
+    @Column(name = "data_compressed", columnDefinition = "VARBINARY")
+    private CompressedData compressedData;
+    /**
+     * Номер версии записи. Новая запись получает версию 0, каждое изменение увеличивает её на единицу.
+     * Используется для оптимистичной блокировки и как ETag записи в HTTP API.
+     */
+    @Version
+    private Long version;
+    /**
+     * Данные, распакованные из {@link #decompressedFrom} при первом вызове {@link #getData()}.
+     * Действительны, только пока сжатые данные записи - тот же объект: Hibernate может заменить
+     * {@code compressedData}, минуя сеттер.
+     */
+    @Transient
+    @Getter(AccessLevel.NONE)
+    @Setter(AccessLevel.NONE)
+    private String decompressedData;
 
+    @Transient
+    @Getter(AccessLevel.NONE)
+    @Setter(AccessLevel.NONE)
+    private CompressedData decompressedFrom;
+
+    /**
+     * Возвращает данные записи, распаковывая их, если они хранятся сжатыми. Распакованные данные
+     * запоминаются в этом объекте, поэтому повторные вызовы (сериализация ответа, сравнение данных)
+     * распаковку не повторяют.
+     *
+     * @return данные записи
+     */
+    public String getData() {
+        CompressedData compressed = compressedData;
+        if (compressed == null) {
+            return data;
+        }
+        if (decompressedFrom != compressed) {
+            decompressedData = compressed.decompress();
+            decompressedFrom = compressed;
+        }
+        return decompressedData;
+    }
+
+    /**
+     * Задает данные записи в исходном виде; при сохранении они могут быть сжаты заново.
+     *
+     * @param data данные записи
+     */
+    public void setData(String data) {
+        this.data = data;
+        this.compressedData = null;
+        this.decompressedData = null;
+        this.decompressedFrom = null;
+    }
+
+    /**
+     * Задает сжатые данные записи вместо исходных.
+     *
+     * @param compressedData сжатые данные или {@code null}
+     */
+    public void setCompressedData(CompressedData compressedData) {
+        this.compressedData = compressedData;
+        this.decompressedData = null;
+        this.decompressedFrom = null;
+        if (compressedData != null) {
+            this.data = null;
+        }
+    }
 }
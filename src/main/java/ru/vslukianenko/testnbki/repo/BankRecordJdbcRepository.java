@@ -0,0 +1,462 @@
+package ru.vslukianenko.testnbki.repo;
+
+import org.springframework.dao.OptimisticLockingFailureException;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.core.RowMapper;
+import org.springframework.jdbc.core.namedparam.NamedParameterJdbcTemplate;
+import org.springframework.stereotype.Repository;
+import ru.vslukianenko.testnbki.compression.BankRecordDataCodec;
+import ru.vslukianenko.testnbki.compression.CompressedData;
+import ru.vslukianenko.testnbki.config.BankRecordJdbcProperties;
+import ru.vslukianenko.testnbki.id.UuidV7;
+import ru.vslukianenko.testnbki.model.BankRecord;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.Set;
+import java.util.UUID;
+
+/**
+ * Репозиторий записей банка на основе {@link JdbcTemplate}.
+ *
+ * <p>Используется для массовых операций, где накладные расходы JPA (контекст персистентности,
+ * отслеживание изменений, управляемые сущности) не нужны. Запросы отправляются JDBC-пакетами
+ * размера {@link BankRecordJdbcProperties#getBatchSize()}.</p>
+ *
+ * <p>Перед сохранением данные записей сжимаются {@link BankRecordDataCodec}: сжатые данные пишутся в столбец
+ * {@code data_compressed}, а {@code data} остается пустым. При чтении сжатые данные не распаковываются
+ * (см. {@link CompressedData}). Поиск по данным сжатые записи не находит, поэтому сжатие нельзя включить
+ * вместе с поиском (см. {@link ru.vslukianenko.testnbki.service.BankRecordSearchService}).</p>
+ */
+@Repository
+public class BankRecordJdbcRepository implements BankRecordStore {
+
+    private static final String INSERT_SQL = "INSERT INTO bank_record (id, data, data_compressed, version) VALUES (?, ?, ?, 0)";
+
+    /**
+     * MERGE для нескольких строк; {@code %s} заменяется списком строк {@link #UPSERT_ROW_SQL}. Возвращает
+     * количество вставленных строк: после MERGE версия 0 только у строк, которых до оператора не было.
+     */
+    private static final String UPSERT_COUNT_INSERTED_SQL = """
+            SELECT COUNT(*) FROM FINAL TABLE (
+                MERGE INTO bank_record t
+                USING (VALUES %s) s (id, data, data_compressed)
+                ON t.id = s.id
+                WHEN MATCHED THEN UPDATE SET data = s.data, data_compressed = s.data_compressed, version = t.version + 1
+                WHEN NOT MATCHED THEN INSERT (id, data, data_compressed, version)
+                    VALUES (s.id, s.data, s.data_compressed, 0))
+            WHERE version = 0
+            """;
+
+    private static final String UPSERT_ROW_SQL = "(CAST(? AS UUID), CAST(? AS VARCHAR), CAST(? AS VARBINARY))";
+
+    private static final String RESTORE_SQL = "MERGE INTO bank_record (id, data, data_compressed, version) KEY (id) VALUES (?, ?, ?, ?)";
+
+    private static final String UPDATE_IF_VERSION_SQL =
+            "UPDATE bank_record SET data = ?, data_compressed = ?, version = version + 1 WHERE id = ? AND version = ?";
+
+    private static final String[] CREATE_SCHEMA_SQL = {
+            """
+            CREATE TABLE IF NOT EXISTS bank_record
+                (id UUID NOT NULL PRIMARY KEY, data VARCHAR(1000000), data_compressed VARBINARY, version BIGINT)
+            """,
+            "CREATE INDEX IF NOT EXISTS idx_bank_record_data ON bank_record (data, id)"
+    };
+
+    private static final String SELECT_EXISTING_IDS_SQL = "SELECT id FROM bank_record WHERE id IN (:ids)";
+
+    private static final String SELECT_BY_IDS_SQL = "SELECT id, data, data_compressed, version FROM bank_record WHERE id IN (:ids)";
+
+    private static final String SELECT_FIRST_PAGE_SQL = "SELECT id, data, data_compressed, version FROM bank_record ORDER BY id LIMIT ?";
+
+    private static final String SELECT_PAGE_AFTER_SQL =
+            "SELECT id, data, data_compressed, version FROM bank_record WHERE id > ? ORDER BY id LIMIT ?";
+
+    private static final String SELECT_BY_DATA_SQL =
+            "SELECT id, data, data_compressed, version FROM bank_record WHERE data = ? ORDER BY id LIMIT ?";
+
+    private static final String SELECT_BY_DATA_AFTER_SQL =
+            "SELECT id, data, data_compressed, version FROM bank_record WHERE data = ? AND id > ? ORDER BY id LIMIT ?";
+
+    private static final String SELECT_BY_DATA_PREFIX_SQL = """
+            SELECT id, data, data_compressed, version FROM bank_record
+            WHERE data LIKE ? ESCAPE '\\'
+            ORDER BY data, id LIMIT ?
+            """;
+
+    private static final String SELECT_BY_DATA_PREFIX_AFTER_SQL = """
+            SELECT id, data, data_compressed, version FROM bank_record
+            WHERE data LIKE ? ESCAPE '\\' AND data >= ? AND (data > ? OR id > ?)
+            ORDER BY data, id LIMIT ?
+            """;
+
+    private static final String FULL_TEXT_SEARCH_SQL =
+            "SELECT CAST(KEYS[1] AS UUID) AS id FROM FT_SEARCH_DATA(?, 0, 0) ORDER BY id LIMIT ?";
+
+    private static final String FULL_TEXT_SEARCH_AFTER_SQL = """
+            SELECT CAST(KEYS[1] AS UUID) AS id FROM FT_SEARCH_DATA(?, 0, 0)
+            WHERE CAST(KEYS[1] AS UUID) > ?
+            ORDER BY id LIMIT ?
+            """;
+
+    private static final String[] CREATE_FULL_TEXT_INDEX_SQL = {
+            "CREATE ALIAS IF NOT EXISTS FT_INIT FOR 'org.h2.fulltext.FullText.init'",
+            "CALL FT_INIT()",
+            "CALL FT_DROP_INDEX('PUBLIC', 'BANK_RECORD')",
+            "CALL FT_CREATE_INDEX('PUBLIC', 'BANK_RECORD', 'DATA')"
+    };
+
+    private static final String UPDATE_RETURNING_SQL = """
+            SELECT id, data, data_compressed, version FROM FINAL TABLE (
+                UPDATE bank_record SET data = ?, data_compressed = ?, version = version + 1
+                WHERE id = ? AND (CAST(? AS BIGINT) IS NULL OR version = ?))
+            """;
+
+    private static final String COUNT_SQL = "SELECT COUNT(*) FROM bank_record";
+
+    private static final String DELETE_RETURNING_IDS_SQL =
+            "SELECT id FROM OLD TABLE (DELETE FROM bank_record WHERE id IN (:ids))";
+
+    private final JdbcTemplate jdbcTemplate;
+
+    private final NamedParameterJdbcTemplate namedParameterJdbcTemplate;
+
+    private final int batchSize;
+
+    private final BankRecordDataCodec codec;
+
+    private final RowMapper<BankRecord> rowMapper;
+
+    public BankRecordJdbcRepository(JdbcTemplate jdbcTemplate, BankRecordJdbcProperties properties,
+                                    BankRecordDataCodec codec) {
+        this.jdbcTemplate = jdbcTemplate;
+        this.namedParameterJdbcTemplate = new NamedParameterJdbcTemplate(jdbcTemplate);
+        this.batchSize = properties.getBatchSize();
+        this.codec = codec;
+        this.rowMapper = (rs, rowNum) -> {
+            BankRecord bankRecord = new BankRecord();
+            bankRecord.setId(rs.getObject("id", UUID.class));
+            bankRecord.setData(rs.getString("data"));
+            bankRecord.setCompressedData(codec.wrap(rs.getBytes("data_compressed")));
+            bankRecord.setVersion(rs.getLong("version"));
+            return bankRecord;
+        };
+    }
+
+    /**
+     * Вставляет записи JDBC-пакетами. Записям без идентификатора назначается новый {@link UuidV7},
+     * все записи получают версию 0.
+     *
+     * @param bankRecords записи для вставки
+     */
+    @Override
+    public void insertAll(List<BankRecord> bankRecords) {
+        for (BankRecord bankRecord : bankRecords) {
+            if (bankRecord.getId() == null) {
+                bankRecord.setId(UuidV7.generate());
+            }
+        }
+        bankRecords.forEach(codec::compress);
+        jdbcTemplate.batchUpdate(INSERT_SQL, bankRecords, batchSize, (ps, bankRecord) -> {
+            ps.setObject(1, bankRecord.getId());
+            ps.setString(2, plainData(bankRecord));
+            ps.setBytes(3, compressedData(bankRecord));
+        });
+        bankRecords.forEach(bankRecord -> bankRecord.setVersion(0L));
+    }
+
+    /**
+     * Вставляет или обновляет записи операторами MERGE, по одному оператору на
+     * {@link BankRecordJdbcProperties#getBatchSize()} записей. Идентификаторы записей должны быть заданы
+     * и не повторяться. Обновление увеличивает версию записи, новая запись получает версию 0; версия
+     * переданных объектов не проверяется и не изменяется.
+     *
+     * <p>Количество вставленных записей возвращает сам MERGE (дельта-таблица H2 {@code FINAL TABLE}),
+     * поэтому отдельный запрос существующих идентификаторов не нужен, а результат точен и при конкурентной
+     * записи тех же идентификаторов.</p>
+     *
+     * @param bankRecords записи для вставки или обновления
+     * @return количество вставленных записей; остальные записи обновлены
+     */
+    @Override
+    public int upsertAll(Collection<BankRecord> bankRecords) {
+        bankRecords.forEach(codec::compress);
+        List<BankRecord> recordList = List.copyOf(bankRecords);
+        int inserted = 0;
+        for (int from = 0; from < recordList.size(); from += batchSize) {
+            List<BankRecord> chunk = recordList.subList(from, Math.min(from + batchSize, recordList.size()));
+            String rows = String.join(", ", Collections.nCopies(chunk.size(), UPSERT_ROW_SQL));
+            Object[] args = new Object[chunk.size() * 3];
+            for (int i = 0; i < chunk.size(); i++) {
+                BankRecord bankRecord = chunk.get(i);
+                args[i * 3] = bankRecord.getId();
+                args[i * 3 + 1] = plainData(bankRecord);
+                args[i * 3 + 2] = compressedData(bankRecord);
+            }
+            Integer count = jdbcTemplate.queryForObject(UPSERT_COUNT_INSERTED_SQL.formatted(rows), Integer.class, args);
+            inserted += count == null ? 0 : count;
+        }
+        return inserted;
+    }
+
+    /**
+     * Сохраняет записи с переданными версиями JDBC-пакетами операторов {@code MERGE ... KEY (id)}.
+     *
+     * @param bankRecords записи с заданными идентификаторами и версиями
+     */
+    @Override
+    public void restoreAll(Collection<BankRecord> bankRecords) {
+        bankRecords.forEach(codec::compress);
+        jdbcTemplate.batchUpdate(RESTORE_SQL, bankRecords, batchSize, (ps, bankRecord) -> {
+            ps.setObject(1, bankRecord.getId());
+            ps.setString(2, plainData(bankRecord));
+            ps.setBytes(3, compressedData(bankRecord));
+            ps.setLong(4, bankRecord.getVersion());
+        });
+    }
+
+    /**
+     * Обновляет записи JDBC-пакетами. Записи без версии вставляются или обновляются операторами MERGE
+     * (см. {@link #upsertAll(Collection)}), записям без идентификатора назначается новый {@link UuidV7}.
+     * Записи с версией обновляются операторами {@code UPDATE ... WHERE id = ? AND version = ?}; если хотя бы
+     * один оператор не обновил строку, выбрасывается исключение, и вызывающая транзакция должна быть откачена.
+     *
+     * @param bankRecords обновляемые записи
+     * @throws OptimisticLockingFailureException если записи с версией нет или её версия отличается от переданной
+     */
+    @Override
+    public void updateAll(Collection<BankRecord> bankRecords) {
+        List<BankRecord> unversioned = new ArrayList<>();
+        List<BankRecord> versioned = new ArrayList<>();
+        for (BankRecord bankRecord : bankRecords) {
+            if (bankRecord.getVersion() != null) {
+                versioned.add(bankRecord);
+                continue;
+            }
+            if (bankRecord.getId() == null) {
+                bankRecord.setId(UuidV7.generate());
+            }
+            unversioned.add(bankRecord);
+        }
+        upsertAll(unversioned);
+        versioned.forEach(codec::compress);
+        int[][] counts = jdbcTemplate.batchUpdate(UPDATE_IF_VERSION_SQL, versioned, batchSize, (ps, bankRecord) -> {
+            ps.setString(1, plainData(bankRecord));
+            ps.setBytes(2, compressedData(bankRecord));
+            ps.setObject(3, bankRecord.getId());
+            ps.setLong(4, bankRecord.getVersion());
+        });
+        int index = 0;
+        for (int[] batch : counts) {
+            for (int count : batch) {
+                if (count == 0) {
+                    BankRecord stale = versioned.get(index);
+                    throw new OptimisticLockingFailureException(
+                            "Bank record " + stale.getId() + " does not have expected version " + stale.getVersion());
+                }
+                index++;
+            }
+        }
+    }
+
+    /**
+     * Возвращает идентификаторы, для которых в базе данных существуют записи.
+     * Выполняется одним запросом {@code IN}, поэтому размер {@code ids} должен быть ограничен.
+     *
+     * @param ids проверяемые идентификаторы
+     * @return подмножество {@code ids}, присутствующее в базе данных
+     */
+    @Override
+    public Set<UUID> findExistingIds(Collection<UUID> ids) {
+        if (ids.isEmpty()) {
+            return Set.of();
+        }
+        return new HashSet<>(namedParameterJdbcTemplate.queryForList(
+                SELECT_EXISTING_IDS_SQL, Map.of("ids", ids), UUID.class));
+    }
+
+    /**
+     * Загружает записи по идентификаторам запросами {@code SELECT ... WHERE id IN (...)}
+     * по {@link BankRecordJdbcProperties#getBatchSize()} идентификаторов.
+     *
+     * @param ids идентификаторы записей
+     * @return найденные записи в произвольном порядке; отсутствующие идентификаторы пропускаются
+     */
+    @Override
+    public List<BankRecord> findAllByIds(Collection<UUID> ids) {
+        List<UUID> idList = List.copyOf(ids);
+        List<BankRecord> found = new ArrayList<>(idList.size());
+        for (int from = 0; from < idList.size(); from += batchSize) {
+            List<UUID> chunk = idList.subList(from, Math.min(from + batchSize, idList.size()));
+            found.addAll(namedParameterJdbcTemplate.query(SELECT_BY_IDS_SQL, Map.of("ids", chunk), rowMapper));
+        }
+        return found;
+    }
+
+    /**
+     * Возвращает страницу записей, упорядоченных по идентификатору (keyset-пагинация).
+     * Страница читается по индексу первичного ключа начиная с {@code after}, поэтому стоимость
+     * запроса не зависит от номера страницы, в отличие от {@code OFFSET}.
+     *
+     * @param after идентификатор последней записи предыдущей страницы или {@code null} для первой страницы
+     * @param limit максимальное количество записей на странице
+     * @return записи с идентификаторами больше {@code after} в порядке возрастания
+     */
+    @Override
+    public List<BankRecord> findPageAfter(UUID after, int limit) {
+        if (after == null) {
+            return jdbcTemplate.query(SELECT_FIRST_PAGE_SQL, rowMapper, limit);
+        }
+        return jdbcTemplate.query(SELECT_PAGE_AFTER_SQL, rowMapper, after, limit);
+    }
+
+    /**
+     * Обновляет данные записи одним оператором {@code UPDATE ... WHERE id = ? AND version = ?}, увеличивая версию.
+     * Обновленная строка возвращается тем же оператором (дельта-таблица H2 {@code FINAL TABLE}),
+     * поэтому ни предварительное чтение, ни блокировка строки не нужны.
+     *
+     * @param id              идентификатор записи
+     * @param data            новые данные записи
+     * @param expectedVersion ожидаемая текущая версия или {@code null}, чтобы обновить запись независимо от версии
+     * @return обновленная запись или пустой {@link Optional}, если записи нет или её версия отличается от ожидаемой
+     */
+    @Override
+    public Optional<BankRecord> updateIfVersionMatches(UUID id, String data, Long expectedVersion) {
+        CompressedData compressed = codec.compress(data);
+        return jdbcTemplate.query(UPDATE_RETURNING_SQL, rowMapper, compressed == null ? data : null,
+                        compressed == null ? null : compressed.bytes(), id, expectedVersion, expectedVersion)
+                .stream()
+                .findFirst();
+    }
+
+    /**
+     * Возвращает страницу записей с данными, равными {@code data}, упорядоченных по идентификатору.
+     * Читается диапазон индекса {@code (data, id)}, поэтому стоимость не зависит ни от размера таблицы,
+     * ни от номера страницы.
+     *
+     * @param data     искомые данные
+     * @param afterId  идентификатор последней записи предыдущей страницы или {@code null} для первой страницы
+     * @param limit    максимальное количество записей на странице
+     * @return найденные записи в порядке возрастания идентификатора
+     */
+    @Override
+    public List<BankRecord> findByData(String data, UUID afterId, int limit) {
+        if (afterId == null) {
+            return jdbcTemplate.query(SELECT_BY_DATA_SQL, rowMapper, data, limit);
+        }
+        return jdbcTemplate.query(SELECT_BY_DATA_AFTER_SQL, rowMapper, data, afterId, limit);
+    }
+
+    /**
+     * Возвращает страницу записей, данные которых начинаются с {@code prefix}, упорядоченных по данным
+     * и идентификатору. Условие {@code LIKE 'prefix%'} и курсор {@code (afterData, afterId)} ограничивают
+     * диапазон индекса {@code (data, id)}.
+     *
+     * @param prefix    префикс данных
+     * @param afterData данные последней записи предыдущей страницы или {@code null} для первой страницы
+     * @param afterId   идентификатор последней записи предыдущей страницы
+     * @param limit     максимальное количество записей на странице
+     * @return найденные записи в порядке возрастания данных и идентификатора
+     */
+    @Override
+    public List<BankRecord> findByDataPrefix(String prefix, String afterData, UUID afterId, int limit) {
+        String pattern = escapeLike(prefix) + "%";
+        if (afterData == null) {
+            return jdbcTemplate.query(SELECT_BY_DATA_PREFIX_SQL, rowMapper, pattern, limit);
+        }
+        return jdbcTemplate.query(SELECT_BY_DATA_PREFIX_AFTER_SQL, rowMapper,
+                pattern, afterData, afterData, afterId, limit);
+    }
+
+    /**
+     * Ищет записи по словам в данных с помощью полнотекстового индекса H2 ({@code FT_SEARCH_DATA}).
+     * Запись найдена, если её данные содержат все слова запроса. Полнотекстовый индекс создается только
+     * для таблицы записей банка, поэтому все результаты относятся к ней.
+     *
+     * <p>Индекс H2 выдает результаты в порядке своих внутренних структур, который меняется при изменении
+     * записей, поэтому результаты сортируются по идентификатору и пагинируются по нему (keyset), а не
+     * смещением: страницы не пропускают и не повторяют записи при изменениях между запросами.
+     * Индекс при этом находит все совпадения для каждой страницы, поэтому стоимость страницы растет
+     * с количеством найденных записей, но не с номером страницы.</p>
+     *
+     * @param query   слова для поиска
+     * @param afterId идентификатор последней записи предыдущей страницы или {@code null} для первой страницы
+     * @param limit   максимальное количество идентификаторов
+     * @return идентификаторы найденных записей в порядке возрастания
+     */
+    @Override
+    public List<UUID> searchFullText(String query, UUID afterId, int limit) {
+        if (afterId == null) {
+            return jdbcTemplate.queryForList(FULL_TEXT_SEARCH_SQL, UUID.class, query, limit);
+        }
+        return jdbcTemplate.queryForList(FULL_TEXT_SEARCH_AFTER_SQL, UUID.class, query, afterId, limit);
+    }
+
+    /**
+     * Создает (или пересоздает) полнотекстовый индекс H2 по данным записей и индексирует существующие строки.
+     * Дальше индекс поддерживается триггерами таблицы при любых изменениях, в том числе пакетных.
+     */
+    @Override
+    public void createFullTextIndex() {
+        for (String sql : CREATE_FULL_TEXT_INDEX_SQL) {
+            jdbcTemplate.execute(sql);
+        }
+    }
+
+    /**
+     * Создает таблицу записей и индекс {@code (data, id)}, если их нет. Нужна базам данных, схему которых
+     * не создает Hibernate, например секциям {@link PartitionedBankRecordStore}.
+     */
+    public void createSchema() {
+        for (String sql : CREATE_SCHEMA_SQL) {
+            jdbcTemplate.execute(sql);
+        }
+    }
+
+    /**
+     * Возвращает количество записей без загрузки строк.
+     *
+     * @return количество записей в таблице
+     */
+    @Override
+    public long count() {
+        Long count = jdbcTemplate.queryForObject(COUNT_SQL, Long.class);
+        return count != null ? count : 0;
+    }
+
+    /**
+     * Удаляет записи операторами {@code DELETE ... WHERE id IN (...)} по {@link BankRecordJdbcProperties#getBatchSize()}
+     * идентификаторов. Каждый оператор сразу возвращает идентификаторы удаленных строк
+     * (дельта-таблица H2 {@code OLD TABLE}), поэтому отдельный запрос на проверку существования не нужен.
+     *
+     * @param ids идентификаторы удаляемых записей
+     * @return идентификаторы записей, которые существовали и были удалены
+     */
+    @Override
+    public List<UUID> deleteAllByIds(List<UUID> ids) {
+        List<UUID> deleted = new ArrayList<>();
+        for (int from = 0; from < ids.size(); from += batchSize) {
+            List<UUID> chunk = ids.subList(from, Math.min(from + batchSize, ids.size()));
+            deleted.addAll(namedParameterJdbcTemplate.queryForList(
+                    DELETE_RETURNING_IDS_SQL, Map.of("ids", chunk), UUID.class));
+        }
+        return deleted;
+    }
+
+    private static String plainData(BankRecord bankRecord) {
+        return bankRecord.getCompressedData() == null ? bankRecord.getData() : null;
+    }
+
+    private static byte[] compressedData(BankRecord bankRecord) {
+        return bankRecord.getCompressedData() == null ? null : bankRecord.getCompressedData().bytes();
+    }
+
+    private static String escapeLike(String value) {
+        return value.replace("\\", "\\\\").replace("%", "\\%").replace("_", "\\_");
+    }
+}
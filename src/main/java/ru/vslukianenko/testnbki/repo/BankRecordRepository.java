@@ -1,9 +1,22 @@
 package ru.vslukianenko.testnbki.repo;
 
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
 import ru.vslukianenko.testnbki.model.BankRecord;
 
 import java.util.UUID;
 
 public interface BankRecordRepository extends JpaRepository<BankRecord, UUID> {
+
+    /**
+     * Удаляет запись банка одним оператором DELETE, без предварительной загрузки сущности.
+     *
+     * @param id уникальный идентификатор записи банка
+     * @return количество удаленных строк: 1, если запись существовала, иначе 0
+     */
+    @Modifying
+    @Query("delete from BankRecord r where r.id = :id")
+    int deleteRecordById(@Param("id") UUID id);
 }
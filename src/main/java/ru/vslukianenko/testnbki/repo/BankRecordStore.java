@@ -0,0 +1,67 @@
+package ru.vslukianenko.testnbki.repo;
+
+import org.springframework.dao.OptimisticLockingFailureException;
+import ru.vslukianenko.testnbki.model.BankRecord;
+
+import java.util.Collection;
+import java.util.List;
+import java.util.Optional;
+import java.util.Set;
+import java.util.UUID;
+
+/**
+ * Хранилище записей банка для операций JDBC, минующих JPA.
+ *
+ * <p>Реализации:</p>
+ * <ul>
+ *   <li>{@link BankRecordJdbcRepository} - одна база данных;</li>
+ *   <li>{@link PartitionedBankRecordStore} - несколько баз данных, между которыми записи распределены
+ *   по хешу идентификатора;</li>
+ *   <li>{@link ru.vslukianenko.testnbki.repo.offheap.OffHeapBankRecordStore} - память вне кучи и журнал.</li>
+ * </ul>
+ *
+ * <p>Контракты методов описаны в {@link BankRecordJdbcRepository}.</p>
+ */
+public interface BankRecordStore {
+
+    void insertAll(List<BankRecord> bankRecords);
+
+    int upsertAll(Collection<BankRecord> bankRecords);
+
+    /**
+     * Сохраняет записи как есть: с переданными идентификаторами, данными и версиями, заменяя существующие
+     * записи с теми же идентификаторами. Используется при восстановлении из контрольной точки.
+     *
+     * @param bankRecords записи с заданными идентификаторами и версиями
+     */
+    void restoreAll(Collection<BankRecord> bankRecords);
+
+    /**
+     * Обновляет записи: запись без версии вставляется или обновляется независимо от текущей версии,
+     * запись с версией обновляется, только если версия в базе данных равна переданной.
+     *
+     * @param bankRecords обновляемые записи
+     * @throws OptimisticLockingFailureException если версия хотя бы одной записи отличается от переданной
+     */
+    void updateAll(Collection<BankRecord> bankRecords);
+
+    Set<UUID> findExistingIds(Collection<UUID> ids);
+
+    List<BankRecord> findAllByIds(Collection<UUID> ids);
+
+    List<BankRecord> findPageAfter(UUID after, int limit);
+
+    Optional<BankRecord> updateIfVersionMatches(UUID id, String data, Long expectedVersion);
+
+    List<BankRecord> findByData(String data, UUID afterId, int limit);
+
+    List<BankRecord> findByDataPrefix(String prefix, String afterData, UUID afterId, int limit);
+
+    List<UUID> searchFullText(String query, UUID afterId, int limit);
+
+    void createFullTextIndex();
+
+    long count();
+
+    List<UUID> deleteAllByIds(List<UUID> ids);
+}
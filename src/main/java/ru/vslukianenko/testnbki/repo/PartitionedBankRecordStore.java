@@ -0,0 +1,354 @@
+package ru.vslukianenko.testnbki.repo;
+
+import org.springframework.beans.factory.DisposableBean;
+import org.springframework.core.task.AsyncTaskExecutor;
+import org.springframework.core.task.SimpleAsyncTaskExecutor;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.datasource.DataSourceTransactionManager;
+import org.springframework.scheduling.concurrent.ThreadPoolTaskExecutor;
+import org.springframework.transaction.support.TransactionTemplate;
+import ru.vslukianenko.testnbki.compression.BankRecordDataCodec;
+import ru.vslukianenko.testnbki.config.BankRecordJdbcProperties;
+import ru.vslukianenko.testnbki.id.UuidV7;
+import ru.vslukianenko.testnbki.model.BankRecord;
+
+import javax.sql.DataSource;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Optional;
+import java.util.Set;
+import java.util.UUID;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Future;
+import java.util.function.BiFunction;
+import java.util.function.Function;
+
+/**
+ * Хранилище записей банка, распределенное по нескольким базам данных (секциям).
+ *
+ * <p>Запись хранится в секции {@link #partitionOf(UUID)} - хеш идентификатора по модулю количества секций.
+ * Младшие 62 бита UUID версии 7 случайны, поэтому записи распределяются между секциями равномерно,
+ * в том числе записи, созданные подряд. Схема каждой секции создается при запуске.</p>
+ *
+ * <p>Операции выполняются так:</p>
+ * <ul>
+ *   <li>операции с одной записью - только в её секции;</li>
+ *   <li>операции со списком записей или идентификаторов - список делится по секциям, части выполняются
+ *   параллельно, каждая изменяющая часть - в отдельной транзакции своей секции. Транзакции разных секций
+ *   независимы: ошибка в одной секции не откатывает изменения в остальных;</li>
+ *   <li>постраничные выборки и поиск - запрос выполняется во всех секциях параллельно, отсортированные
+ *   страницы секций сливаются в одну. Полнотекстовый поиск возвращает результаты секций по порядку,
+ *   поэтому каждая секция читает {@code offset + limit} результатов.</li>
+ * </ul>
+ */
+public class PartitionedBankRecordStore implements BankRecordStore, DisposableBean {
+
+    private static final String THREAD_NAME_PREFIX = "bank-record-partition-";
+
+    /**
+     * Порядок идентификаторов H2: старшая, затем младшая половина UUID как беззнаковые числа.
+     * {@link UUID#compareTo(UUID)} сравнивает их как знаковые и для слияния страниц не подходит.
+     */
+    private static final Comparator<UUID> ID_ORDER =
+            Comparator.comparing(UUID::getMostSignificantBits, Long::compareUnsigned)
+                    .thenComparing(UUID::getLeastSignificantBits, Long::compareUnsigned);
+
+    private static final Comparator<BankRecord> BY_ID = Comparator.comparing(BankRecord::getId, ID_ORDER);
+
+    private static final Comparator<BankRecord> BY_DATA_AND_ID =
+            Comparator.comparing(BankRecord::getData).thenComparing(BY_ID);
+
+    private final List<Partition> partitions;
+
+    private final List<DataSource> dataSources;
+
+    private final AsyncTaskExecutor executor;
+
+    /**
+     * Создает хранилище и схему в каждой секции.
+     *
+     * @param dataSources    базы данных секций; хранилище закрывает их при остановке
+     * @param jdbcProperties настройки JDBC-пакетов
+     * @param codec          сжатие данных записей
+     * @param fanOutWorkers  количество потоков для параллельных запросов к секциям
+     * @param virtualThreads выполнять ли запросы к секциям в виртуальных потоках
+     */
+    public PartitionedBankRecordStore(List<DataSource> dataSources, BankRecordJdbcProperties jdbcProperties,
+                                      BankRecordDataCodec codec, int fanOutWorkers, boolean virtualThreads) {
+        if (dataSources.isEmpty()) {
+            throw new IllegalArgumentException("At least one partition is required");
+        }
+        this.dataSources = List.copyOf(dataSources);
+        this.partitions = dataSources.stream()
+                .map(dataSource -> new Partition(
+                        new BankRecordJdbcRepository(new JdbcTemplate(dataSource), jdbcProperties, codec),
+                        new TransactionTemplate(new DataSourceTransactionManager(dataSource))))
+                .toList();
+        this.executor = virtualThreads ? virtualThreadExecutor() : platformThreadExecutor(fanOutWorkers);
+        partitions.forEach(partition -> partition.repository().createSchema());
+    }
+
+    /**
+     * Возвращает номер секции, в которой хранится запись.
+     *
+     * @param id идентификатор записи
+     * @return номер секции от 0 до количества секций
+     */
+    public int partitionOf(UUID id) {
+        return Math.floorMod(id.hashCode(), partitions.size());
+    }
+
+    /**
+     * Возвращает количество секций.
+     *
+     * @return количество секций
+     */
+    public int getPartitionCount() {
+        return partitions.size();
+    }
+
+    @Override
+    public void insertAll(List<BankRecord> bankRecords) {
+        for (BankRecord bankRecord : bankRecords) {
+            if (bankRecord.getId() == null) {
+                bankRecord.setId(UuidV7.generate());
+            }
+        }
+        inTransactions(groupByPartition(bankRecords, BankRecord::getId), (repository, group) -> {
+            repository.insertAll(group);
+            return null;
+        });
+    }
+
+    @Override
+    public int upsertAll(Collection<BankRecord> bankRecords) {
+        return inTransactions(groupByPartition(bankRecords, BankRecord::getId), BankRecordJdbcRepository::upsertAll)
+                .stream()
+                .mapToInt(Integer::intValue)
+                .sum();
+    }
+
+    @Override
+    public void restoreAll(Collection<BankRecord> bankRecords) {
+        inTransactions(groupByPartition(bankRecords, BankRecord::getId), (repository, group) -> {
+            repository.restoreAll(group);
+            return null;
+        });
+    }
+
+    @Override
+    public void updateAll(Collection<BankRecord> bankRecords) {
+        for (BankRecord bankRecord : bankRecords) {
+            if (bankRecord.getId() == null) {
+                bankRecord.setId(UuidV7.generate());
+            }
+        }
+        inTransactions(groupByPartition(bankRecords, BankRecord::getId), (repository, group) -> {
+            repository.updateAll(group);
+            return null;
+        });
+    }
+
+    @Override
+    public Set<UUID> findExistingIds(Collection<UUID> ids) {
+        Set<UUID> existing = new HashSet<>();
+        byPartition(groupByPartition(ids, Function.identity()), BankRecordJdbcRepository::findExistingIds)
+                .forEach(existing::addAll);
+        return existing;
+    }
+
+    @Override
+    public List<BankRecord> findAllByIds(Collection<UUID> ids) {
+        return flatten(byPartition(groupByPartition(ids, Function.identity()), BankRecordJdbcRepository::findAllByIds));
+    }
+
+    @Override
+    public List<BankRecord> findPageAfter(UUID after, int limit) {
+        return merge(onAllPartitions(repository -> repository.findPageAfter(after, limit)), BY_ID, limit);
+    }
+
+    @Override
+    public Optional<BankRecord> updateIfVersionMatches(UUID id, String data, Long expectedVersion) {
+        return partitions.get(partitionOf(id)).repository().updateIfVersionMatches(id, data, expectedVersion);
+    }
+
+    @Override
+    public List<BankRecord> findByData(String data, UUID afterId, int limit) {
+        return merge(onAllPartitions(repository -> repository.findByData(data, afterId, limit)), BY_ID, limit);
+    }
+
+    @Override
+    public List<BankRecord> findByDataPrefix(String prefix, String afterData, UUID afterId, int limit) {
+        return merge(onAllPartitions(repository -> repository.findByDataPrefix(prefix, afterData, afterId, limit)),
+                BY_DATA_AND_ID, limit);
+    }
+
+    @Override
+    public List<UUID> searchFullText(String query, UUID afterId, int limit) {
+        return flatten(onAllPartitions(repository -> repository.searchFullText(query, afterId, limit))).stream()
+                .sorted(ID_ORDER)
+                .limit(limit)
+                .toList();
+    }
+
+    @Override
+    public void createFullTextIndex() {
+        onAllPartitions(repository -> {
+            repository.createFullTextIndex();
+            return null;
+        });
+    }
+
+    @Override
+    public long count() {
+        return onAllPartitions(BankRecordJdbcRepository::count).stream().mapToLong(Long::longValue).sum();
+    }
+
+    @Override
+    public List<UUID> deleteAllByIds(List<UUID> ids) {
+        return flatten(inTransactions(groupByPartition(ids, Function.identity()), BankRecordJdbcRepository::deleteAllByIds));
+    }
+
+    @Override
+    public void destroy() throws Exception {
+        if (executor instanceof ThreadPoolTaskExecutor threadPool) {
+            threadPool.shutdown();
+        } else if (executor instanceof SimpleAsyncTaskExecutor simple) {
+            simple.close();
+        }
+        for (DataSource dataSource : dataSources) {
+            if (dataSource instanceof AutoCloseable closeable) {
+                closeable.close();
+            }
+        }
+    }
+
+    /**
+     * Репозиторий и менеджер транзакций одной секции.
+     */
+    private record Partition(BankRecordJdbcRepository repository, TransactionTemplate transactionTemplate) {
+    }
+
+    private <T> List<List<T>> groupByPartition(Collection<T> items, Function<T, UUID> id) {
+        List<List<T>> groups = new ArrayList<>(partitions.size());
+        for (int i = 0; i < partitions.size(); i++) {
+            groups.add(new ArrayList<>());
+        }
+        for (T item : items) {
+            groups.get(partitionOf(id.apply(item))).add(item);
+        }
+        return groups;
+    }
+
+    /**
+     * Выполняет операцию записи над частями списка параллельно, каждую - в транзакции своей секции.
+     */
+    private <T, R> List<R> inTransactions(List<List<T>> groups, BiFunction<BankRecordJdbcRepository, List<T>, R> write) {
+        return execute(tasks(groups, (partition, group) -> () ->
+                partition.transactionTemplate().execute(status -> write.apply(partition.repository(), group))));
+    }
+
+    private <T, R> List<R> byPartition(List<List<T>> groups, BiFunction<BankRecordJdbcRepository, List<T>, R> read) {
+        return execute(tasks(groups, (partition, group) -> () -> read.apply(partition.repository(), group)));
+    }
+
+    private <R> List<R> onAllPartitions(Function<BankRecordJdbcRepository, R> operation) {
+        List<Callable<R>> tasks = partitions.stream()
+                .map(partition -> (Callable<R>) () -> operation.apply(partition.repository()))
+                .toList();
+        return execute(tasks);
+    }
+
+    /**
+     * Задачи для непустых частей списка; пустые секции не запрашиваются.
+     */
+    private <T, R> List<Callable<R>> tasks(List<List<T>> groups,
+                                           BiFunction<Partition, List<T>, Callable<R>> factory) {
+        List<Callable<R>> tasks = new ArrayList<>();
+        for (int i = 0; i < groups.size(); i++) {
+            if (!groups.get(i).isEmpty()) {
+                tasks.add(factory.apply(partitions.get(i), groups.get(i)));
+            }
+        }
+        return tasks;
+    }
+
+    /**
+     * Выполняет задачи параллельно и возвращает их результаты в порядке задач. Единственная задача выполняется
+     * в вызывающем потоке. Если задачи завершились ошибкой, после завершения всех задач выбрасывается
+     * первая из ошибок.
+     */
+    private <R> List<R> execute(List<Callable<R>> tasks) {
+        if (tasks.size() == 1) {
+            return Collections.singletonList(call(tasks.get(0)));
+        }
+        List<Future<R>> futures = tasks.stream().map(executor::submit).toList();
+        List<R> results = new ArrayList<>(futures.size());
+        RuntimeException failure = null;
+        for (Future<R> future : futures) {
+            try {
+                results.add(future.get());
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                throw new IllegalStateException("Interrupted while waiting for partitions", e);
+            } catch (ExecutionException e) {
+                if (failure == null) {
+                    failure = e.getCause() instanceof RuntimeException runtime
+                            ? runtime
+                            : new IllegalStateException("Partition operation failed", e.getCause());
+                }
+            }
+        }
+        if (failure != null) {
+            throw failure;
+        }
+        return results;
+    }
+
+    private static <R> R call(Callable<R> task) {
+        try {
+            return task.call();
+        } catch (RuntimeException e) {
+            throw e;
+        } catch (Exception e) {
+            throw new IllegalStateException("Partition operation failed", e);
+        }
+    }
+
+    private static <T> List<T> flatten(List<List<T>> lists) {
+        List<T> result = new ArrayList<>();
+        lists.forEach(result::addAll);
+        return result;
+    }
+
+    /**
+     * Сливает отсортированные страницы секций в одну страницу из не более чем {@code limit} записей.
+     */
+    private static List<BankRecord> merge(List<List<BankRecord>> pages, Comparator<BankRecord> order, int limit) {
+        return pages.stream()
+                .flatMap(List::stream)
+                .sorted(order)
+                .limit(limit)
+                .toList();
+    }
+
+    private static AsyncTaskExecutor virtualThreadExecutor() {
+        SimpleAsyncTaskExecutor executor = new SimpleAsyncTaskExecutor(THREAD_NAME_PREFIX);
+        executor.setVirtualThreads(true);
+        return executor;
+    }
+
+    private static AsyncTaskExecutor platformThreadExecutor(int workers) {
+        ThreadPoolTaskExecutor executor = new ThreadPoolTaskExecutor();
+        executor.setCorePoolSize(workers);
+        executor.setMaxPoolSize(workers);
+        executor.setThreadNamePrefix(THREAD_NAME_PREFIX);
+        executor.initialize();
+        return executor;
+    }
+}
@@ -0,0 +1,502 @@
+package ru.vslukianenko.testnbki.repo.offheap;
+
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.DisposableBean;
+import org.springframework.dao.DuplicateKeyException;
+import org.springframework.dao.OptimisticLockingFailureException;
+import ru.vslukianenko.testnbki.config.BankRecordStorageProperties;
+import ru.vslukianenko.testnbki.id.UuidV7;
+import ru.vslukianenko.testnbki.model.BankRecord;
+import ru.vslukianenko.testnbki.repo.BankRecordStore;
+
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Optional;
+import java.util.PriorityQueue;
+import java.util.Set;
+import java.util.UUID;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+import java.util.function.LongPredicate;
+import java.util.function.Supplier;
+import java.util.regex.Pattern;
+
+/**
+ * Хранилище записей банка в памяти вне кучи с журналом изменений на диске.
+ *
+ * <p>Данные и версии записей хранятся в сегментах {@link OffHeapSegments}, индекс идентификатор - адрес
+ * слота - в {@link UuidLongHashMap} на примитивных массивах, поэтому записи почти не занимают кучу
+ * и не нагружают сборщик мусора. Каждое изменение сначала дописывается в журнал {@link RecordLog},
+ * затем применяется в памяти; при запуске журнал воспроизводится. Операция над списком записей
+ * записывается в журнал одной записью с общей контрольной суммой, поэтому и в памяти, и при воспроизведении
+ * после аварийной остановки она применяется целиком или не применяется вовсе. Если запись в журнал
+ * не удалась, изменения в памяти не применяются, а журнал обрезается до прежней длины.</p>
+ *
+ * <p>Журнал и память сжимаются вместе: раз в {@code compaction-interval} проверяется, превышает ли журнал
+ * {@code compaction-min-log-size} и в {@code compaction-ratio} раз - объем актуальных записей. Сжатие
+ * переписывает актуальные записи в новый журнал и новые сегменты и блокирует запись на время копирования.</p>
+ *
+ * <p>Чтение выполняется параллельно, запись - под монопольной блокировкой. Хранилище рассчитано на доступ
+ * по ключу. Для постраничной выборки всех записей идентификаторы дополнительно хранятся упорядоченными
+ * в {@link SortedUuidIndex}, и страница читается от курсора за {@code O(log N + limit)}. Поиск и полнотекстовый
+ * поиск просматривают все записи: индекса по данным нет, а обход в порядке идентификаторов до заполнения
+ * страницы при редких совпадениях медленнее последовательного просмотра таблицы. Полнотекстовый поиск
+ * находит записи, данные которых содержат все слова запроса без учета регистра, как индекс H2.</p>
+ */
+@Slf4j
+public class OffHeapBankRecordStore implements BankRecordStore, DisposableBean {
+
+    /**
+     * Порядок идентификаторов H2: старшая, затем младшая половина UUID как беззнаковые числа.
+     */
+    private static final Comparator<UUID> ID_ORDER =
+            Comparator.comparing(UUID::getMostSignificantBits, Long::compareUnsigned)
+                    .thenComparing(UUID::getLeastSignificantBits, Long::compareUnsigned);
+
+    private static final Comparator<BankRecord> BY_DATA_AND_ID =
+            Comparator.comparing(BankRecord::getData).thenComparing(BankRecord::getId, ID_ORDER);
+
+    private static final Pattern WORD_SEPARATOR = Pattern.compile("[^\\p{L}\\p{N}]+");
+
+    private final ReentrantReadWriteLock lock = new ReentrantReadWriteLock();
+
+    private final BankRecordStorageProperties.OffHeap properties;
+
+    private final int segmentSize;
+
+    private final RecordLog recordLog;
+
+    private final ScheduledExecutorService compactor;
+
+    private UuidLongHashMap index = new UuidLongHashMap(1024);
+
+    private final SortedUuidIndex sortedIds = new SortedUuidIndex();
+
+    private OffHeapSegments segments;
+
+    private long liveLogBytes;
+
+    /**
+     * Создает хранилище, воспроизводит журнал {@code log-path} и запускает периодическую проверку сжатия.
+     *
+     * @param properties настройки хранилища вне кучи
+     */
+    public OffHeapBankRecordStore(BankRecordStorageProperties.OffHeap properties) {
+        this.properties = properties;
+        this.segmentSize = Math.toIntExact(properties.getSegmentSize().toBytes());
+        this.segments = new OffHeapSegments(segmentSize);
+        this.recordLog = new RecordLog(properties.getLogPath(), properties.isFsync());
+        long start = System.nanoTime();
+        long entries = recordLog.replay(this::apply);
+        log.info("Replayed {} record log entries ({} records) from {} in {} ms", entries, index.size(),
+                properties.getLogPath(), (System.nanoTime() - start) / 1_000_000);
+        this.compactor = Executors.newSingleThreadScheduledExecutor(task -> {
+            Thread thread = new Thread(task, "bank-record-log-compaction");
+            thread.setDaemon(true);
+            return thread;
+        });
+        long interval = properties.getCompactionInterval().toMillis();
+        compactor.scheduleWithFixedDelay(this::compactIfNeeded, interval, interval, TimeUnit.MILLISECONDS);
+    }
+
+    @Override
+    public void insertAll(List<BankRecord> bankRecords) {
+        for (BankRecord bankRecord : bankRecords) {
+            if (bankRecord.getId() == null) {
+                bankRecord.setId(UuidV7.generate());
+            }
+        }
+        writeLocked(() -> {
+            Set<UUID> batch = new HashSet<>();
+            List<RecordLog.Entry> entries = new ArrayList<>(bankRecords.size());
+            for (BankRecord bankRecord : bankRecords) {
+                if (!batch.add(bankRecord.getId()) || index.get(bankRecord.getId()) != UuidLongHashMap.NO_VALUE) {
+                    throw new DuplicateKeyException("Bank record " + bankRecord.getId() + " already exists");
+                }
+                entries.add(put(bankRecord.getId(), 0, bankRecord.getData()));
+            }
+            write(entries);
+        });
+        bankRecords.forEach(bankRecord -> bankRecord.setVersion(0L));
+    }
+
+    @Override
+    public int upsertAll(Collection<BankRecord> bankRecords) {
+        return writeLocked(() -> {
+            Map<UUID, Long> versions = new HashMap<>();
+            List<RecordLog.Entry> entries = new ArrayList<>(bankRecords.size());
+            int inserted = 0;
+            for (BankRecord bankRecord : bankRecords) {
+                UUID id = bankRecord.getId();
+                long version = nextVersion(id, versions);
+                if (version == 0) {
+                    inserted++;
+                }
+                entries.add(put(id, version, bankRecord.getData()));
+            }
+            write(entries);
+            return inserted;
+        });
+    }
+
+    @Override
+    public void restoreAll(Collection<BankRecord> bankRecords) {
+        List<RecordLog.Entry> entries = bankRecords.stream()
+                .map(bankRecord -> put(bankRecord.getId(), bankRecord.getVersion(), bankRecord.getData()))
+                .toList();
+        writeLocked(() -> write(entries));
+    }
+
+    @Override
+    public void updateAll(Collection<BankRecord> bankRecords) {
+        for (BankRecord bankRecord : bankRecords) {
+            if (bankRecord.getId() == null && bankRecord.getVersion() == null) {
+                bankRecord.setId(UuidV7.generate());
+            }
+        }
+        writeLocked(() -> {
+            Map<UUID, Long> versions = new HashMap<>();
+            List<RecordLog.Entry> entries = new ArrayList<>(bankRecords.size());
+            for (BankRecord bankRecord : bankRecords) {
+                UUID id = bankRecord.getId();
+                if (bankRecord.getVersion() != null
+                        && (id == null || currentVersion(id, versions) != bankRecord.getVersion())) {
+                    throw new OptimisticLockingFailureException(
+                            "Bank record " + id + " does not have expected version " + bankRecord.getVersion());
+                }
+                entries.add(put(id, nextVersion(id, versions), bankRecord.getData()));
+            }
+            write(entries);
+        });
+    }
+
+    @Override
+    public Set<UUID> findExistingIds(Collection<UUID> ids) {
+        return readLocked(() -> {
+            Set<UUID> existing = new HashSet<>();
+            for (UUID id : ids) {
+                if (index.get(id) != UuidLongHashMap.NO_VALUE) {
+                    existing.add(id);
+                }
+            }
+            return existing;
+        });
+    }
+
+    @Override
+    public List<BankRecord> findAllByIds(Collection<UUID> ids) {
+        return readLocked(() -> {
+            List<BankRecord> found = new ArrayList<>(ids.size());
+            for (UUID id : new LinkedHashSet<>(ids)) {
+                long address = index.get(id);
+                if (address != UuidLongHashMap.NO_VALUE) {
+                    found.add(read(id, address));
+                }
+            }
+            return found;
+        });
+    }
+
+    @Override
+    public List<BankRecord> findPageAfter(UUID after, int limit) {
+        return readLocked(() -> pageAfter(after, limit));
+    }
+
+    @Override
+    public Optional<BankRecord> updateIfVersionMatches(UUID id, String data, Long expectedVersion) {
+        return writeLocked(() -> {
+            long address = index.get(id);
+            if (address == UuidLongHashMap.NO_VALUE
+                    || (expectedVersion != null && segments.version(address) != expectedVersion)) {
+                return Optional.empty();
+            }
+            long version = segments.version(address) + 1;
+            write(List.of(put(id, version, data)));
+            return Optional.of(read(id, index.get(id)));
+        });
+    }
+
+    @Override
+    public List<BankRecord> findByData(String data, UUID afterId, int limit) {
+        byte[] bytes = data.getBytes(StandardCharsets.UTF_8);
+        return readLocked(() -> firstByIdAfter(afterId, limit, address -> segments.dataEquals(address, bytes)));
+    }
+
+    @Override
+    public List<BankRecord> findByDataPrefix(String prefix, String afterData, UUID afterId, int limit) {
+        byte[] bytes = prefix.getBytes(StandardCharsets.UTF_8);
+        BankRecord after = null;
+        if (afterData != null) {
+            after = new BankRecord();
+            after.setData(afterData);
+            after.setId(afterId);
+        }
+        BankRecord cursor = after;
+        return readLocked(() -> {
+            PriorityQueue<BankRecord> page = new PriorityQueue<>(BY_DATA_AND_ID.reversed());
+            index.forEach((msb, lsb, address) -> {
+                if (!segments.dataStartsWith(address, bytes)) {
+                    return;
+                }
+                BankRecord bankRecord = read(new UUID(msb, lsb), address);
+                if (cursor == null || BY_DATA_AND_ID.compare(bankRecord, cursor) > 0) {
+                    keepFirst(page, bankRecord, limit);
+                }
+            });
+            return sorted(page, BY_DATA_AND_ID);
+        });
+    }
+
+    @Override
+    public List<UUID> searchFullText(String query, UUID afterId, int limit) {
+        Set<String> words = words(query);
+        return readLocked(() -> firstByIdAfter(afterId, limit, address -> {
+            byte[] data = segments.data(address);
+            return data != null && words(new String(data, StandardCharsets.UTF_8)).containsAll(words);
+        }).stream().map(BankRecord::getId).toList());
+    }
+
+    /**
+     * Отдельный индекс не нужен: полнотекстовый поиск просматривает все записи.
+     */
+    @Override
+    public void createFullTextIndex() {
+    }
+
+    @Override
+    public long count() {
+        return readLocked(() -> (long) index.size());
+    }
+
+    @Override
+    public List<UUID> deleteAllByIds(List<UUID> ids) {
+        return writeLocked(() -> {
+            List<UUID> deleted = new ArrayList<>();
+            List<RecordLog.Entry> entries = new ArrayList<>();
+            for (UUID id : new LinkedHashSet<>(ids)) {
+                long address = index.get(id);
+                if (address != UuidLongHashMap.NO_VALUE) {
+                    deleted.add(id);
+                    entries.add(new RecordLog.Entry(RecordLog.DELETE, id.getMostSignificantBits(),
+                            id.getLeastSignificantBits(), segments.version(address), null));
+                }
+            }
+            write(entries);
+            return deleted;
+        });
+    }
+
+    /**
+     * Переписывает актуальные записи в новый журнал и новые сегменты памяти.
+     */
+    public void compact() {
+        writeLocked(() -> {
+            long start = System.nanoTime();
+            long logSize = recordLog.size();
+            UuidLongHashMap compactedIndex = new UuidLongHashMap(index.size());
+            OffHeapSegments compactedSegments = new OffHeapSegments(segmentSize);
+            recordLog.rewrite(writer -> index.forEach((msb, lsb, address) -> {
+                long version = segments.version(address);
+                byte[] data = segments.data(address);
+                compactedIndex.put(msb, lsb, compactedSegments.append(version, data));
+                writer.accept(new RecordLog.Entry(RecordLog.PUT, msb, lsb, version, data));
+            }));
+            index = compactedIndex;
+            segments = compactedSegments;
+            sortedIds.purge(index);
+            log.info("Compacted record log from {} to {} bytes in {} ms", logSize, recordLog.size(),
+                    (System.nanoTime() - start) / 1_000_000);
+        });
+    }
+
+    /**
+     * Возвращает размер журнала в байтах.
+     *
+     * @return размер файла журнала
+     */
+    public long getLogSize() {
+        return readLocked(recordLog::size);
+    }
+
+    /**
+     * Возвращает объем памяти вне кучи, выделенной под сегменты.
+     *
+     * @return объем сегментов в байтах
+     */
+    public long getAllocatedBytes() {
+        return readLocked(segments::allocatedBytes);
+    }
+
+    @Override
+    public void destroy() throws Exception {
+        compactor.shutdownNow();
+        lock.writeLock().lock();
+        try {
+            recordLog.close();
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    private void compactIfNeeded() {
+        try {
+            boolean needed = readLocked(() -> recordLog.size() > properties.getCompactionMinLogSize().toBytes()
+                    && recordLog.size() > liveLogBytes * properties.getCompactionRatio());
+            if (needed) {
+                compact();
+            }
+        } catch (RuntimeException e) {
+            log.warn("Record log compaction failed", e);
+        }
+    }
+
+    /**
+     * Дописывает операции в журнал и только после этого применяет их в памяти.
+     */
+    private void write(List<RecordLog.Entry> entries) {
+        entries.forEach(entry -> segments.checkFits(entry.data()));
+        recordLog.append(entries);
+        entries.forEach(this::apply);
+    }
+
+    private void apply(RecordLog.Entry entry) {
+        UUID id = new UUID(entry.mostSignificantBits(), entry.leastSignificantBits());
+        long previous = entry.type() == RecordLog.PUT
+                ? index.put(id, segments.append(entry.version(), entry.data()))
+                : index.remove(id);
+        if (previous != UuidLongHashMap.NO_VALUE) {
+            liveLogBytes -= RecordLog.entrySize(segments.length(previous));
+        } else if (entry.type() == RecordLog.PUT) {
+            sortedIds.add(id);
+        }
+        if (entry.type() == RecordLog.PUT) {
+            liveLogBytes += RecordLog.entrySize(entry.data() == null ? -1 : entry.data().length);
+        }
+    }
+
+    private static RecordLog.Entry put(UUID id, long version, String data) {
+        return new RecordLog.Entry(RecordLog.PUT, id.getMostSignificantBits(), id.getLeastSignificantBits(),
+                version, data == null ? null : data.getBytes(StandardCharsets.UTF_8));
+    }
+
+    /**
+     * Текущая версия записи с учетом изменений, уже подготовленных в той же операции, или {@code -1}.
+     */
+    private long currentVersion(UUID id, Map<UUID, Long> pending) {
+        Long version = pending.get(id);
+        if (version != null) {
+            return version;
+        }
+        long address = index.get(id);
+        return address == UuidLongHashMap.NO_VALUE ? -1 : segments.version(address);
+    }
+
+    private long nextVersion(UUID id, Map<UUID, Long> pending) {
+        long version = currentVersion(id, pending) + 1;
+        pending.put(id, version);
+        return version;
+    }
+
+    private BankRecord read(UUID id, long address) {
+        BankRecord bankRecord = new BankRecord();
+        bankRecord.setId(id);
+        byte[] data = segments.data(address);
+        bankRecord.setData(data == null ? null : new String(data, StandardCharsets.UTF_8));
+        bankRecord.setVersion(segments.version(address));
+        return bankRecord;
+    }
+
+    /**
+     * Первые {@code limit} записей в порядке идентификаторов после {@code after} по {@link SortedUuidIndex}.
+     * Идентификаторы удаленных записей, еще оставшиеся в нем, пропускаются.
+     */
+    private List<BankRecord> pageAfter(UUID after, int limit) {
+        List<BankRecord> page = new ArrayList<>(Math.min(limit, 1024));
+        if (limit <= 0) {
+            return page;
+        }
+        sortedIds.forEachAfter(after, id -> {
+            long address = index.get(id);
+            if (address != UuidLongHashMap.NO_VALUE) {
+                page.add(read(id, address));
+            }
+            return page.size() < limit;
+        });
+        return page;
+    }
+
+    /**
+     * Первые {@code limit} записей в порядке идентификаторов после {@code after}, слоты которых
+     * удовлетворяют {@code filter}. Просматривает все записи.
+     */
+    private List<BankRecord> firstByIdAfter(UUID after, int limit, LongPredicate filter) {
+        PriorityQueue<UUID> page = new PriorityQueue<>(ID_ORDER.reversed());
+        index.forEach((msb, lsb, address) -> {
+            UUID id = new UUID(msb, lsb);
+            if ((after == null || ID_ORDER.compare(id, after) > 0) && filter.test(address)) {
+                keepFirst(page, id, limit);
+            }
+        });
+        return sorted(page, ID_ORDER).stream().map(id -> read(id, index.get(id))).toList();
+    }
+
+    /**
+     * Добавляет элемент в кучу, в вершине которой наибольший элемент, и оставляет {@code limit} наименьших.
+     */
+    private static <T> void keepFirst(PriorityQueue<T> page, T element, int limit) {
+        page.add(element);
+        if (page.size() > limit) {
+            page.poll();
+        }
+    }
+
+    private static <T> List<T> sorted(PriorityQueue<T> page, Comparator<T> order) {
+        List<T> result = new ArrayList<>(page);
+        result.sort(order);
+        return result;
+    }
+
+    private static Set<String> words(String text) {
+        Set<String> words = new HashSet<>(Arrays.asList(WORD_SEPARATOR.split(text.toUpperCase(Locale.ROOT))));
+        words.remove("");
+        return words;
+    }
+
+    private void writeLocked(Runnable action) {
+        lock.writeLock().lock();
+        try {
+            action.run();
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    private <T> T writeLocked(Supplier<T> action) {
+        lock.writeLock().lock();
+        try {
+            return action.get();
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    private <T> T readLocked(Supplier<T> action) {
+        lock.readLock().lock();
+        try {
+            return action.get();
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+}
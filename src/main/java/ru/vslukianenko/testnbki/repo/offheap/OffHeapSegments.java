@@ -0,0 +1,135 @@
+package ru.vslukianenko.testnbki.repo.offheap;
+
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Память записей вне кучи: последовательность сегментов {@link ByteBuffer#allocateDirect(int)}.
+ *
+ * <p>Записи только добавляются в конец последнего сегмента; место измененных и удаленных записей
+ * освобождается сжатием (копированием актуальных записей в новые сегменты). Слот записи:
+ * версия ({@code long}), длина данных в байтах ({@code int}, {@code -1} для {@code null}) и данные в UTF-8.
+ * Адрес слота - номер сегмента в старших 32 битах и смещение в младших.</p>
+ *
+ * <p>Класс не потокобезопасен; синхронизацию обеспечивает вызывающий код. Чтение использует только
+ * абсолютные методы {@link ByteBuffer}, поэтому читать можно из нескольких потоков одновременно.</p>
+ */
+final class OffHeapSegments {
+
+    static final int HEADER_SIZE = Long.BYTES + Integer.BYTES;
+
+    private final int segmentSize;
+
+    private final List<ByteBuffer> segments = new ArrayList<>();
+
+    private int position;
+
+    OffHeapSegments(int segmentSize) {
+        if (segmentSize <= HEADER_SIZE) {
+            throw new IllegalArgumentException("Segment size is too small: " + segmentSize);
+        }
+        this.segmentSize = segmentSize;
+    }
+
+    /**
+     * Добавляет слот записи.
+     *
+     * @param version версия записи
+     * @param data    данные записи в UTF-8 или {@code null}
+     * @return адрес слота
+     * @throws IllegalArgumentException если запись не помещается в сегмент
+     */
+    long append(long version, byte[] data) {
+        checkFits(data);
+        int length = data == null ? 0 : data.length;
+        int slotSize = HEADER_SIZE + length;
+        if (segments.isEmpty() || position + slotSize > segmentSize) {
+            segments.add(ByteBuffer.allocateDirect(segmentSize));
+            position = 0;
+        }
+        ByteBuffer segment = segments.get(segments.size() - 1);
+        long address = ((long) (segments.size() - 1) << 32) | position;
+        segment.putLong(position, version);
+        segment.putInt(position + Long.BYTES, data == null ? -1 : length);
+        if (data != null) {
+            segment.put(position + HEADER_SIZE, data);
+        }
+        position += slotSize;
+        return address;
+    }
+
+    long version(long address) {
+        return segment(address).getLong(offset(address));
+    }
+
+    /**
+     * Возвращает длину данных слота в байтах или {@code -1} для {@code null}.
+     */
+    int length(long address) {
+        return segment(address).getInt(offset(address) + Long.BYTES);
+    }
+
+    byte[] data(long address) {
+        int length = length(address);
+        if (length < 0) {
+            return null;
+        }
+        byte[] data = new byte[length];
+        segment(address).get(offset(address) + HEADER_SIZE, data);
+        return data;
+    }
+
+    /**
+     * Проверяет, начинаются ли данные слота с {@code prefix}, не копируя данные в кучу.
+     */
+    boolean dataStartsWith(long address, byte[] prefix) {
+        int length = length(address);
+        if (length < prefix.length) {
+            return false;
+        }
+        ByteBuffer segment = segment(address);
+        int start = offset(address) + HEADER_SIZE;
+        for (int i = 0; i < prefix.length; i++) {
+            if (segment.get(start + i) != prefix[i]) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * Проверяет, равны ли данные слота {@code data}, не копируя данные в кучу.
+     */
+    boolean dataEquals(long address, byte[] data) {
+        return length(address) == data.length && dataStartsWith(address, data);
+    }
+
+    /**
+     * Возвращает объем памяти всех выделенных сегментов.
+     */
+    long allocatedBytes() {
+        return (long) segments.size() * segmentSize;
+    }
+
+    /**
+     * Проверяет, что данные помещаются в один сегмент.
+     *
+     * @throws IllegalArgumentException если слот с такими данными больше сегмента
+     */
+    void checkFits(byte[] data) {
+        int length = data == null ? 0 : data.length;
+        if (HEADER_SIZE + length > segmentSize) {
+            throw new IllegalArgumentException("Record of " + length + " bytes does not fit into a segment of "
+                    + segmentSize + " bytes");
+        }
+    }
+
+    private ByteBuffer segment(long address) {
+        return segments.get((int) (address >>> 32));
+    }
+
+    private static int offset(long address) {
+        return (int) address;
+    }
+}
@@ -0,0 +1,322 @@
+package ru.vslukianenko.testnbki.repo.offheap;
+
+import org.springframework.dao.DataAccessResourceFailureException;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.EOFException;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.BufferUnderflowException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.function.Consumer;
+import java.util.zip.CRC32;
+
+/**
+ * Журнал изменений записей, в который данные только дописываются.
+ *
+ * <p>Файл начинается с метки формата {@link #MAGIC}, за которой следуют записи. Запись журнала: длина тела ({@code int}), CRC32 тела ({@code int}) и тело - количество операций
+ * ({@code int}) и операции. Операция: тип ({@link #PUT} или {@link #DELETE}), идентификатор (два {@code long}),
+ * версия ({@code long}), длина данных ({@code int}, {@code -1} для {@code null}) и данные в UTF-8. Все операции
+ * одного вызова {@link #append(List)} образуют одну запись с общей контрольной суммой, поэтому при
+ * воспроизведении они применяются все или ни одной. Журнал читается до первой неполной или поврежденной
+ * записи (например, не дописанной при аварийной остановке) и обрезается по ней.</p>
+ *
+ * <p>Если дописать запись не удалось, журнал обрезается до длины перед записью, чтобы неполная запись
+ * не скрыла от воспроизведения последующие. Если не удалось и обрезать журнал, он переходит в состояние
+ * ошибки и отклоняет дальнейшие изменения до перезапуска, при котором неполная запись будет отброшена.</p>
+ *
+ * <p>Сжатие ({@link #rewrite(Consumer)}) записывает актуальные записи во временный файл и атомарно заменяет
+ * им журнал, поэтому при остановке во время сжатия остается либо старый, либо новый журнал.</p>
+ *
+ * <p>Класс не потокобезопасен; синхронизацию обеспечивает вызывающий код.</p>
+ */
+final class RecordLog implements AutoCloseable {
+
+    static final byte PUT = 1;
+
+    static final byte DELETE = 2;
+
+    /**
+     * Метка формата журнала ({@code "BRL2"}): журнал другого формата не воспроизводится и не обрезается.
+     */
+    static final int MAGIC = 0x42524C32;
+
+    private static final int FILE_HEADER_SIZE = Integer.BYTES;
+
+    private static final int RECORD_HEADER_SIZE = 2 * Integer.BYTES;
+
+    private static final int BODY_HEADER_SIZE = Integer.BYTES;
+
+    private static final int ENTRY_HEADER_SIZE = 1 + 3 * Long.BYTES + Integer.BYTES;
+
+    private final Path path;
+
+    private final boolean fsync;
+
+    private FileChannel channel;
+
+    /**
+     * Причина, по которой журнал не принимает изменения, или {@code null}.
+     */
+    private IOException failure;
+
+    /**
+     * Операция журнала.
+     */
+    record Entry(byte type, long mostSignificantBits, long leastSignificantBits, long version, byte[] data) {
+    }
+
+    RecordLog(Path path, boolean fsync) {
+        this.path = path;
+        this.fsync = fsync;
+        try {
+            Path parent = path.toAbsolutePath().getParent();
+            if (parent != null) {
+                Files.createDirectories(parent);
+            }
+            channel = open(path);
+            if (channel.size() < FILE_HEADER_SIZE) {
+                channel.truncate(0);
+                channel.write(fileHeader());
+                if (fsync) {
+                    channel.force(false);
+                }
+            }
+        } catch (IOException e) {
+            throw new DataAccessResourceFailureException("Cannot open record log " + path, e);
+        }
+    }
+
+    /**
+     * Читает журнал с начала и передает операции в {@code consumer}. Неполная или поврежденная запись
+     * в конце журнала и все, что за ней, отбрасываются; операции такой записи не передаются.
+     *
+     * @return количество прочитанных операций
+     */
+    long replay(Consumer<Entry> consumer) {
+        long entries = 0;
+        long validLength = FILE_HEADER_SIZE;
+        try (InputStream file = Files.newInputStream(path);
+             DataInputStream in = new DataInputStream(new BufferedInputStream(file, 1 << 16))) {
+            if (in.readInt() != MAGIC) {
+                throw new DataAccessResourceFailureException("Record log " + path + " has an unsupported format");
+            }
+            long fileSize = channel.size();
+            CRC32 crc = new CRC32();
+            while (true) {
+                int length;
+                int checksum;
+                byte[] body;
+                try {
+                    length = in.readInt();
+                    checksum = in.readInt();
+                    if (length < BODY_HEADER_SIZE || validLength + RECORD_HEADER_SIZE + length > fileSize) {
+                        break;
+                    }
+                    body = in.readNBytes(length);
+                } catch (EOFException e) {
+                    break;
+                }
+                crc.reset();
+                crc.update(body);
+                if ((int) crc.getValue() != checksum) {
+                    break;
+                }
+                List<Entry> decoded = decode(body);
+                if (decoded == null) {
+                    break;
+                }
+                decoded.forEach(consumer);
+                validLength += RECORD_HEADER_SIZE + length;
+                entries += decoded.size();
+            }
+            if (validLength < fileSize) {
+                channel.truncate(validLength);
+            }
+            channel.position(validLength);
+        } catch (IOException e) {
+            throw new DataAccessResourceFailureException("Cannot replay record log " + path, e);
+        }
+        return entries;
+    }
+
+    /**
+     * Дописывает операции одной записью в файл и, если включен {@code fsync}, сбрасывает журнал на диск.
+     * При ошибке журнал обрезается до прежней длины.
+     *
+     * @throws DataAccessResourceFailureException если запись не удалась или журнал в состоянии ошибки
+     */
+    void append(List<Entry> entries) {
+        if (entries.isEmpty()) {
+            return;
+        }
+        if (failure != null) {
+            throw new DataAccessResourceFailureException("Record log " + path + " failed, restart is required", failure);
+        }
+        ByteBuffer buffer = encode(entries);
+        long position;
+        try {
+            position = channel.position();
+        } catch (IOException e) {
+            throw new DataAccessResourceFailureException("Cannot append to record log " + path, e);
+        }
+        try {
+            while (buffer.hasRemaining()) {
+                channel.write(buffer);
+            }
+            if (fsync) {
+                channel.force(false);
+            }
+        } catch (IOException e) {
+            rollBack(position, e);
+            throw new DataAccessResourceFailureException("Cannot append to record log " + path, e);
+        }
+    }
+
+    /**
+     * Заменяет журнал операциями, которые {@code writer} передает в полученный обработчик.
+     */
+    void rewrite(Consumer<Consumer<Entry>> writer) {
+        Path compacted = path.resolveSibling(path.getFileName() + ".compact");
+        try {
+            try (FileOutputStream file = new FileOutputStream(compacted.toFile());
+                 OutputStream out = new BufferedOutputStream(file, 1 << 16)) {
+                out.write(fileHeader().array());
+                writer.accept(entry -> {
+                    ByteBuffer buffer = encode(List.of(entry));
+                    try {
+                        out.write(buffer.array());
+                    } catch (IOException e) {
+                        throw new DataAccessResourceFailureException("Cannot write compacted record log", e);
+                    }
+                });
+                out.flush();
+                file.getChannel().force(true);
+            }
+            channel.close();
+            Files.move(compacted, path, StandardCopyOption.ATOMIC_MOVE, StandardCopyOption.REPLACE_EXISTING);
+            channel = open(path);
+            failure = null;
+        } catch (IOException e) {
+            throw new DataAccessResourceFailureException("Cannot compact record log " + path, e);
+        }
+    }
+
+    long size() {
+        try {
+            return channel.size();
+        } catch (IOException e) {
+            throw new DataAccessResourceFailureException("Cannot read record log size " + path, e);
+        }
+    }
+
+    @Override
+    public void close() throws IOException {
+        if (fsync) {
+            channel.force(false);
+        }
+        channel.close();
+    }
+
+    /**
+     * Размер записи журнала из одной операции в байтах; так записи пишутся при сжатии.
+     *
+     * @param dataLength длина данных в байтах или {@code -1} для {@code null}
+     */
+    static int entrySize(int dataLength) {
+        return RECORD_HEADER_SIZE + BODY_HEADER_SIZE + ENTRY_HEADER_SIZE + Math.max(dataLength, 0);
+    }
+
+    /**
+     * Обрезает журнал до длины перед неудавшейся записью; если это невозможно, переводит журнал в состояние ошибки.
+     */
+    private void rollBack(long position, IOException cause) {
+        try {
+            channel.truncate(position);
+            channel.position(position);
+        } catch (IOException e) {
+            cause.addSuppressed(e);
+            failure = cause;
+        }
+    }
+
+    private static FileChannel open(Path path) throws IOException {
+        FileChannel channel = FileChannel.open(path,
+                StandardOpenOption.CREATE, StandardOpenOption.READ, StandardOpenOption.WRITE);
+        channel.position(channel.size());
+        return channel;
+    }
+
+    private static ByteBuffer fileHeader() {
+        return ByteBuffer.allocate(FILE_HEADER_SIZE).putInt(MAGIC).flip();
+    }
+
+    private static ByteBuffer encode(List<Entry> entries) {
+        long bodyLength = BODY_HEADER_SIZE;
+        for (Entry entry : entries) {
+            bodyLength += ENTRY_HEADER_SIZE + (entry.data() == null ? 0 : entry.data().length);
+        }
+        ByteBuffer buffer = ByteBuffer.allocate(Math.toIntExact(RECORD_HEADER_SIZE + bodyLength));
+        buffer.putInt((int) bodyLength);
+        buffer.putInt(0);
+        buffer.putInt(entries.size());
+        for (Entry entry : entries) {
+            byte[] data = entry.data();
+            buffer.put(entry.type());
+            buffer.putLong(entry.mostSignificantBits());
+            buffer.putLong(entry.leastSignificantBits());
+            buffer.putLong(entry.version());
+            buffer.putInt(data == null ? -1 : data.length);
+            if (data != null) {
+                buffer.put(data);
+            }
+        }
+        CRC32 crc = new CRC32();
+        crc.update(buffer.array(), RECORD_HEADER_SIZE, (int) bodyLength);
+        buffer.putInt(Integer.BYTES, (int) crc.getValue());
+        return buffer.flip();
+    }
+
+    /**
+     * Разбирает тело записи журнала.
+     *
+     * @return операции записи или {@code null}, если тело не соответствует формату
+     */
+    private static List<Entry> decode(byte[] body) {
+        ByteBuffer buffer = ByteBuffer.wrap(body);
+        try {
+            int count = buffer.getInt();
+            if (count < 0 || count > buffer.remaining() / ENTRY_HEADER_SIZE) {
+                return null;
+            }
+            List<Entry> entries = new ArrayList<>(count);
+            for (int i = 0; i < count; i++) {
+                byte type = buffer.get();
+                long msb = buffer.getLong();
+                long lsb = buffer.getLong();
+                long version = buffer.getLong();
+                int dataLength = buffer.getInt();
+                byte[] data = null;
+                if (dataLength >= 0) {
+                    data = new byte[dataLength];
+                    buffer.get(data);
+                }
+                entries.add(new Entry(type, msb, lsb, version, data));
+            }
+            return buffer.hasRemaining() ? null : entries;
+        } catch (BufferUnderflowException e) {
+            return null;
+        }
+    }
+}
@@ -0,0 +1,141 @@
+package ru.vslukianenko.testnbki.repo.offheap;
+
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.Iterator;
+import java.util.NavigableSet;
+import java.util.TreeSet;
+import java.util.UUID;
+import java.util.function.Predicate;
+
+/**
+ * Идентификаторы записей в порядке H2 (половины UUID как беззнаковые числа) для постраничного обхода.
+ *
+ * <p>Основная часть хранится отсортированными примитивными массивами. Идентификатор больше всех
+ * имеющихся (например, новый UUIDv7) дописывается в конец массивов, остальные попадают в небольшой
+ * {@link TreeSet}, который сливается с массивами, когда превышает восьмую часть их размера. Поиск начала
+ * страницы - двоичный поиск, поэтому страница из {@code limit} записей стоит {@code O(log N + limit)}.</p>
+ *
+ * <p>Удаленные идентификаторы из массивов не удаляются: вызывающий код пропускает их, проверяя основной
+ * индекс, а {@link #purge(UuidLongHashMap)} при сжатии хранилища оставляет в массивах только
+ * идентификаторы актуальных записей.</p>
+ *
+ * <p>Класс не потокобезопасен; синхронизацию обеспечивает вызывающий код.</p>
+ */
+final class SortedUuidIndex {
+
+    private static final Comparator<UUID> ID_ORDER = (first, second) -> compare(
+            first.getMostSignificantBits(), first.getLeastSignificantBits(),
+            second.getMostSignificantBits(), second.getLeastSignificantBits());
+
+    private static final int MIN_PENDING = 1024;
+
+    private long[] mostSignificantBits = new long[16];
+
+    private long[] leastSignificantBits = new long[16];
+
+    private int size;
+
+    private NavigableSet<UUID> pending = new TreeSet<>(ID_ORDER);
+
+    /**
+     * Добавляет идентификатор новой записи.
+     */
+    void add(UUID id) {
+        long msb = id.getMostSignificantBits();
+        long lsb = id.getLeastSignificantBits();
+        if (size == 0 || compare(msb, lsb, mostSignificantBits[size - 1], leastSignificantBits[size - 1]) > 0) {
+            if (size == mostSignificantBits.length) {
+                mostSignificantBits = Arrays.copyOf(mostSignificantBits, size * 2);
+                leastSignificantBits = Arrays.copyOf(leastSignificantBits, size * 2);
+            }
+            mostSignificantBits[size] = msb;
+            leastSignificantBits[size++] = lsb;
+            return;
+        }
+        pending.add(id);
+        if (pending.size() > Math.max(MIN_PENDING, size / 8)) {
+            merge(any -> true);
+        }
+    }
+
+    /**
+     * Сливает новые идентификаторы с массивами и отбрасывает идентификаторы, которых нет в основном индексе.
+     */
+    void purge(UuidLongHashMap index) {
+        merge(id -> index.get(id) != UuidLongHashMap.NO_VALUE);
+    }
+
+    /**
+     * Передает идентификаторы больше {@code after} по возрастанию, пока {@code action} возвращает {@code true}.
+     *
+     * @param after  граница или {@code null}, чтобы начать с наименьшего идентификатора
+     * @param action действие над идентификатором; {@code false} прекращает обход
+     */
+    void forEachAfter(UUID after, Predicate<UUID> action) {
+        int position = after == null ? 0 : firstGreater(after.getMostSignificantBits(), after.getLeastSignificantBits());
+        Iterator<UUID> added = (after == null ? pending : pending.tailSet(after, false)).iterator();
+        UUID next = added.hasNext() ? added.next() : null;
+        while (position < size || next != null) {
+            UUID id;
+            if (next == null || (position < size && compare(mostSignificantBits[position], leastSignificantBits[position],
+                    next.getMostSignificantBits(), next.getLeastSignificantBits()) < 0)) {
+                id = new UUID(mostSignificantBits[position], leastSignificantBits[position]);
+                position++;
+            } else {
+                id = next;
+                next = added.hasNext() ? added.next() : null;
+                if (position < size && mostSignificantBits[position] == id.getMostSignificantBits()
+                        && leastSignificantBits[position] == id.getLeastSignificantBits()) {
+                    position++;
+                }
+            }
+            if (!action.test(id)) {
+                return;
+            }
+        }
+    }
+
+    /**
+     * Сливает новые идентификаторы с отсортированными массивами, оставляя только удовлетворяющие {@code keep}.
+     */
+    private void merge(Predicate<UUID> keep) {
+        int capacity = Math.max(16, size + pending.size());
+        long[] msbs = new long[capacity];
+        long[] lsbs = new long[capacity];
+        int[] merged = {0};
+        forEachAfter(null, id -> {
+            if (keep.test(id)) {
+                msbs[merged[0]] = id.getMostSignificantBits();
+                lsbs[merged[0]++] = id.getLeastSignificantBits();
+            }
+            return true;
+        });
+        mostSignificantBits = msbs;
+        leastSignificantBits = lsbs;
+        size = merged[0];
+        pending = new TreeSet<>(ID_ORDER);
+    }
+
+    /**
+     * Позиция первого идентификатора массивов, большего заданного.
+     */
+    private int firstGreater(long msb, long lsb) {
+        int low = 0;
+        int high = size;
+        while (low < high) {
+            int middle = (low + high) >>> 1;
+            if (compare(mostSignificantBits[middle], leastSignificantBits[middle], msb, lsb) <= 0) {
+                low = middle + 1;
+            } else {
+                high = middle;
+            }
+        }
+        return low;
+    }
+
+    private static int compare(long msb1, long lsb1, long msb2, long lsb2) {
+        int result = Long.compareUnsigned(msb1, msb2);
+        return result != 0 ? result : Long.compareUnsigned(lsb1, lsb2);
+    }
+}
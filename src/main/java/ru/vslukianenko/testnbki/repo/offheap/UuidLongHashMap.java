@@ -0,0 +1,184 @@
+package ru.vslukianenko.testnbki.repo.offheap;
+
+import java.util.Arrays;
+import java.util.UUID;
+
+/**
+ * Хеш-таблица с ключами UUID и значениями {@code long} на примитивных массивах.
+ *
+ * <p>Ключ хранится двумя {@code long}, поэтому запись таблицы не создает объектов в куче, в отличие от
+ * {@code HashMap<UUID, Long>}. Открытая адресация с линейным пробированием; удаление сдвигает следующие
+ * записи цепочки назад, поэтому "надгробия" не нужны. Значения должны быть неотрицательными:
+ * {@code -1} означает отсутствие ключа.</p>
+ *
+ * <p>Класс не потокобезопасен; синхронизацию обеспечивает вызывающий код.</p>
+ */
+final class UuidLongHashMap {
+
+    static final long NO_VALUE = -1;
+
+    private static final double LOAD_FACTOR = 0.6;
+
+    private long[] mostSignificantBits;
+
+    private long[] leastSignificantBits;
+
+    private long[] values;
+
+    private int mask;
+
+    private int size;
+
+    private int resizeThreshold;
+
+    UuidLongHashMap(int expectedSize) {
+        allocate(tableSize(expectedSize));
+    }
+
+    /**
+     * Действие над парой ключ-значение; ключ передается половинами UUID, чтобы не создавать объект.
+     */
+    interface EntryConsumer {
+        void accept(long mostSignificantBits, long leastSignificantBits, long value);
+    }
+
+    int size() {
+        return size;
+    }
+
+    long get(UUID key) {
+        long msb = key.getMostSignificantBits();
+        long lsb = key.getLeastSignificantBits();
+        for (int slot = slot(msb, lsb); values[slot] != NO_VALUE; slot = (slot + 1) & mask) {
+            if (mostSignificantBits[slot] == msb && leastSignificantBits[slot] == lsb) {
+                return values[slot];
+            }
+        }
+        return NO_VALUE;
+    }
+
+    /**
+     * Добавляет или заменяет значение ключа.
+     *
+     * @return предыдущее значение или {@link #NO_VALUE}
+     */
+    long put(UUID key, long value) {
+        return put(key.getMostSignificantBits(), key.getLeastSignificantBits(), value);
+    }
+
+    long put(long msb, long lsb, long value) {
+        if (value < 0) {
+            throw new IllegalArgumentException("Value must not be negative: " + value);
+        }
+        int slot = slot(msb, lsb);
+        for (; values[slot] != NO_VALUE; slot = (slot + 1) & mask) {
+            if (mostSignificantBits[slot] == msb && leastSignificantBits[slot] == lsb) {
+                long previous = values[slot];
+                values[slot] = value;
+                return previous;
+            }
+        }
+        mostSignificantBits[slot] = msb;
+        leastSignificantBits[slot] = lsb;
+        values[slot] = value;
+        if (++size > resizeThreshold) {
+            resize();
+        }
+        return NO_VALUE;
+    }
+
+    /**
+     * Удаляет ключ.
+     *
+     * @return удаленное значение или {@link #NO_VALUE}, если ключа не было
+     */
+    long remove(UUID key) {
+        long msb = key.getMostSignificantBits();
+        long lsb = key.getLeastSignificantBits();
+        int slot = slot(msb, lsb);
+        for (; values[slot] != NO_VALUE; slot = (slot + 1) & mask) {
+            if (mostSignificantBits[slot] == msb && leastSignificantBits[slot] == lsb) {
+                long previous = values[slot];
+                shiftBack(slot);
+                size--;
+                return previous;
+            }
+        }
+        return NO_VALUE;
+    }
+
+    void forEach(EntryConsumer consumer) {
+        for (int slot = 0; slot < values.length; slot++) {
+            if (values[slot] != NO_VALUE) {
+                consumer.accept(mostSignificantBits[slot], leastSignificantBits[slot], values[slot]);
+            }
+        }
+    }
+
+    /**
+     * Освобождает место удаленной записи: записи той же цепочки, которые стоят дальше своего исходного
+     * слота, переносятся на освободившееся место.
+     */
+    private void shiftBack(int free) {
+        int slot = free;
+        while (true) {
+            slot = (slot + 1) & mask;
+            if (values[slot] == NO_VALUE) {
+                break;
+            }
+            int home = slot(mostSignificantBits[slot], leastSignificantBits[slot]);
+            boolean movable = free <= slot ? home <= free || home > slot : home <= free && home > slot;
+            if (movable) {
+                mostSignificantBits[free] = mostSignificantBits[slot];
+                leastSignificantBits[free] = leastSignificantBits[slot];
+                values[free] = values[slot];
+                free = slot;
+            }
+        }
+        values[free] = NO_VALUE;
+    }
+
+    private void resize() {
+        long[] oldMsb = mostSignificantBits;
+        long[] oldLsb = leastSignificantBits;
+        long[] oldValues = values;
+        allocate(values.length * 2);
+        size = 0;
+        for (int slot = 0; slot < oldValues.length; slot++) {
+            if (oldValues[slot] != NO_VALUE) {
+                put(oldMsb[slot], oldLsb[slot], oldValues[slot]);
+            }
+        }
+    }
+
+    private void allocate(int capacity) {
+        mostSignificantBits = new long[capacity];
+        leastSignificantBits = new long[capacity];
+        values = new long[capacity];
+        Arrays.fill(values, NO_VALUE);
+        mask = capacity - 1;
+        resizeThreshold = (int) (capacity * LOAD_FACTOR);
+    }
+
+    /**
+     * Слот ключа: половины UUID перемешиваются финализатором MurmurHash3, чтобы и последовательные ключи
+     * распределялись по таблице равномерно.
+     */
+    private int slot(long msb, long lsb) {
+        long hash = msb * 31 + lsb;
+        hash ^= hash >>> 33;
+        hash *= 0xff51afd7ed558ccdL;
+        hash ^= hash >>> 33;
+        hash *= 0xc4ceb9fe1a85ec53L;
+        hash ^= hash >>> 33;
+        return (int) hash & mask;
+    }
+
+    private static int tableSize(int expectedSize) {
+        int capacity = 16;
+        while (capacity * LOAD_FACTOR < expectedSize) {
+            capacity <<= 1;
+        }
+        return capacity;
+    }
+}
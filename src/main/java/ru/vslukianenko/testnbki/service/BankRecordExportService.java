@@ -0,0 +1,72 @@
+package ru.vslukianenko.testnbki.service;
+
+import com.fasterxml.jackson.core.JsonGenerator;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.ObjectWriter;
+import com.fasterxml.jackson.databind.SequenceWriter;
+import org.springframework.stereotype.Service;
+import ru.vslukianenko.testnbki.config.BankRecordExportProperties;
+import ru.vslukianenko.testnbki.model.BankRecord;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.util.List;
+import java.util.UUID;
+
+/**
+ * Сервис потоковой выгрузки всех записей банка в формате NDJSON (одна JSON-запись на строку).
+ *
+ * <p>Записи читаются страницами по {@link BankRecordExportProperties#getPageSize()} с keyset-пагинацией
+ * по идентификатору, поэтому в памяти одновременно находится только одна страница. Каждая страница
+ * читается отдельным коротким запросом, и соединение с базой данных не удерживается, пока клиент
+ * принимает данные. Следующая страница читается только после записи предыдущей в выходной поток,
+ * поэтому медленный клиент замедляет выгрузку, а не увеличивает расход памяти.</p>
+ */
+@Service
+public class BankRecordExportService {
+
+    private final BankRecordService bankRecordService;
+
+    private final ObjectWriter bankRecordWriter;
+
+    private final int pageSize;
+
+    public BankRecordExportService(BankRecordService bankRecordService,
+                                   ObjectMapper objectMapper,
+                                   BankRecordExportProperties properties) {
+        this.bankRecordService = bankRecordService;
+        this.bankRecordWriter = objectMapper.writerFor(BankRecord.class)
+                .without(JsonGenerator.Feature.AUTO_CLOSE_TARGET)
+                .withRootValueSeparator("\n");
+        this.pageSize = properties.getPageSize();
+    }
+
+    /**
+     * Записывает все записи банка в поток в формате NDJSON.
+     *
+     * @param outputStream поток, в который выполняется выгрузка
+     * @return количество выгруженных записей
+     * @throws IOException если не удалось записать в поток
+     */
+    public long export(OutputStream outputStream) throws IOException {
+        long exported = 0;
+        UUID after = null;
+        List<BankRecord> page;
+        try (SequenceWriter sequenceWriter = bankRecordWriter.writeValues(outputStream)) {
+            do {
+                page = bankRecordService.getBankRecordsPage(after, pageSize);
+                sequenceWriter.writeAll(page);
+                sequenceWriter.flush();
+                exported += page.size();
+                if (!page.isEmpty()) {
+                    after = page.get(page.size() - 1).getId();
+                }
+            } while (page.size() == pageSize);
+        }
+        if (exported > 0) {
+            outputStream.write('\n');
+        }
+        outputStream.flush();
+        return exported;
+    }
+}
@@ -0,0 +1,22 @@
+package ru.vslukianenko.testnbki.service;
+
+import lombok.Getter;
+import ru.vslukianenko.testnbki.dto.IngestResult;
+
+/**
+ * Потоковая загрузка прервана: очередной пакет записей не удалось сохранить в базу данных.
+ * Пакеты, сохраненные до него, остаются в базе данных; их количество содержится в {@link #getResult()}.
+ */
+@Getter
+public class BankRecordIngestException extends RuntimeException {
+
+    /**
+     * Результат загрузки до сбоя: сохраненные записи и строки, отклоненные до сбоя.
+     */
+    private final IngestResult result;
+
+    public BankRecordIngestException(IngestResult result, Throwable cause) {
+        super("Failed to save ingested records after " + result.accepted() + " records", cause);
+        this.result = result;
+    }
+}
@@ -0,0 +1,199 @@
+package ru.vslukianenko.testnbki.service;
+
+import com.fasterxml.jackson.core.JsonParser;
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.core.JsonToken;
+import com.fasterxml.jackson.databind.DeserializationFeature;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.ObjectReader;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.stereotype.Service;
+import ru.vslukianenko.testnbki.config.BankRecordIngestProperties;
+import ru.vslukianenko.testnbki.dto.IngestResult;
+import ru.vslukianenko.testnbki.model.BankRecord;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.io.Reader;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Сервис потоковой загрузки записей банка в формате NDJSON (одна JSON-запись на строку).
+ *
+ * <p>Входной поток читается построчно, записи накапливаются в пакеты фиксированного размера
+ * (см. {@link BankRecordIngestProperties}) и сохраняются JDBC-пакетами по мере поступления. Поэтому объем
+ * используемой памяти не зависит от размера загрузки.</p>
+ *
+ * <p>Строки, которые не удалось разобрать (в том числе строки с несколькими JSON-значениями), и строки
+ * длиннее {@code max-line-length} символов отклоняются и не прерывают загрузку; слишком длинная строка
+ * дочитывается без сохранения в памяти. Строка со значением, которое не является JSON-объектом
+ * ({@code null}, массив, число, строка), прерывает загрузку с {@link InvalidIngestLineException}. Если пакет
+ * не удалось сохранить, загрузка прекращается с {@link BankRecordIngestException}: пакеты, сохраненные
+ * до него, остаются в базе данных, остаток потока не читается. Идентификаторы записей
+ * всегда генерируются при сохранении, переданные клиентом значения игнорируются.</p>
+ */
+@Slf4j
+@Service
+public class BankRecordIngestService {
+
+    private final BankRecordService bankRecordService;
+
+    private final ObjectReader bankRecordReader;
+
+    private final int chunkSize;
+
+    private final int maxLineLength;
+
+    public BankRecordIngestService(BankRecordService bankRecordService,
+                                   ObjectMapper objectMapper,
+                                   BankRecordIngestProperties properties) {
+        this.bankRecordService = bankRecordService;
+        this.bankRecordReader = objectMapper.readerFor(BankRecord.class)
+                .with(DeserializationFeature.FAIL_ON_TRAILING_TOKENS);
+        this.chunkSize = properties.getChunkSize();
+        this.maxLineLength = properties.getMaxLineLength();
+    }
+
+    /**
+     * Загружает записи банка из потока NDJSON.
+     *
+     * @param inputStream поток с записями, по одной JSON-записи на строку; пустые строки пропускаются
+     * @return количество принятых и отклоненных записей
+     * @throws IOException                 если не удалось прочитать входной поток
+     * @throws InvalidIngestLineException если строка содержит не JSON-объект
+     * @throws BankRecordIngestException  если пакет записей не удалось сохранить
+     */
+    public IngestResult ingest(InputStream inputStream) throws IOException {
+        LineReader reader = new LineReader(new InputStreamReader(inputStream, StandardCharsets.UTF_8), maxLineLength);
+        List<BankRecord> chunk = new ArrayList<>(chunkSize);
+        long accepted = 0;
+        long rejected = 0;
+        long lineNumber = 0;
+        String line;
+        while ((line = reader.readLine()) != null) {
+            lineNumber++;
+            if (line == LineReader.TOO_LONG) {
+                rejected++;
+                continue;
+            }
+            if (line.isBlank()) {
+                continue;
+            }
+            try {
+                if (firstToken(line) != JsonToken.START_OBJECT) {
+                    throw new InvalidIngestLineException(lineNumber, new IngestResult(accepted, rejected));
+                }
+                BankRecord bankRecord = bankRecordReader.readValue(line);
+                bankRecord.setId(null);
+                chunk.add(bankRecord);
+            } catch (JsonProcessingException e) {
+                rejected++;
+                continue;
+            }
+            if (chunk.size() == chunkSize) {
+                accepted += saveChunk(chunk, accepted, rejected);
+                chunk = new ArrayList<>(chunkSize);
+            }
+        }
+        if (!chunk.isEmpty()) {
+            accepted += saveChunk(chunk, accepted, rejected);
+        }
+        return new IngestResult(accepted, rejected);
+    }
+
+    private JsonToken firstToken(String line) throws IOException {
+        try (JsonParser parser = bankRecordReader.createParser(line)) {
+            return parser.nextToken();
+        }
+    }
+
+    private int saveChunk(List<BankRecord> chunk, long accepted, long rejected) {
+        try {
+            bankRecordService.bulkInsertBankRecords(chunk);
+            return chunk.size();
+        } catch (RuntimeException e) {
+            log.warn("Failed to save chunk of {} records during ingest, {} records saved before it",
+                    chunk.size(), accepted, e);
+            throw new BankRecordIngestException(new IngestResult(accepted, rejected), e);
+        }
+    }
+
+    /**
+     * Построчное чтение с ограничением длины строки. В отличие от {@link java.io.BufferedReader#readLine()},
+     * не накапливает в памяти строки длиннее {@code maxLineLength} символов.
+     */
+    private static final class LineReader {
+
+        /**
+         * Признак строки длиннее допустимой; сравнивается по ссылке.
+         */
+        static final String TOO_LONG = new String("");
+
+        private final Reader reader;
+
+        private final int maxLineLength;
+
+        private final char[] buffer = new char[8192];
+
+        private final StringBuilder line = new StringBuilder();
+
+        private int position;
+
+        private int limit;
+
+        LineReader(Reader reader, int maxLineLength) {
+            this.reader = reader;
+            this.maxLineLength = maxLineLength;
+        }
+
+        /**
+         * Читает следующую строку без завершающих {@code \n} и {@code \r}.
+         *
+         * @return строка, {@link #TOO_LONG} для слишком длинной строки или {@code null} в конце потока
+         */
+        String readLine() throws IOException {
+            line.setLength(0);
+            boolean tooLong = false;
+            while (true) {
+                if (position == limit) {
+                    limit = reader.read(buffer);
+                    position = 0;
+                    if (limit <= 0) {
+                        limit = 0;
+                        if (tooLong || line.length() > maxLineLength) {
+                            return TOO_LONG;
+                        }
+                        return line.isEmpty() ? null : line.toString();
+                    }
+                }
+                int start = position;
+                while (position < limit && buffer[position] != '\n') {
+                    position++;
+                }
+                if (!tooLong) {
+                    line.append(buffer, start, position - start);
+                    if (line.length() > maxLineLength + 1) {
+                        tooLong = true;
+                        line.setLength(0);
+                    }
+                }
+                if (position < limit) {
+                    position++;
+                    if (tooLong) {
+                        return TOO_LONG;
+                    }
+                    if (!line.isEmpty() && line.charAt(line.length() - 1) == '\r') {
+                        line.setLength(line.length() - 1);
+                    }
+                    if (line.length() > maxLineLength) {
+                        return TOO_LONG;
+                    }
+                    return line.toString();
+                }
+            }
+        }
+    }
+}
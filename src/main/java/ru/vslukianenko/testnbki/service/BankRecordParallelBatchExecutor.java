@@ -0,0 +1,243 @@
+package ru.vslukianenko.testnbki.service;
+
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.DisposableBean;
+import org.springframework.boot.autoconfigure.thread.Threading;
+import org.springframework.core.env.Environment;
+import org.springframework.core.task.AsyncTaskExecutor;
+import org.springframework.core.task.SimpleAsyncTaskExecutor;
+import org.springframework.scheduling.concurrent.ThreadPoolTaskExecutor;
+import org.springframework.stereotype.Service;
+import ru.vslukianenko.testnbki.config.BankRecordParallelBatchProperties;
+import ru.vslukianenko.testnbki.dto.BatchReport;
+import ru.vslukianenko.testnbki.dto.UpsertResult;
+import ru.vslukianenko.testnbki.model.BankRecord;
+
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Queue;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Future;
+import java.util.function.Function;
+
+/**
+ * Параллельное выполнение массовых операций с записями банка.
+ *
+ * <p>Список записей делится на части, каждая часть выполняется в отдельной транзакции одним из
+ * {@code bank-records.parallel-batch.workers} потоков собственного пула.
+ * Так операция использует несколько ядер и соединений и не держит одну большую транзакцию.
+ * Ошибка в одной части не откатывает остальные; результат по каждой части возвращается в {@link BatchReport}.</p>
+ *
+ * <p>Если включены виртуальные потоки ({@code spring.threads.virtual.enabled}, только на Java 21+,
+ * см. {@link ru.vslukianenko.testnbki.config.VirtualThreadsConfiguration}), части
+ * выполняются в виртуальных потоках, не более {@code workers} одновременно; иначе используется пул
+ * платформенных потоков. Количество одновременных соединений в обоих случаях дополнительно
+ * ограничено {@code bank-records.db-concurrency}.</p>
+ *
+ * <p>При включенном {@code adaptive} размер следующей части подстраивается под
+ * {@code target-chunk-duration}: удваивается, если часть выполнилась вдвое быстрее целевого времени,
+ * и уменьшается вдвое, если вдвое медленнее, в пределах {@code min-chunk-size} и {@code max-chunk-size}.</p>
+ */
+@Slf4j
+@Service
+public class BankRecordParallelBatchExecutor implements DisposableBean {
+
+    private final BankRecordService bankRecordService;
+
+    private static final String THREAD_NAME_PREFIX = "bank-record-batch-";
+
+    private final AsyncTaskExecutor executor;
+
+    private final BankRecordParallelBatchProperties properties;
+
+    public BankRecordParallelBatchExecutor(BankRecordService bankRecordService,
+                                           BankRecordParallelBatchProperties properties,
+                                           Environment environment) {
+        this.bankRecordService = bankRecordService;
+        this.properties = properties;
+        this.executor = Threading.VIRTUAL.isActive(environment)
+                ? virtualThreadExecutor(properties.getWorkers())
+                : platformThreadExecutor(properties.getWorkers());
+    }
+
+    /**
+     * Параллельно вставляет записи банка JDBC-пакетами, по транзакции на часть.
+     *
+     * @param bankRecords новые записи банка
+     * @return отчет о выполнении по частям
+     */
+    public BatchReport createAll(List<BankRecord> bankRecords) {
+        return execute(bankRecords, chunk -> {
+            bankRecordService.bulkInsertBankRecords(chunk);
+            return new Counts(chunk.size(), 0);
+        });
+    }
+
+    /**
+     * Параллельно вставляет или обновляет записи банка операторами MERGE, по транзакции на часть.
+     *
+     * @param bankRecords записи банка для вставки или обновления
+     * @return отчет о выполнении по частям с количеством вставленных и обновленных записей
+     */
+    public BatchReport upsertAll(List<BankRecord> bankRecords) {
+        return execute(bankRecords, chunk -> {
+            UpsertResult result = bankRecordService.batchUpsertBankRecords(chunk);
+            return new Counts(result.inserted(), result.updated());
+        });
+    }
+
+    /**
+     * Параллельно удаляет записи банка, по транзакции на часть.
+     *
+     * @param ids идентификаторы удаляемых записей
+     * @return отчет о выполнении по частям
+     */
+    public BatchReport deleteAll(List<UUID> ids) {
+        return execute(ids, chunk -> {
+            bankRecordService.batchDeleteBankRecords(chunk);
+            return new Counts(0, 0);
+        });
+    }
+
+    @Override
+    public void destroy() {
+        if (executor instanceof ThreadPoolTaskExecutor threadPool) {
+            threadPool.shutdown();
+        } else if (executor instanceof SimpleAsyncTaskExecutor simple) {
+            simple.close();
+        }
+    }
+
+    private static AsyncTaskExecutor virtualThreadExecutor(int workers) {
+        SimpleAsyncTaskExecutor executor = new SimpleAsyncTaskExecutor(THREAD_NAME_PREFIX);
+        executor.setVirtualThreads(true);
+        executor.setConcurrencyLimit(workers);
+        return executor;
+    }
+
+    private static AsyncTaskExecutor platformThreadExecutor(int workers) {
+        ThreadPoolTaskExecutor executor = new ThreadPoolTaskExecutor();
+        executor.setCorePoolSize(workers);
+        executor.setMaxPoolSize(workers);
+        executor.setThreadNamePrefix(THREAD_NAME_PREFIX);
+        executor.setWaitForTasksToCompleteOnShutdown(true);
+        executor.initialize();
+        return executor;
+    }
+
+    private <T> BatchReport execute(List<T> items, Function<List<T>, Counts> chunkOperation) {
+        Run<T> run = new Run<>(items, chunkOperation);
+        int workers = Math.max(1, Math.min(properties.getWorkers(),
+                (items.size() + properties.getChunkSize() - 1) / properties.getChunkSize()));
+        List<Future<?>> futures = new ArrayList<>(workers);
+        for (int i = 0; i < workers; i++) {
+            futures.add(executor.submit(run::work));
+        }
+        for (Future<?> future : futures) {
+            try {
+                future.get();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                throw new IllegalStateException("Interrupted while waiting for batch chunks", e);
+            } catch (ExecutionException e) {
+                throw new IllegalStateException("Batch worker failed", e.getCause());
+            }
+        }
+        return run.report();
+    }
+
+    /**
+     * Количество вставленных и обновленных записей одной части.
+     */
+    private record Counts(long inserted, long updated) {
+    }
+
+    /**
+     * Состояние одного выполнения: позиция следующей части, текущий размер части и результаты.
+     */
+    private class Run<T> {
+
+        private final List<T> items;
+
+        private final Function<List<T>, Counts> chunkOperation;
+
+        private final Queue<BatchReport.Chunk> results = new ConcurrentLinkedQueue<>();
+
+        private final long targetNanos = properties.getTargetChunkDuration().toNanos();
+
+        private int nextOffset;
+
+        private int chunkSize = properties.getChunkSize();
+
+        Run(List<T> items, Function<List<T>, Counts> chunkOperation) {
+            this.items = items;
+            this.chunkOperation = chunkOperation;
+        }
+
+        void work() {
+            int[] range;
+            while ((range = nextRange()) != null) {
+                List<T> chunk = items.subList(range[0], range[1]);
+                long start = System.nanoTime();
+                String error = null;
+                Counts counts = new Counts(0, 0);
+                try {
+                    counts = chunkOperation.apply(chunk);
+                } catch (RuntimeException e) {
+                    log.warn("Batch chunk [{}, {}) failed", range[0], range[1], e);
+                    error = e.getMessage() != null ? e.getMessage() : e.getClass().getName();
+                }
+                long elapsed = System.nanoTime() - start;
+                adapt(elapsed);
+                results.add(new BatchReport.Chunk(-1, range[0], chunk.size(), error == null,
+                        counts.inserted(), counts.updated(), elapsed / 1_000_000, error));
+            }
+        }
+
+        synchronized int[] nextRange() {
+            if (nextOffset >= items.size()) {
+                return null;
+            }
+            int from = nextOffset;
+            nextOffset = Math.min(items.size(), from + chunkSize);
+            return new int[]{from, nextOffset};
+        }
+
+        synchronized void adapt(long elapsedNanos) {
+            if (!properties.isAdaptive()) {
+                return;
+            }
+            if (elapsedNanos * 2 < targetNanos) {
+                chunkSize = Math.min(properties.getMaxChunkSize(), chunkSize * 2);
+            } else if (elapsedNanos > targetNanos * 2) {
+                chunkSize = Math.max(properties.getMinChunkSize(), chunkSize / 2);
+            }
+        }
+
+        BatchReport report() {
+            List<BatchReport.Chunk> sorted = results.stream()
+                    .sorted(Comparator.comparingInt(BatchReport.Chunk::offset))
+                    .toList();
+            List<BatchReport.Chunk> chunks = new ArrayList<>(sorted.size());
+            long processed = 0;
+            long failed = 0;
+            long inserted = 0;
+            long updated = 0;
+            for (BatchReport.Chunk chunk : sorted) {
+                chunks.add(new BatchReport.Chunk(chunks.size(), chunk.offset(), chunk.size(), chunk.success(),
+                        chunk.inserted(), chunk.updated(), chunk.durationMillis(), chunk.error()));
+                inserted += chunk.inserted();
+                updated += chunk.updated();
+                if (chunk.success()) {
+                    processed += chunk.size();
+                } else {
+                    failed += chunk.size();
+                }
+            }
+            return new BatchReport(processed, failed, inserted, updated, chunks);
+        }
+    }
+}
@@ -0,0 +1,202 @@
+package ru.vslukianenko.testnbki.service;
+
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.SmartInitializingSingleton;
+import org.springframework.stereotype.Service;
+import ru.vslukianenko.testnbki.config.BankRecordCompressionProperties;
+import ru.vslukianenko.testnbki.config.BankRecordSearchProperties;
+import ru.vslukianenko.testnbki.dto.SearchPage;
+import ru.vslukianenko.testnbki.model.BankRecord;
+import ru.vslukianenko.testnbki.repo.BankRecordStore;
+
+import java.nio.charset.StandardCharsets;
+import java.util.Base64;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.UUID;
+import java.util.function.Function;
+import java.util.stream.Collectors;
+
+/**
+ * Сервис поиска записей банка по данным.
+ *
+ * <p>Поддерживаются три вида поиска:</p>
+ * <ul>
+ *   <li>точное совпадение и поиск по префиксу - по индексу {@code (data, id)} с keyset-пагинацией,
+ *   поэтому время запроса страницы не зависит от размера таблицы и номера страницы;</li>
+ *   <li>полнотекстовый поиск по словам - по полнотекстовому индексу H2, который поддерживается триггерами
+ *   таблицы при любых изменениях записей (см. {@link BankRecordSearchProperties#isFullTextEnabled()}).</li>
+ * </ul>
+ *
+ * <p>Поиск выполняется по столбцу {@code data}, а сжатые записи хранят данные в столбце
+ * {@code data_compressed}, поэтому поиск и сжатие данных ({@link BankRecordCompressionProperties}) не работают
+ * вместе: если {@code bank-records.search.enabled} не задано, включенное сжатие выключает поиск, а явно
+ * включенный поиск вместе со сжатием отклоняется при запуске.</p>
+ *
+ * <p>Каждая страница содержит курсор следующей страницы. Курсор непрозрачен для клиента и содержит только
+ * идентификатор последней записи страницы, поэтому его размер не зависит от размера данных. Для поиска
+ * по префиксу данные этой записи читаются по идентификатору при запросе следующей страницы; если запись
+ * за это время удалена, курсор отклоняется, а если изменена - обход продолжается от её новых данных.
+ * Полнотекстовый поиск упорядочивает результаты по идентификатору и тоже пагинируется по нему.</p>
+ */
+@Slf4j
+@Service
+public class BankRecordSearchService implements SmartInitializingSingleton {
+
+    private final BankRecordStore bankRecordStore;
+
+    private final BankRecordSearchProperties properties;
+
+    private final boolean enabled;
+
+    public BankRecordSearchService(BankRecordStore bankRecordStore, BankRecordSearchProperties properties,
+                                   BankRecordCompressionProperties compressionProperties) {
+        if (Boolean.TRUE.equals(properties.getEnabled()) && compressionProperties.isEnabled()) {
+            throw new IllegalStateException("Search does not find compressed records: unset "
+                    + "bank-records.search.enabled to use bank-records.compression.enabled=true");
+        }
+        if (properties.getEnabled() == null && compressionProperties.isEnabled()) {
+            log.warn("Search is disabled because bank-records.compression.enabled=true stores data "
+                    + "where search does not look");
+        }
+        this.bankRecordStore = bankRecordStore;
+        this.properties = properties;
+        this.enabled = properties.getEnabled() == null ? !compressionProperties.isEnabled() : properties.getEnabled();
+    }
+
+    /**
+     * Создает полнотекстовый индекс после создания всех бинов, в том числе схемы базы данных Hibernate.
+     */
+    @Override
+    public void afterSingletonsInstantiated() {
+        if (isFullTextEnabled()) {
+            bankRecordStore.createFullTextIndex();
+        }
+    }
+
+    /**
+     * Проверяет, доступен ли поиск по данным.
+     *
+     * @return true, если поиск включен явно или не выключен сжатием данных
+     */
+    public boolean isEnabled() {
+        return enabled;
+    }
+
+    /**
+     * Проверяет, доступен ли полнотекстовый поиск.
+     *
+     * @return true, если поиск и полнотекстовый индекс включены
+     */
+    public boolean isFullTextEnabled() {
+        return enabled && properties.isFullTextEnabled();
+    }
+
+    /**
+     * Ищет записи, данные которых равны {@code data}.
+     *
+     * @param data   искомые данные
+     * @param cursor курсор из предыдущей страницы или {@code null} для первой страницы
+     * @param limit  размер страницы или {@code null} для размера по умолчанию
+     * @return страница записей в порядке возрастания идентификатора
+     * @throws InvalidSearchRequestException если курсор некорректен
+     */
+    public SearchPage findByData(String data, String cursor, Integer limit) {
+        int pageSize = pageSize(limit);
+        UUID afterId = cursor == null ? null : decodeId(cursor);
+        List<BankRecord> records = bankRecordStore.findByData(data, afterId, pageSize + 1);
+        return keysetPage(records, pageSize);
+    }
+
+    /**
+     * Ищет записи, данные которых начинаются с {@code prefix}.
+     *
+     * @param prefix префикс данных
+     * @param cursor курсор из предыдущей страницы или {@code null} для первой страницы
+     * @param limit  размер страницы или {@code null} для размера по умолчанию
+     * @return страница записей в порядке возрастания данных и идентификатора
+     * @throws InvalidSearchRequestException если курсор некорректен или запись курсора удалена
+     */
+    public SearchPage findByDataPrefix(String prefix, String cursor, Integer limit) {
+        int pageSize = pageSize(limit);
+        BankRecord after = cursor == null ? null : boundary(decodeId(cursor));
+        List<BankRecord> records = bankRecordStore.findByDataPrefix(prefix,
+                after == null ? null : after.getData(), after == null ? null : after.getId(), pageSize + 1);
+        return keysetPage(records, pageSize);
+    }
+
+    /**
+     * Ищет записи, данные которых содержат все слова запроса.
+     *
+     * @param query  слова для поиска
+     * @param cursor курсор из предыдущей страницы или {@code null} для первой страницы
+     * @param limit  размер страницы или {@code null} для размера по умолчанию
+     * @return страница записей в порядке возрастания идентификатора
+     * @throws InvalidSearchRequestException если запрос пуст или курсор некорректен
+     * @throws IllegalStateException    если полнотекстовый индекс выключен
+     */
+    public SearchPage searchFullText(String query, String cursor, Integer limit) {
+        if (!isFullTextEnabled()) {
+            throw new IllegalStateException("Full-text search is disabled");
+        }
+        if (query.isBlank()) {
+            throw new InvalidSearchRequestException("Full-text query must not be blank");
+        }
+        int pageSize = pageSize(limit);
+        UUID afterId = cursor == null ? null : decodeId(cursor);
+        List<UUID> ids = bankRecordStore.searchFullText(query, afterId, pageSize + 1);
+        List<UUID> pageIds = ids.subList(0, Math.min(pageSize, ids.size()));
+        Map<UUID, BankRecord> found = bankRecordStore.findAllByIds(pageIds).stream()
+                .collect(Collectors.toMap(BankRecord::getId, Function.identity()));
+        List<BankRecord> records = pageIds.stream().map(found::get).filter(Objects::nonNull).toList();
+        String next = ids.size() > pageSize ? encode(pageIds.get(pageSize - 1).toString()) : null;
+        return new SearchPage(records, next);
+    }
+
+    private int pageSize(Integer limit) {
+        if (limit == null) {
+            return properties.getDefaultPageSize();
+        }
+        return Math.max(1, Math.min(limit, properties.getMaxPageSize()));
+    }
+
+    private static SearchPage keysetPage(List<BankRecord> records, int pageSize) {
+        if (records.size() <= pageSize) {
+            return new SearchPage(records, null);
+        }
+        List<BankRecord> page = records.subList(0, pageSize);
+        return new SearchPage(page, encode(page.get(pageSize - 1).getId().toString()));
+    }
+
+    /**
+     * Читает последнюю запись предыдущей страницы: её данные - граница следующей страницы поиска по префиксу.
+     */
+    private BankRecord boundary(UUID id) {
+        List<BankRecord> found = bankRecordStore.findAllByIds(List.of(id));
+        if (found.isEmpty()) {
+            throw new InvalidSearchRequestException("Search cursor record no longer exists, restart the search");
+        }
+        return found.get(0);
+    }
+
+    private static UUID decodeId(String cursor) {
+        try {
+            return UUID.fromString(decode(cursor));
+        } catch (IllegalArgumentException e) {
+            throw new InvalidSearchRequestException("Invalid search cursor", e);
+        }
+    }
+
+    private static String encode(String value) {
+        return Base64.getUrlEncoder().withoutPadding().encodeToString(value.getBytes(StandardCharsets.UTF_8));
+    }
+
+    private static String decode(String cursor) {
+        try {
+            return new String(Base64.getUrlDecoder().decode(cursor), StandardCharsets.UTF_8);
+        } catch (IllegalArgumentException e) {
+            throw new InvalidSearchRequestException("Invalid search cursor", e);
+        }
+    }
+}
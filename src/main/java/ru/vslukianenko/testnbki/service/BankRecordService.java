@@ -1,35 +1,81 @@
 package ru.vslukianenko.testnbki.service;
 
+import io.micrometer.core.annotation.Timed;
 import jakarta.persistence.EntityManager;
 import jakarta.persistence.PersistenceContext;
 import lombok.RequiredArgsConstructor;
+import org.springframework.dao.OptimisticLockingFailureException;
 import org.springframework.stereotype.Service;
 import org.springframework.transaction.annotation.Transactional;
+import ru.vslukianenko.testnbki.cache.BankRecordCache;
+import ru.vslukianenko.testnbki.checkpoint.DirtyRecordTracker;
+import ru.vslukianenko.testnbki.config.BankRecordStorageProperties;
+import ru.vslukianenko.testnbki.config.BankRecordUpsertProperties;
+import ru.vslukianenko.testnbki.dto.LookupResult;
+import ru.vslukianenko.testnbki.dto.UpsertResult;
+import ru.vslukianenko.testnbki.id.UuidV7;
 import ru.vslukianenko.testnbki.model.BankRecord;
 import ru.vslukianenko.testnbki.repo.BankRecordRepository;
+import ru.vslukianenko.testnbki.repo.BankRecordStore;
 
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
 import java.util.List;
+import java.util.Map;
+import java.util.Objects;
 import java.util.Optional;
+import java.util.Set;
 import java.util.UUID;
+import java.util.function.Function;
+import java.util.stream.Collectors;
 /**
  * Сервис для управления записями банка.
  * Обеспечивает методы для создания, получения, обновления и удаления записей,
  * а также массовые операции с записями.
  *
+ * <p>Чтение по идентификатору выполняется через {@link BankRecordCache}; все операции записи
+ * инвалидируют затронутые записи в кэше и отмечают их в {@link DirtyRecordTracker} для следующей
+ * контрольной точки.</p>
+ *
  * <p>Аннотации:</p>
  * <ul>
  *   <li>{@link Service} - Указывает, что этот класс является сервисом Spring.</li>
  *   <li>{@link RequiredArgsConstructor} - Автоматически генерирует конструктор с обязательными аргументами (final поля).</li>
  *   <li>{@link Transactional} - Обеспечивает управление транзакциями для методов, выполняющих массовые операции.</li>
+ *   <li>{@link Timed} - Публикует время каждого метода в метрике {@code bank.records.service} с тегом {@code method}.</li>
  * </ul>
+ *
+ * <p>Операции JDBC выполняются через {@link BankRecordStore}. В режимах {@code partitioned} и {@code off-heap}
+ * ({@code bank-records.storage.mode}) через него выполняются и операции, которые иначе идут через JPA:
+ * создание, чтение и удаление одной записи, массовые создание и обновление. Их атомарность обеспечивает
+ * хранилище, а не транзакция JPA.</p>
+ *
+ * <p>Стадии массовых операций ({@code persist}, {@code flush}, {@code clear} и запросы JDBC)
+ * дополнительно измеряются через {@link PersistenceStageMetrics}.</p>
  */
 @Service
 @RequiredArgsConstructor
+@Timed(value = "bank.records.service", description = "BankRecordService method execution time",
+        percentiles = {0.5, 0.95, 0.99})
 public class BankRecordService {
 
 
     private final BankRecordRepository bankRecordRepository;
 
+    private final BankRecordStore bankRecordStore;
+
+    private final BankRecordCache bankRecordCache;
+
+    private final BankRecordUpsertProperties upsertProperties;
+
+    private final BankRecordStorageProperties storageProperties;
+
+    private final PersistenceStageMetrics stageMetrics;
+
+    private final DirtyRecordTracker dirtyRecordTracker;
+
     @PersistenceContext
     private EntityManager entityManager;
     /**
@@ -39,7 +85,11 @@ public class BankRecordService {
      * @return созданная запись банка
      */
     public BankRecord createBankRecord(BankRecord bankRecord) {
-        return bankRecordRepository.save(bankRecord);
+        BankRecord saved = storageProperties.isJpaStorage()
+                ? bankRecordRepository.save(bankRecord)
+                : insert(bankRecord);
+        invalidate(saved.getId());
+        return saved;
     }
     /**
      * Получает запись банка по её идентификатору.
@@ -48,34 +98,118 @@ public class BankRecordService {
      * @return {@link Optional} с найденной записью банка или пустой {@link Optional}, если запись не найдена
      */
     public Optional<BankRecord> getBankRecordById(UUID id) {
-        return bankRecordRepository.findById(id);
+        return bankRecordCache.get(id, this::findBankRecord);
+    }
+
+    private BankRecord insert(BankRecord bankRecord) {
+        bankRecordStore.insertAll(List.of(bankRecord));
+        return bankRecord;
+    }
+
+    private Optional<BankRecord> findBankRecord(UUID id) {
+        if (storageProperties.isJpaStorage()) {
+            return bankRecordRepository.findById(id);
+        }
+        return bankRecordStore.findAllByIds(List.of(id)).stream().findFirst();
+    }
+    /**
+     * Получает записи банка по списку идентификаторов.
+     *
+     * <p>Записи, отсутствующие в кэше (или все записи, если {@code useCache} равен false),
+     * загружаются запросами {@code SELECT ... WHERE id IN (...)} пакетами, а не отдельным
+     * запросом на каждый идентификатор. Повторяющиеся идентификаторы учитываются один раз.</p>
+     *
+     * @param ids      список уникальных идентификаторов записей банка
+     * @param useCache использовать ли кэш записей
+     * @return {@link LookupResult} с найденными записями и идентификаторами отсутствующих записей
+     */
+    public LookupResult getBankRecordsByIds(List<UUID> ids, boolean useCache) {
+        Set<UUID> uniqueIds = new LinkedHashSet<>(ids);
+        Map<UUID, BankRecord> found = useCache
+                ? bankRecordCache.getAll(uniqueIds, this::loadBankRecords)
+                : loadBankRecords(uniqueIds);
+        List<BankRecord> foundRecords = new ArrayList<>(found.size());
+        List<UUID> missing = new ArrayList<>();
+        for (UUID id : uniqueIds) {
+            BankRecord bankRecord = found.get(id);
+            if (bankRecord != null) {
+                foundRecords.add(bankRecord);
+            } else {
+                missing.add(id);
+            }
+        }
+        return new LookupResult(foundRecords, missing);
+    }
+
+    private Map<UUID, BankRecord> loadBankRecords(Set<UUID> ids) {
+        return bankRecordStore.findAllByIds(ids).stream()
+                .collect(Collectors.toMap(BankRecord::getId, Function.identity()));
+    }
+    /**
+     * Возвращает страницу записей банка, упорядоченных по идентификатору.
+     *
+     * @param after идентификатор последней записи предыдущей страницы или {@code null} для первой страницы
+     * @param limit максимальное количество записей на странице
+     * @return записи с идентификаторами больше {@code after} в порядке возрастания
+     */
+    public List<BankRecord> getBankRecordsPage(UUID after, int limit) {
+        return bankRecordStore.findPageAfter(after, limit);
+    }
+    /**
+     * Возвращает количество записей банка без загрузки строк.
+     *
+     * @return количество записей
+     */
+    public long countBankRecords() {
+        return bankRecordStore.count();
     }
     /**
-     * Обновляет существующую запись банка.
+     * Обновляет существующую запись банка независимо от её текущей версии.
      *
      * @param id уникальный идентификатор записи банка
      * @param bankRecordDetails объект {@link BankRecord}, содержащий обновленные данные
      * @return {@link Optional} с обновленной записью банка или пустой {@link Optional}, если запись не найдена
      */
     public Optional<BankRecord> updateBankRecord(UUID id, BankRecord bankRecordDetails) {
-        return bankRecordRepository.findById(id).map(bankRecord -> {
-            bankRecord.setData(bankRecordDetails.getData());
-            return bankRecordRepository.save(bankRecord);
-        });
+        return updateBankRecord(id, bankRecordDetails, null);
     }
     /**
-     * Удаляет запись банка по её идентификатору.
+     * Обновляет существующую запись банка, если её версия равна ожидаемой.
+     *
+     * <p>Обновление выполняется одним условным оператором {@code UPDATE ... WHERE id = ? AND version = ?}
+     * без предварительного чтения и блокировок. Только если ни одна строка не обновлена, отдельным запросом
+     * проверяется существование записи, чтобы отличить отсутствующую запись от конфликта версий.</p>
+     *
+     * @param id уникальный идентификатор записи банка
+     * @param bankRecordDetails объект {@link BankRecord}, содержащий обновленные данные
+     * @param expectedVersion ожидаемая текущая версия записи или {@code null}, чтобы не проверять версию
+     * @return {@link Optional} с обновленной записью банка или пустой {@link Optional}, если запись не найдена
+     * @throws OptimisticLockingFailureException если запись существует, но её версия отличается от ожидаемой
+     */
+    @Transactional
+    public Optional<BankRecord> updateBankRecord(UUID id, BankRecord bankRecordDetails, Long expectedVersion) {
+        Optional<BankRecord> updated = bankRecordStore.updateIfVersionMatches(
+                id, bankRecordDetails.getData(), expectedVersion);
+        invalidate(id);
+        if (updated.isEmpty() && expectedVersion != null && !bankRecordStore.findExistingIds(Set.of(id)).isEmpty()) {
+            throw new OptimisticLockingFailureException(
+                    "Bank record " + id + " does not have expected version " + expectedVersion);
+        }
+        return updated;
+    }
+    /**
+     * Удаляет запись банка по её идентификатору одним оператором DELETE.
      *
      * @param id уникальный идентификатор записи банка
      * @return true, если запись успешно удалена, иначе false
      */
+    @Transactional
     public boolean deleteBankRecord(UUID id) {
-        if (bankRecordRepository.existsById(id)) {
-            bankRecordRepository.deleteById(id);
-            return true;
-        } else {
-            return false;
-        }
+        boolean deleted = storageProperties.isJpaStorage()
+                ? bankRecordRepository.deleteRecordById(id) > 0
+                : !bankRecordStore.deleteAllByIds(List.of(id)).isEmpty();
+        invalidate(id);
+        return deleted;
     }
     /**
      * Массовое создание записей банка.
@@ -84,57 +218,146 @@ public class BankRecordService {
      */
     @Transactional
     public void batchCreateBankRecords(List<BankRecord> bankRecords) {
+        if (!storageProperties.isJpaStorage()) {
+            stageMetrics.record("batchCreateBankRecords", "store-insert",
+                    () -> bankRecordStore.insertAll(bankRecords));
+            invalidateAll(bankRecords.stream().map(BankRecord::getId).toList());
+            return;
+        }
         int batchSize = 1000;
+        PersistenceStageMetrics.Batch stages = stageMetrics.batch("batchCreateBankRecords", "persist");
         for (int i = 0; i < bankRecords.size(); i++) {
-            entityManager.persist(bankRecords.get(i));
+            BankRecord bankRecord = bankRecords.get(i);
+            stages.write(() -> entityManager.persist(bankRecord));
             if (i > 0 && i % batchSize == 0) {
-                entityManager.flush();
-                entityManager.clear();
+                stages.flushAndClear(entityManager);
             }
         }
-        entityManager.flush();
-        entityManager.clear();
+        stages.flushAndClear(entityManager);
+        invalidateAll(bankRecords.stream().map(BankRecord::getId).toList());
+    }
+
+    /**
+     * Массовая вставка записей банка JDBC-пакетами, минуя контекст персистентности JPA.
+     * Записям без идентификатора назначается упорядоченный по времени UUID версии 7.
+     *
+     * @param bankRecords список объектов {@link BankRecord}, представляющих данные новых записей
+     */
+    @Transactional
+    public void bulkInsertBankRecords(List<BankRecord> bankRecords) {
+        bankRecordStore.insertAll(bankRecords);
+        invalidateAll(bankRecords.stream().map(BankRecord::getId).toList());
     }
 
     /**
      * Массовое обновление записей банка.
      *
+     * <p>Запись с заданной версией обновляется через {@code merge} с проверкой версии: если версия в базе данных
+     * отличается, транзакция откатывается с {@link OptimisticLockingFailureException}. Запись без версии
+     * обновляется независимо от текущей версии; отсутствующие записи создаются.</p>
+     *
+     * <p>В режимах без JPA записи обновляются через {@link BankRecordStore#updateAll}; в секционированном
+     * хранилище при конфликте версий откатывается только транзакция секции, в которой он произошел.</p>
+     *
      * @param bankRecords список объектов {@link BankRecord}, представляющих обновленные данные записей
      */
     @Transactional
     public void batchUpdateBankRecords(List<BankRecord> bankRecords) {
+        if (!storageProperties.isJpaStorage()) {
+            try {
+                stageMetrics.record("batchUpdateBankRecords", "store-update",
+                        () -> bankRecordStore.updateAll(bankRecords));
+            } finally {
+                // Секции, обновленные до конфликта версий в другой секции, уже зафиксированы.
+                invalidateAll(bankRecords.stream().map(BankRecord::getId).filter(Objects::nonNull).toList());
+            }
+            return;
+        }
         int batchSize = 1000;
+        PersistenceStageMetrics.Batch stages = stageMetrics.batch("batchUpdateBankRecords", "merge");
         for (int i = 0; i < bankRecords.size(); i++) {
-            entityManager.merge(bankRecords.get(i));
+            BankRecord bankRecord = bankRecords.get(i);
+            stages.write(() -> mergeIgnoringMissingVersion(bankRecord));
             if (i > 0 && i % batchSize == 0) {
-                entityManager.flush();
-                entityManager.clear();
+                stages.flushAndClear(entityManager);
             }
         }
-        entityManager.flush();
-        entityManager.clear();
+        stages.flushAndClear(entityManager);
+        invalidateAll(bankRecords.stream().map(BankRecord::getId).toList());
     }
     /**
-     * Массовое удаление записей банка.
+     * Сохраняет запись через {@code merge}. Без версии {@code merge} считает запись новой, поэтому
+     * данные такой записи переносятся в загруженную сущность, версию которой увеличит Hibernate.
+     */
+    private void mergeIgnoringMissingVersion(BankRecord bankRecord) {
+        if (bankRecord.getVersion() != null || bankRecord.getId() == null) {
+            entityManager.merge(bankRecord);
+            return;
+        }
+        BankRecord managed = entityManager.find(BankRecord.class, bankRecord.getId());
+        if (managed == null) {
+            entityManager.persist(bankRecord);
+        } else {
+            managed.setData(bankRecord.getData());
+        }
+    }
+    /**
+     * Массовая вставка-или-обновление (upsert) записей банка.
      *
-     * @param ids список уникальных идентификаторов записей банка для удаления
+     * <p>Записи обрабатываются пакетами размера {@link BankRecordUpsertProperties#getChunkSize()}.
+     * Для каждого пакета выполняются операторы MERGE, которые сами возвращают количество вставленных строк,
+     * вместо пары SELECT и UPDATE/INSERT на каждую запись, как при {@code merge}.
+     * Записям без идентификатора назначается новый UUID версии 7. Если идентификатор повторяется
+     * внутри пакета, сохраняется последняя запись.</p>
+     *
+     * @param bankRecords список объектов {@link BankRecord} для вставки или обновления
+     * @return {@link UpsertResult} с количеством вставленных и обновленных записей по каждому пакету
      */
     @Transactional
-    public void batchDeleteBankRecords(List<UUID> ids) {
-        int batchSize = 1000;
-        for (int i = 0; i < ids.size(); i++) {
-            BankRecord bankRecord = entityManager.find(BankRecord.class, ids.get(i));
-            if (bankRecord != null) {
-                entityManager.remove(bankRecord);
-            }
-            if (i > 0 && i % batchSize == 0) {
-                entityManager.flush();
-                entityManager.clear();
+    public UpsertResult batchUpsertBankRecords(List<BankRecord> bankRecords) {
+        int chunkSize = upsertProperties.getChunkSize();
+        List<UpsertResult.Batch> batches = new ArrayList<>();
+        long inserted = 0;
+        long updated = 0;
+        for (int from = 0; from < bankRecords.size(); from += chunkSize) {
+            Map<UUID, BankRecord> chunk = new LinkedHashMap<>();
+            for (BankRecord bankRecord : bankRecords.subList(from, Math.min(from + chunkSize, bankRecords.size()))) {
+                if (bankRecord.getId() == null) {
+                    bankRecord.setId(UuidV7.generate());
+                }
+                chunk.put(bankRecord.getId(), bankRecord);
             }
+            int batchInserted = stageMetrics.record("batchUpsertBankRecords", "merge",
+                    () -> bankRecordStore.upsertAll(chunk.values()));
+            invalidateAll(chunk.keySet());
+
+            int batchUpdated = chunk.size() - batchInserted;
+            batches.add(new UpsertResult.Batch(batches.size(), batchInserted, batchUpdated));
+            inserted += batchInserted;
+            updated += batchUpdated;
         }
-        entityManager.flush();
-        entityManager.clear();
+        return new UpsertResult(inserted, updated, batches);
     }
 
+    /**
+     * Массовое удаление записей банка операторами {@code DELETE ... WHERE id IN (...)}.
+     *
+     * @param ids список уникальных идентификаторов записей банка для удаления
+     * @return идентификаторы записей, которые существовали и были удалены
+     */
+    @Transactional
+    public List<UUID> batchDeleteBankRecords(List<UUID> ids) {
+        List<UUID> deleted = bankRecordStore.deleteAllByIds(ids);
+        invalidateAll(ids);
+        return deleted;
+    }
+
+    private void invalidate(UUID id) {
+        invalidateAll(List.of(id));
+    }
 
+    private void invalidateAll(Collection<UUID> ids) {
+        bankRecordCache.invalidateAll(ids);
+        dirtyRecordTracker.markDirty(ids);
+    }
 }
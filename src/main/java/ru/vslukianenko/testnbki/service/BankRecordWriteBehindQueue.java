@@ -0,0 +1,329 @@
+package ru.vslukianenko.testnbki.service;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.DistributionSummary;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.context.SmartLifecycle;
+import org.springframework.dao.DuplicateKeyException;
+import org.springframework.stereotype.Service;
+import ru.vslukianenko.testnbki.config.BankRecordWriteBehindProperties;
+import ru.vslukianenko.testnbki.dto.FailedWrite;
+import ru.vslukianenko.testnbki.id.UuidV7;
+import ru.vslukianenko.testnbki.model.BankRecord;
+
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.UUID;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Очередь асинхронной записи (write-behind) новых записей банка с групповой фиксацией.
+ *
+ * <p>Запись получает идентификатор {@link UuidV7} при постановке в очередь, после чего запрос сразу
+ * завершается. Фоновый поток собирает записи многих запросов в пакет, пока не наберется
+ * {@code max-batch-size} записей или не истечет {@code max-delay}, и сохраняет пакет одной транзакцией
+ * через {@link BankRecordService#bulkInsertBankRecords(List)}. Так стоимость фиксации транзакции
+ * распределяется на весь пакет.</p>
+ *
+ * <p>Очередь ограничена {@code queue-capacity}: если место не освободилось за {@code offer-timeout},
+ * запись отклоняется, и клиент должен повторить запрос позже. При остановке приложения новые записи
+ * не принимаются, а все ожидающие записи сохраняются до закрытия источника данных.</p>
+ *
+ * <p>Пока запись находится в очереди, она не видна операциям чтения.</p>
+ *
+ * <p>Гарантии сохранности: принятая запись хранится только в памяти до фиксации её пакета и теряется
+ * при аварийном завершении процесса. Если пакет не удалось сохранить, его записи сохраняются по одной;
+ * записи, которые не удалось сохранить и так, переносятся в очередь недоставленных записей
+ * ({@link #getFailed()}), откуда их можно сохранить повторно ({@link #retryFailed()}). Очередь
+ * недоставленных записей тоже хранится в памяти и ограничена {@code dead-letter-capacity}: при её
+ * заполнении самая старая запись удаляется с записью в лог уровня ERROR.</p>
+ *
+ * <p>При секционированном хранилище пакет фиксируется в каждой секции отдельно, поэтому после сбоя одной
+ * секции записи других секций уже сохранены. Если при сохранении по одной запись отклоняется как дубликат,
+ * а сохраненная запись с тем же идентификатором содержит те же данные, запись считается сохраненной
+ * и в очередь недоставленных записей не попадает.</p>
+ *
+ * <p>Метрики:</p>
+ * <ul>
+ *   <li>{@code bank.records.write.behind.queue.depth} - текущее количество записей в очереди.</li>
+ *   <li>{@code bank.records.write.behind.commit} - время сохранения одного пакета.</li>
+ *   <li>{@code bank.records.write.behind.batch.size} - размер сохраненных пакетов.</li>
+ *   <li>{@code bank.records.write.behind.rejected} - записи, отклоненные из-за заполненной очереди.</li>
+ *   <li>{@code bank.records.write.behind.failed} - записи, перенесенные в очередь недоставленных записей.</li>
+ *   <li>{@code bank.records.write.behind.dead.letter.size} - текущее количество недоставленных записей.</li>
+ *   <li>{@code bank.records.write.behind.dead.letter.evicted} - недоставленные записи, удаленные
+ *   из-за заполненной очереди недоставленных записей.</li>
+ * </ul>
+ */
+@Slf4j
+@Service
+@ConditionalOnProperty(prefix = "bank-records.write-behind", name = "enabled", havingValue = "true")
+public class BankRecordWriteBehindQueue implements SmartLifecycle {
+
+    /**
+     * Максимальное время одного ожидания очереди, после которого поток проверяет, не остановлена ли очередь.
+     */
+    private static final long STOP_CHECK_NANOS = TimeUnit.MILLISECONDS.toNanos(50);
+
+    private final BankRecordService bankRecordService;
+
+    private final BlockingQueue<BankRecord> queue;
+
+    private final int maxBatchSize;
+
+    private final long maxDelayNanos;
+
+    private final long offerTimeoutNanos;
+
+    private final Timer commitTimer;
+
+    private final DistributionSummary batchSizeSummary;
+
+    private final Counter rejectedCounter;
+
+    private final Counter failedCounter;
+
+    private final Counter evictedCounter;
+
+    private final int deadLetterCapacity;
+
+    /**
+     * Недоставленные записи в порядке неудачных попыток; доступ синхронизирован по самой карте.
+     */
+    private final Map<UUID, FailedWrite> deadLetters = new LinkedHashMap<>();
+
+    private volatile boolean running;
+
+    private Thread flusher;
+
+    public BankRecordWriteBehindQueue(BankRecordService bankRecordService,
+                                      BankRecordWriteBehindProperties properties,
+                                      MeterRegistry meterRegistry) {
+        this.bankRecordService = bankRecordService;
+        this.queue = new ArrayBlockingQueue<>(properties.getQueueCapacity());
+        this.maxBatchSize = properties.getMaxBatchSize();
+        this.maxDelayNanos = properties.getMaxDelay().toNanos();
+        this.offerTimeoutNanos = properties.getOfferTimeout().toNanos();
+        this.deadLetterCapacity = properties.getDeadLetterCapacity();
+        Gauge.builder("bank.records.write.behind.queue.depth", queue, BlockingQueue::size)
+                .description("Records waiting to be written")
+                .register(meterRegistry);
+        this.commitTimer = Timer.builder("bank.records.write.behind.commit")
+                .description("Time to write and commit one batch")
+                .publishPercentiles(0.5, 0.95, 0.99)
+                .register(meterRegistry);
+        this.batchSizeSummary = DistributionSummary.builder("bank.records.write.behind.batch.size")
+                .description("Records per committed batch")
+                .register(meterRegistry);
+        this.rejectedCounter = Counter.builder("bank.records.write.behind.rejected")
+                .description("Records rejected because the queue was full")
+                .register(meterRegistry);
+        this.failedCounter = Counter.builder("bank.records.write.behind.failed")
+                .description("Records that could not be written and were moved to the dead-letter store")
+                .register(meterRegistry);
+        Gauge.builder("bank.records.write.behind.dead.letter.size", deadLetters, BankRecordWriteBehindQueue::size)
+                .description("Records in the dead-letter store")
+                .register(meterRegistry);
+        this.evictedCounter = Counter.builder("bank.records.write.behind.dead.letter.evicted")
+                .description("Records dropped because the dead-letter store was full")
+                .register(meterRegistry);
+    }
+
+    /**
+     * Ставит запись в очередь на сохранение. Записи без идентификатора назначается {@link UuidV7}.
+     *
+     * @param bankRecord новая запись банка
+     * @return true, если запись принята; false, если очередь заполнена или приложение останавливается
+     * @throws InterruptedException если поток был прерван во время ожидания места в очереди
+     */
+    public boolean enqueue(BankRecord bankRecord) throws InterruptedException {
+        if (!running) {
+            return false;
+        }
+        if (bankRecord.getId() == null) {
+            bankRecord.setId(UuidV7.generate());
+        }
+        boolean accepted = queue.offer(bankRecord, offerTimeoutNanos, TimeUnit.NANOSECONDS);
+        if (!accepted) {
+            rejectedCounter.increment();
+        }
+        return accepted;
+    }
+
+    /**
+     * Возвращает записи, которые не удалось сохранить, в порядке неудачных попыток.
+     *
+     * @return снимок очереди недоставленных записей
+     */
+    public List<FailedWrite> getFailed() {
+        synchronized (deadLetters) {
+            return List.copyOf(deadLetters.values());
+        }
+    }
+
+    /**
+     * Повторно сохраняет недоставленные записи по одной. Сохраненные записи удаляются из очереди
+     * недоставленных записей, остальные остаются в ней с новой ошибкой.
+     *
+     * @return записи, которые не удалось сохранить и при повторной попытке
+     */
+    public List<FailedWrite> retryFailed() {
+        for (FailedWrite failed : getFailed()) {
+            BankRecord bankRecord = failed.record();
+            try {
+                insertOne(bankRecord);
+                synchronized (deadLetters) {
+                    deadLetters.remove(bankRecord.getId());
+                }
+            } catch (RuntimeException e) {
+                log.warn("Retry of record {} failed", bankRecord.getId(), e);
+                synchronized (deadLetters) {
+                    deadLetters.replace(bankRecord.getId(), new FailedWrite(bankRecord, message(e), Instant.now()));
+                }
+            }
+        }
+        return getFailed();
+    }
+
+    @Override
+    public void start() {
+        running = true;
+        flusher = new Thread(this::flushLoop, "bank-record-write-behind");
+        flusher.start();
+    }
+
+    @Override
+    public void stop() {
+        running = false;
+        try {
+            flusher.join();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        List<BankRecord> remaining = new ArrayList<>();
+        while (queue.drainTo(remaining, maxBatchSize) > 0) {
+            flush(remaining);
+            remaining = new ArrayList<>();
+        }
+    }
+
+    @Override
+    public boolean isRunning() {
+        return running;
+    }
+
+    /**
+     * Очередь останавливается после веб-сервера, чтобы сохранить записи последних принятых запросов,
+     * и до закрытия источника данных.
+     */
+    @Override
+    public int getPhase() {
+        return SmartLifecycle.DEFAULT_PHASE - 4096;
+    }
+
+    private void flushLoop() {
+        while (running) {
+            try {
+                List<BankRecord> batch = collectBatch();
+                if (!batch.isEmpty()) {
+                    flush(batch);
+                }
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                return;
+            }
+        }
+    }
+
+    private List<BankRecord> collectBatch() throws InterruptedException {
+        List<BankRecord> batch = new ArrayList<>(maxBatchSize);
+        BankRecord first = queue.poll(Math.min(maxDelayNanos, STOP_CHECK_NANOS), TimeUnit.NANOSECONDS);
+        if (first == null) {
+            return batch;
+        }
+        batch.add(first);
+        long deadline = System.nanoTime() + maxDelayNanos;
+        while (batch.size() < maxBatchSize && running) {
+            queue.drainTo(batch, maxBatchSize - batch.size());
+            long remaining = deadline - System.nanoTime();
+            if (batch.size() >= maxBatchSize || remaining <= 0) {
+                break;
+            }
+            BankRecord next = queue.poll(Math.min(remaining, STOP_CHECK_NANOS), TimeUnit.NANOSECONDS);
+            if (next != null) {
+                batch.add(next);
+            }
+        }
+        return batch;
+    }
+
+    private void flush(List<BankRecord> batch) {
+        try {
+            commitTimer.record(() -> bankRecordService.bulkInsertBankRecords(batch));
+            batchSizeSummary.record(batch.size());
+        } catch (RuntimeException e) {
+            log.warn("Failed to write batch of {} records, retrying one by one", batch.size(), e);
+            for (BankRecord bankRecord : batch) {
+                try {
+                    insertOne(bankRecord);
+                } catch (RuntimeException recordFailure) {
+                    log.error("Failed to write record {}, moving it to the dead-letter store",
+                            bankRecord.getId(), recordFailure);
+                    deadLetter(bankRecord, recordFailure);
+                }
+            }
+        }
+    }
+
+    /**
+     * Сохраняет одну запись. Дубликат с теми же данными означает, что запись уже сохранена
+     * (например, в секции, пакет которой был зафиксирован до сбоя другой секции).
+     */
+    private void insertOne(BankRecord bankRecord) {
+        try {
+            bankRecordService.bulkInsertBankRecords(List.of(bankRecord));
+        } catch (DuplicateKeyException e) {
+            boolean stored = bankRecordService.getBankRecordById(bankRecord.getId())
+                    .map(existing -> Objects.equals(existing.getData(), bankRecord.getData()))
+                    .orElse(false);
+            if (!stored) {
+                throw e;
+            }
+            log.debug("Record {} is already stored", bankRecord.getId());
+        }
+    }
+
+    private void deadLetter(BankRecord bankRecord, RuntimeException failure) {
+        failedCounter.increment();
+        synchronized (deadLetters) {
+            deadLetters.put(bankRecord.getId(), new FailedWrite(bankRecord, message(failure), Instant.now()));
+            Iterator<FailedWrite> oldest = deadLetters.values().iterator();
+            while (deadLetters.size() > deadLetterCapacity) {
+                log.error("Dead-letter store is full, dropping record {}", oldest.next().record().getId());
+                oldest.remove();
+                evictedCounter.increment();
+            }
+        }
+    }
+
+    private static int size(Map<UUID, FailedWrite> deadLetters) {
+        synchronized (deadLetters) {
+            return deadLetters.size();
+        }
+    }
+
+    private static String message(RuntimeException e) {
+        return e.getMessage() != null ? e.getMessage() : e.getClass().getName();
+    }
+}
@@ -0,0 +1,30 @@
+package ru.vslukianenko.testnbki.service;
+
+import lombok.Getter;
+import ru.vslukianenko.testnbki.dto.IngestResult;
+
+/**
+ * Потоковая загрузка прервана: строка NDJSON содержит не JSON-объект ({@code null}, массив или скалярное
+ * значение), то есть тело запроса не является потоком записей. Пакеты, сохраненные до этой строки,
+ * остаются в базе данных; их количество содержится в {@link #getResult()}.
+ */
+@Getter
+public class InvalidIngestLineException extends RuntimeException {
+
+    /**
+     * Номер строки во входном потоке, начиная с 1.
+     */
+    private final long lineNumber;
+
+    /**
+     * Результат загрузки до этой строки: сохраненные записи и строки, отклоненные до нее.
+     */
+    private final IngestResult result;
+
+    public InvalidIngestLineException(long lineNumber, IngestResult result) {
+        super("Line " + lineNumber + ": expected a JSON object, " + result.accepted()
+                + " records saved before it");
+        this.lineNumber = lineNumber;
+        this.result = result;
+    }
+}
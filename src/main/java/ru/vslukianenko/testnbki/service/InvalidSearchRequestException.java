@@ -0,0 +1,16 @@
+package ru.vslukianenko.testnbki.service;
+
+/**
+ * Некорректный поисковый запрос: пустой полнотекстовый запрос или поврежденный курсор поиска.
+ * Сообщение исключения не содержит данных запроса и может быть возвращено клиенту.
+ */
+public class InvalidSearchRequestException extends RuntimeException {
+
+    public InvalidSearchRequestException(String message) {
+        super(message);
+    }
+
+    public InvalidSearchRequestException(String message, Throwable cause) {
+        super(message, cause);
+    }
+}
@@ -0,0 +1,131 @@
+package ru.vslukianenko.testnbki.service;
+
+import io.micrometer.core.instrument.DistributionSummary;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import jakarta.persistence.EntityManager;
+import lombok.RequiredArgsConstructor;
+import org.springframework.stereotype.Component;
+
+import java.util.concurrent.TimeUnit;
+import java.util.function.Supplier;
+
+/**
+ * Метрики отдельных стадий массовых операций с записями банка.
+ *
+ * <p>Публикуемые метрики (тег {@code operation} - имя операции сервиса, тег {@code stage} - стадия):</p>
+ * <ul>
+ *   <li>{@code bank.records.persistence.stage} - время стадии: суммарное время {@code persist}/{@code merge}
+ *   записей одного пакета, {@code flush}, {@code clear}, а также запросы JDBC-операций.</li>
+ *   <li>{@code bank.records.persistence.batch.size} - количество записей в одном сброшенном пакете.</li>
+ * </ul>
+ */
+@Component
+@RequiredArgsConstructor
+public class PersistenceStageMetrics {
+
+    private final MeterRegistry meterRegistry;
+
+    /**
+     * Выполняет стадию операции и записывает её время.
+     *
+     * @param operation имя операции
+     * @param stage     имя стадии
+     * @param action    действие стадии
+     * @return результат действия
+     */
+    public <T> T record(String operation, String stage, Supplier<T> action) {
+        return timer(operation, stage).record(action);
+    }
+
+    /**
+     * Выполняет стадию операции без результата и записывает её время.
+     *
+     * @param operation имя операции
+     * @param stage     имя стадии
+     * @param action    действие стадии
+     */
+    public void record(String operation, String stage, Runnable action) {
+        timer(operation, stage).record(action);
+    }
+
+    /**
+     * Начинает учет пакетной операции через контекст персистентности.
+     *
+     * @param operation имя операции
+     * @param writeStage имя стадии записи одной сущности, например {@code persist} или {@code merge}
+     * @return счетчик стадий пакета
+     */
+    public Batch batch(String operation, String writeStage) {
+        return new Batch(timer(operation, writeStage), timer(operation, "flush"), timer(operation, "clear"),
+                DistributionSummary.builder("bank.records.persistence.batch.size")
+                        .description("Entities written per flushed batch")
+                        .tag("operation", operation)
+                        .register(meterRegistry));
+    }
+
+    private Timer timer(String operation, String stage) {
+        return Timer.builder("bank.records.persistence.stage")
+                .description("Time spent in one stage of a persistence operation")
+                .tag("operation", operation)
+                .tag("stage", stage)
+                .publishPercentiles(0.5, 0.95, 0.99)
+                .register(meterRegistry);
+    }
+
+    /**
+     * Стадии одного выполнения пакетной операции.
+     *
+     * <p>Время записи отдельных сущностей суммируется и публикуется одним значением на пакет,
+     * вместе со временем {@code flush} и {@code clear} этого пакета.</p>
+     */
+    public static class Batch {
+
+        private final Timer writeTimer;
+
+        private final Timer flushTimer;
+
+        private final Timer clearTimer;
+
+        private final DistributionSummary batchSize;
+
+        private long writeNanos;
+
+        private int written;
+
+        private Batch(Timer writeTimer, Timer flushTimer, Timer clearTimer, DistributionSummary batchSize) {
+            this.writeTimer = writeTimer;
+            this.flushTimer = flushTimer;
+            this.clearTimer = clearTimer;
+            this.batchSize = batchSize;
+        }
+
+        /**
+         * Выполняет запись одной сущности в контекст персистентности.
+         *
+         * @param action запись сущности
+         */
+        public void write(Runnable action) {
+            long start = System.nanoTime();
+            action.run();
+            writeNanos += System.nanoTime() - start;
+            written++;
+        }
+
+        /**
+         * Сбрасывает и очищает контекст персистентности, публикуя время стадий текущего пакета.
+         *
+         * @param entityManager контекст персистентности
+         */
+        public void flushAndClear(EntityManager entityManager) {
+            flushTimer.record(entityManager::flush);
+            clearTimer.record(entityManager::clear);
+            if (written > 0) {
+                writeTimer.record(writeNanos, TimeUnit.NANOSECONDS);
+                batchSize.record(written);
+            }
+            writeNanos = 0;
+            written = 0;
+        }
+    }
+}
@@ -0,0 +1,76 @@
+package ru.vslukianenko.testnbki;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import ru.vslukianenko.testnbki.cache.BankRecordCache;
+import ru.vslukianenko.testnbki.model.BankRecord;
+import ru.vslukianenko.testnbki.repo.BankRecordRepository;
+import ru.vslukianenko.testnbki.service.BankRecordService;
+
+import java.util.List;
+import java.util.UUID;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * Тесты кэша чтения записей банка.
+ *
+ * <p>Проверяют, что повторное чтение обслуживается из кэша, а операции записи
+ * сервиса {@link BankRecordService} инвалидируют устаревшие значения.</p>
+ */
+@SpringBootTest
+public class BankRecordCacheTest {
+
+    @Autowired
+    private BankRecordRepository recordRepository;
+
+    @Autowired
+    private BankRecordService recordService;
+
+    @Autowired
+    private BankRecordCache recordCache;
+
+    @BeforeEach
+    public void setUp() {
+        recordRepository.deleteAll();
+    }
+
+    @Test
+    public void testRepeatedReadIsServedFromCache() {
+        BankRecord record = new BankRecord();
+        record.setData("cached");
+        UUID id = recordService.createBankRecord(record).getId();
+
+        recordService.getBankRecordById(id);
+        long hitsBefore = recordCache.stats().hitCount();
+        recordService.getBankRecordById(id).orElseThrow().setData("mutated by caller");
+
+        assertEquals(hitsBefore + 1, recordCache.stats().hitCount());
+        assertEquals("cached", recordService.getBankRecordById(id).orElseThrow().getData());
+    }
+
+    @Test
+    public void testWritesInvalidateCache() {
+        BankRecord record = new BankRecord();
+        record.setData("v1");
+        UUID id = recordService.createBankRecord(record).getId();
+        recordService.getBankRecordById(id);
+
+        BankRecord details = new BankRecord();
+        details.setData("v2");
+        recordService.updateBankRecord(id, details);
+        assertEquals("v2", recordService.getBankRecordById(id).orElseThrow().getData());
+
+        BankRecord batchUpdate = new BankRecord();
+        batchUpdate.setId(id);
+        batchUpdate.setData("v3");
+        recordService.batchUpdateBankRecords(List.of(batchUpdate));
+        assertEquals("v3", recordService.getBankRecordById(id).orElseThrow().getData());
+
+        recordService.batchDeleteBankRecords(List.of(id));
+        assertTrue(recordService.getBankRecordById(id).isEmpty());
+    }
+}
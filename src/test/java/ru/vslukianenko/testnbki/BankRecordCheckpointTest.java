@@ -0,0 +1,149 @@
+package ru.vslukianenko.testnbki;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.springframework.boot.WebApplicationType;
+import org.springframework.boot.builder.SpringApplicationBuilder;
+import org.springframework.boot.web.context.WebServerInitializedEvent;
+import org.springframework.context.ApplicationListener;
+import org.springframework.context.ConfigurableApplicationContext;
+import org.springframework.jdbc.core.JdbcTemplate;
+import ru.vslukianenko.testnbki.checkpoint.BankRecordCheckpointService;
+import ru.vslukianenko.testnbki.model.BankRecord;
+import ru.vslukianenko.testnbki.service.BankRecordService;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.UUID;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.stream.Stream;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * Тесты контрольных точек: записи, сохраненные полным снимком и изменениями, восстанавливаются
+ * после перезапуска приложения с пустой базой данных.
+ */
+public class BankRecordCheckpointTest {
+
+    private static final String[] COMPRESSION = {
+            "--bank-records.compression.enabled=true",
+            "--bank-records.compression.min-length=100"
+    };
+
+    @TempDir
+    private Path directory;
+
+    /**
+     * Проверяет восстановление данных, версий и удалений из полного снимка, изменения и контрольной точки,
+     * записанной при остановке, а также удаление старых файлов после следующего полного снимка.
+     * Восстановление должно завершиться до запуска веб-сервера.
+     */
+    @Test
+    public void testRecordsAreRestoredAfterRestart() throws IOException {
+        List<UUID> ids;
+        UUID created;
+        try (ConfigurableApplicationContext context = start("checkpoint-first")) {
+            BankRecordService service = context.getBean(BankRecordService.class);
+            BankRecordCheckpointService checkpoints = context.getBean(BankRecordCheckpointService.class);
+            List<BankRecord> records = new ArrayList<>();
+            for (int i = 0; i < 250; i++) {
+                records.add(details("record " + i));
+            }
+            service.batchCreateBankRecords(records);
+            ids = records.stream().map(BankRecord::getId).toList();
+            assertEquals(250, checkpoints.checkpoint());
+
+            service.updateBankRecord(ids.get(0), details("updated"), 0L);
+            service.deleteBankRecord(ids.get(1));
+            created = service.createBankRecord(details("created")).getId();
+            assertEquals(3, checkpoints.checkpoint());
+            assertEquals(0, checkpoints.checkpoint());
+
+            service.updateBankRecord(ids.get(0), details("updated again"));
+        }
+        assertEquals(3, checkpointFiles().size());
+
+        AtomicLong recordsAtServerStart = new AtomicLong(-1);
+        ApplicationListener<WebServerInitializedEvent> serverStarted = event -> recordsAtServerStart.set(
+                event.getApplicationContext().getBean(BankRecordService.class).countBankRecords());
+        SpringApplicationBuilder server = new SpringApplicationBuilder(TestNbkiApplication.class)
+                .web(WebApplicationType.SERVLET)
+                .listeners(serverStarted);
+        try (ConfigurableApplicationContext context = start(server, "checkpoint-second", "--server.port=0")) {
+            BankRecordService service = context.getBean(BankRecordService.class);
+            assertEquals(250, recordsAtServerStart.get());
+            assertEquals(250, service.countBankRecords());
+            BankRecord updated = service.getBankRecordById(ids.get(0)).orElseThrow();
+            assertEquals("updated again", updated.getData());
+            assertEquals(2L, updated.getVersion());
+            assertTrue(service.getBankRecordById(ids.get(1)).isEmpty());
+            assertEquals("created", service.getBankRecordById(created).orElseThrow().getData());
+            assertEquals("record 249", service.getBankRecordById(ids.get(249)).orElseThrow().getData());
+
+            assertEquals(250, context.getBean(BankRecordCheckpointService.class).checkpoint());
+            assertEquals(1, checkpointFiles().size());
+        }
+    }
+
+    /**
+     * Проверяет, что сжатые данные записываются в контрольную точку сжатыми и восстанавливаются
+     * в базу данных без повторного сжатия.
+     */
+    @Test
+    public void testCompressedRecordsStayCompressed() throws IOException {
+        String data = "account statement line; ".repeat(200);
+        List<UUID> ids;
+        try (ConfigurableApplicationContext context = start("checkpoint-compressed-first", COMPRESSION)) {
+            List<BankRecord> records = new ArrayList<>();
+            for (int i = 0; i < 50; i++) {
+                records.add(details(data + i));
+            }
+            context.getBean(BankRecordService.class).batchCreateBankRecords(records);
+            ids = records.stream().map(BankRecord::getId).toList();
+            assertEquals(50, context.getBean(BankRecordCheckpointService.class).checkpoint());
+        }
+        assertTrue(Files.size(checkpointFiles().get(0)) < 50L * data.length() / 10);
+
+        try (ConfigurableApplicationContext context = start("checkpoint-compressed-second", COMPRESSION)) {
+            BankRecordService service = context.getBean(BankRecordService.class);
+            assertEquals(50, service.countBankRecords());
+            assertEquals(data + 7, service.getBankRecordById(ids.get(7)).orElseThrow().getData());
+            assertEquals(50, context.getBean(JdbcTemplate.class).queryForObject(
+                    "SELECT COUNT(*) FROM bank_record WHERE data IS NULL AND data_compressed IS NOT NULL", Long.class));
+        }
+    }
+
+    private ConfigurableApplicationContext start(String database, String... arguments) {
+        return start(new SpringApplicationBuilder(TestNbkiApplication.class).web(WebApplicationType.NONE),
+                database, arguments);
+    }
+
+    private ConfigurableApplicationContext start(SpringApplicationBuilder application, String database,
+                                                 String... arguments) {
+        List<String> args = new ArrayList<>(List.of("--spring.datasource.url=jdbc:h2:mem:" + database,
+                "--bank-records.checkpoint.enabled=true",
+                "--bank-records.checkpoint.directory=" + directory,
+                "--bank-records.checkpoint.interval=1h",
+                "--bank-records.checkpoint.full-snapshot-every=3",
+                "--bank-records.checkpoint.chunk-size=100"));
+        args.addAll(List.of(arguments));
+        return application.run(args.toArray(String[]::new));
+    }
+
+    private List<Path> checkpointFiles() throws IOException {
+        try (Stream<Path> files = Files.list(directory)) {
+            return files.toList();
+        }
+    }
+
+    private static BankRecord details(String data) {
+        BankRecord bankRecord = new BankRecord();
+        bankRecord.setData(data);
+        return bankRecord;
+    }
+}
@@ -0,0 +1,142 @@
+package ru.vslukianenko.testnbki;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.web.servlet.AutoConfigureMockMvc;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.test.web.servlet.MockMvc;
+import ru.vslukianenko.testnbki.config.BankRecordCompressionProperties;
+import ru.vslukianenko.testnbki.config.BankRecordSearchProperties;
+import ru.vslukianenko.testnbki.model.BankRecord;
+import ru.vslukianenko.testnbki.repo.BankRecordRepository;
+import ru.vslukianenko.testnbki.repo.BankRecordStore;
+import ru.vslukianenko.testnbki.service.BankRecordSearchService;
+import ru.vslukianenko.testnbki.service.BankRecordService;
+
+import java.util.List;
+import java.util.Map;
+import java.util.UUID;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertSame;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.get;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.jsonPath;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.status;
+
+/**
+ * Тесты сжатия данных записей банка при сохранении через JPA и через JDBC.
+ */
+@SpringBootTest(properties = {
+        "spring.datasource.url=jdbc:h2:mem:compression-test",
+        "bank-records.compression.enabled=true",
+        "bank-records.compression.min-length=100"
+})
+@AutoConfigureMockMvc
+public class BankRecordCompressionTest {
+
+    private static final String LARGE_DATA = "account statement line; ".repeat(200);
+
+    @Autowired
+    private MockMvc mockMvc;
+
+    @Autowired
+    private BankRecordRepository recordRepository;
+
+    @Autowired
+    private BankRecordService recordService;
+
+    @Autowired
+    private JdbcTemplate jdbcTemplate;
+
+    @Autowired
+    private BankRecordStore bankRecordStore;
+
+    @BeforeEach
+    public void setUp() {
+        recordRepository.deleteAll();
+    }
+
+    /**
+     * Проверяет, что длинные данные, сохраненные через JPA, хранятся сжатыми, короткие - как есть,
+     * а чтение и HTTP API возвращают исходные данные.
+     */
+    @Test
+    public void testJpaSaveCompressesLargeData() throws Exception {
+        UUID large = recordService.createBankRecord(record(LARGE_DATA)).getId();
+        UUID small = recordService.createBankRecord(record("short")).getId();
+
+        Map<String, Object> stored = stored(large);
+        assertNull(stored.get("data"));
+        assertTrue(((byte[]) stored.get("data_compressed")).length < LARGE_DATA.length() / 10);
+        assertEquals("short", stored(small).get("data"));
+        assertNull(stored(small).get("data_compressed"));
+
+        BankRecord loaded = recordRepository.findById(large).orElseThrow();
+        assertNotNull(loaded.getCompressedData());
+        assertEquals(LARGE_DATA, loaded.getData());
+        assertSame(loaded.getData(), loaded.getData());
+
+        mockMvc.perform(get("/api/records/" + large))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$.data").value(LARGE_DATA))
+                .andExpect(jsonPath("$.compressedData").doesNotExist());
+    }
+
+    /**
+     * Проверяет сжатие при пакетной вставке и обновлении через JDBC.
+     */
+    @Test
+    public void testJdbcWritesCompress() {
+        List<BankRecord> records = List.of(record(LARGE_DATA), record(LARGE_DATA), record("short"));
+        recordService.bulkInsertBankRecords(records);
+        UUID first = records.get(0).getId();
+        assertNull(stored(first).get("data"));
+        assertEquals("short", stored(records.get(2).getId()).get("data"));
+
+        String updated = "updated " + LARGE_DATA;
+        BankRecord details = record(updated);
+        BankRecord result = recordService.updateBankRecord(first, details, 0L).orElseThrow();
+        assertEquals(updated, result.getData());
+        assertEquals(1L, result.getVersion());
+        assertNull(stored(first).get("data"));
+        assertEquals(updated, recordService.getBankRecordById(first).orElseThrow().getData());
+    }
+
+    /**
+     * Проверяет, что сжатие выключает поиск, не заданный явно, и что явно включенный поиск со сжатием
+     * отклоняется.
+     */
+    @Test
+    public void testCompressionDisablesSearchByDefault() throws Exception {
+        mockMvc.perform(get("/api/records/search/exact").param("data", "short"))
+                .andExpect(status().isNotImplemented());
+
+        BankRecordCompressionProperties compression = new BankRecordCompressionProperties();
+        compression.setEnabled(true);
+        assertFalse(new BankRecordSearchService(bankRecordStore, new BankRecordSearchProperties(), compression)
+                .isEnabled());
+        assertTrue(new BankRecordSearchService(bankRecordStore, new BankRecordSearchProperties(),
+                new BankRecordCompressionProperties()).isEnabled());
+        BankRecordSearchProperties search = new BankRecordSearchProperties();
+        search.setEnabled(true);
+        assertThrows(IllegalStateException.class,
+                () -> new BankRecordSearchService(bankRecordStore, search, compression));
+    }
+
+    private Map<String, Object> stored(UUID id) {
+        return jdbcTemplate.queryForMap("SELECT data, data_compressed FROM bank_record WHERE id = ?", id);
+    }
+
+    private static BankRecord record(String data) {
+        BankRecord record = new BankRecord();
+        record.setData(data);
+        return record;
+    }
+}
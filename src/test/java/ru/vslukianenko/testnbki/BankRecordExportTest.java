@@ -0,0 +1,88 @@
+package ru.vslukianenko.testnbki;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.web.servlet.AutoConfigureMockMvc;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.test.web.servlet.MockMvc;
+import org.springframework.test.web.servlet.MvcResult;
+import ru.vslukianenko.testnbki.model.BankRecord;
+import ru.vslukianenko.testnbki.repo.BankRecordRepository;
+import ru.vslukianenko.testnbki.service.BankRecordService;
+
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.UUID;
+import java.util.stream.Collectors;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.asyncDispatch;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.get;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.content;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.request;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.status;
+
+/**
+ * Тесты потоковой выгрузки и подсчета записей банка.
+ */
+@SpringBootTest(properties = "bank-records.export.page-size=2")
+@AutoConfigureMockMvc
+public class BankRecordExportTest {
+
+    private static final int NUM_RECORDS = 5;
+
+    @Autowired
+    private MockMvc mockMvc;
+
+    @Autowired
+    private ObjectMapper objectMapper;
+
+    @Autowired
+    private BankRecordRepository recordRepository;
+
+    @Autowired
+    private BankRecordService recordService;
+
+    @BeforeEach
+    public void setUp() {
+        recordRepository.deleteAll();
+    }
+
+    /**
+     * Проверяет, что выгрузка, читающая таблицу несколькими страницами, возвращает каждую запись ровно один раз.
+     */
+    @Test
+    public void testExportStreamsAllRecordsAsNdjson() throws Exception {
+        List<BankRecord> records = new ArrayList<>();
+        for (int i = 0; i < NUM_RECORDS; i++) {
+            BankRecord record = new BankRecord();
+            record.setData("record " + i);
+            records.add(record);
+        }
+        recordService.bulkInsertBankRecords(records);
+
+        MvcResult result = mockMvc.perform(get("/api/records/export"))
+                .andExpect(request().asyncStarted())
+                .andReturn();
+        String body = mockMvc.perform(asyncDispatch(result))
+                .andExpect(status().isOk())
+                .andReturn().getResponse().getContentAsString(StandardCharsets.UTF_8);
+
+        List<String> lines = body.lines().toList();
+        assertEquals(NUM_RECORDS, lines.size());
+        Set<UUID> exportedIds = new HashSet<>();
+        for (String line : lines) {
+            exportedIds.add(objectMapper.readValue(line, BankRecord.class).getId());
+        }
+        assertEquals(records.stream().map(BankRecord::getId).collect(Collectors.toSet()), exportedIds);
+
+        mockMvc.perform(get("/api/records/count"))
+                .andExpect(status().isOk())
+                .andExpect(content().string(String.valueOf(NUM_RECORDS)));
+    }
+}
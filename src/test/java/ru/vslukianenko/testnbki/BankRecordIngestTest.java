@@ -0,0 +1,125 @@
+package ru.vslukianenko.testnbki;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.web.servlet.AutoConfigureMockMvc;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.boot.test.mock.mockito.SpyBean;
+import org.springframework.dao.DataAccessResourceFailureException;
+import org.springframework.test.web.servlet.MockMvc;
+import ru.vslukianenko.testnbki.repo.BankRecordRepository;
+import ru.vslukianenko.testnbki.service.BankRecordService;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.mockito.ArgumentMatchers.anyList;
+import static org.mockito.Mockito.doCallRealMethod;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.post;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.content;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.jsonPath;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.status;
+
+/**
+ * Тесты потоковой загрузки записей банка в формате NDJSON.
+ */
+@SpringBootTest(properties = {"bank-records.ingest.chunk-size=2", "bank-records.ingest.max-line-length=40"})
+@AutoConfigureMockMvc
+public class BankRecordIngestTest {
+
+    @Autowired
+    private MockMvc mockMvc;
+
+    @Autowired
+    private BankRecordRepository recordRepository;
+
+    @SpyBean
+    private BankRecordService recordService;
+
+    @BeforeEach
+    public void setUp() {
+        recordRepository.deleteAll();
+    }
+
+    /**
+     * Проверяет, что корректные строки сохраняются пакетами, а некорректные отклоняются,
+     * не прерывая загрузку.
+     */
+    @Test
+    public void testIngestCountsAcceptedAndRejectedRecords() throws Exception {
+        String body = """
+                {"data": "record 1"}
+                {"data": "record 2"}
+                not a json
+
+                {"data": "record 3"}
+                {"data": "a line that is longer than the maximum line length"}
+                {"data": "x"} {"data": "y"}
+                {"data": 
+                """;
+
+        mockMvc.perform(post("/api/records/stream")
+                        .contentType("application/x-ndjson")
+                        .content(body))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$.accepted").value(3))
+                .andExpect(jsonPath("$.rejected").value(4));
+
+        assertEquals(3, recordRepository.count());
+    }
+
+    /**
+     * Проверяет, что строка с {@code null} или не объектом прерывает загрузку со статусом 400
+     * и номером строки, а пакеты до нее остаются сохраненными.
+     */
+    @Test
+    public void testIngestFailsOnNonObjectLine() throws Exception {
+        String body = """
+                {"data": "record 1"}
+                {"data": "record 2"}
+
+                null
+                {"data": "record 3"}
+                """;
+
+        mockMvc.perform(post("/api/records/stream")
+                        .contentType("application/x-ndjson")
+                        .content(body))
+                .andExpect(status().isBadRequest())
+                .andExpect(content().string("Line 4: expected a JSON object, 2 records saved before it"));
+
+        mockMvc.perform(post("/api/records/stream")
+                        .contentType("application/x-ndjson")
+                        .content("[{\"data\": \"record 4\"}]\n"))
+                .andExpect(status().isBadRequest())
+                .andExpect(content().string("Line 1: expected a JSON object, 0 records saved before it"));
+
+        assertEquals(2, recordRepository.count());
+    }
+
+    /**
+     * Проверяет, что сбой сохранения пакета прерывает загрузку со статусом 500 и количеством
+     * записей, сохраненных до сбоя.
+     */
+    @Test
+    public void testIngestStopsWhenChunkFailsToSave() throws Exception {
+        doCallRealMethod()
+                .doThrow(new DataAccessResourceFailureException("database is down"))
+                .when(recordService).bulkInsertBankRecords(anyList());
+        String body = """
+                {"data": "record 1"}
+                {"data": "record 2"}
+                {"data": "record 3"}
+                {"data": "record 4"}
+                {"data": "record 5"}
+                """;
+
+        mockMvc.perform(post("/api/records/stream")
+                        .contentType("application/x-ndjson")
+                        .content(body))
+                .andExpect(status().isInternalServerError())
+                .andExpect(jsonPath("$.accepted").value(2))
+                .andExpect(jsonPath("$.rejected").value(0));
+
+        assertEquals(2, recordRepository.count());
+    }
+}
@@ -0,0 +1,151 @@
+package ru.vslukianenko.testnbki;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.web.servlet.AutoConfigureMockMvc;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.test.web.servlet.MockMvc;
+import ru.vslukianenko.testnbki.dto.SearchPage;
+import ru.vslukianenko.testnbki.model.BankRecord;
+import ru.vslukianenko.testnbki.repo.BankRecordRepository;
+import ru.vslukianenko.testnbki.service.BankRecordSearchService;
+import ru.vslukianenko.testnbki.service.InvalidSearchRequestException;
+import ru.vslukianenko.testnbki.service.BankRecordService;
+
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Base64;
+import java.util.List;
+import java.util.UUID;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.get;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.content;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.jsonPath;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.status;
+
+/**
+ * Тесты поиска записей банка по данным.
+ */
+@SpringBootTest(properties = {
+        "bank-records.search.default-page-size=2",
+        "bank-records.search.full-text-enabled=true"
+})
+@AutoConfigureMockMvc
+public class BankRecordSearchTest {
+
+    @Autowired
+    private MockMvc mockMvc;
+
+    @Autowired
+    private BankRecordRepository recordRepository;
+
+    @Autowired
+    private BankRecordService recordService;
+
+    @Autowired
+    private BankRecordSearchService searchService;
+
+    @BeforeEach
+    public void setUp() {
+        recordRepository.deleteAll();
+        recordService.bulkInsertBankRecords(records(
+                "apple pie", "apple pie", "apple pie", "apple juice", "apricot jam", "banana split", "app_le"));
+    }
+
+    /**
+     * Проверяет точный поиск с постраничным обходом по курсору.
+     */
+    @Test
+    public void testExactSearchPaginatesWithCursor() {
+        SearchPage first = searchService.findByData("apple pie", null, null);
+        assertEquals(2, first.records().size());
+        assertNotNull(first.next());
+
+        SearchPage second = searchService.findByData("apple pie", first.next(), null);
+        assertEquals(1, second.records().size());
+        assertNull(second.next());
+        assertEquals(3, List.of(first.records().get(0).getId(), first.records().get(1).getId(),
+                second.records().get(0).getId()).stream().distinct().count());
+    }
+
+    /**
+     * Проверяет поиск по префиксу: порядок по данным, обход всех страниц и экранирование символов {@code LIKE}.
+     */
+    @Test
+    public void testPrefixSearchOrdersByDataAndEscapesWildcards() {
+        List<String> found = new ArrayList<>();
+        String cursor = null;
+        do {
+            SearchPage page = searchService.findByDataPrefix("app", cursor, null);
+            page.records().forEach(record -> found.add(record.getData()));
+            cursor = page.next();
+        } while (cursor != null);
+
+        assertEquals(List.of("app_le", "apple juice", "apple pie", "apple pie", "apple pie"), found);
+        assertEquals(1, searchService.findByDataPrefix("app_", null, 10).records().size());
+    }
+
+    /**
+     * Проверяет, что курсор содержит только идентификатор последней записи, а не её данные,
+     * и что курсор удаленной записи отклоняется.
+     */
+    @Test
+    public void testCursorHoldsOnlyIdOfLastRecord() {
+        String longData = "apple " + "x".repeat(10_000);
+        recordService.bulkInsertBankRecords(records(longData, longData + " again"));
+
+        SearchPage first = searchService.findByDataPrefix("apple " + "x", null, 1);
+        UUID lastId = first.records().get(0).getId();
+        assertEquals(lastId.toString(), new String(Base64.getUrlDecoder().decode(first.next()), StandardCharsets.UTF_8));
+
+        SearchPage second = searchService.findByDataPrefix("apple " + "x", first.next(), 1);
+        assertEquals(longData + " again", second.records().get(0).getData());
+
+        recordService.deleteBankRecord(lastId);
+        assertThrows(InvalidSearchRequestException.class,
+                () -> searchService.findByDataPrefix("apple " + "x", first.next(), 1));
+    }
+
+    /**
+     * Проверяет полнотекстовый поиск, включая записи, измененные после вставки.
+     */
+    @Test
+    public void testFullTextSearchFollowsUpdates() throws Exception {
+        mockMvc.perform(get("/api/records/search/text").param("query", "jam"))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$.records.length()").value(1))
+                .andExpect(jsonPath("$.records[0].data").value("apricot jam"));
+
+        UUID bananaId = searchService.findByData("banana split", null, null).records().get(0).getId();
+        BankRecord details = new BankRecord();
+        details.setData("banana jam");
+        recordService.updateBankRecord(bananaId, details);
+
+        SearchPage first = searchService.searchFullText("jam", null, 1);
+        SearchPage second = searchService.searchFullText("jam", first.next(), 1);
+        assertEquals(1, first.records().size());
+        assertEquals(1, second.records().size());
+        assertNull(second.next());
+        assertTrue(first.records().get(0).getId().compareTo(second.records().get(0).getId()) < 0);
+
+        mockMvc.perform(get("/api/records/search/text").param("query", "jam").param("cursor", "not a cursor"))
+                .andExpect(status().isBadRequest())
+                .andExpect(content().string("Invalid search cursor"));
+    }
+
+    private static List<BankRecord> records(String... data) {
+        List<BankRecord> records = new ArrayList<>();
+        for (String value : data) {
+            BankRecord record = new BankRecord();
+            record.setData(value);
+            records.add(record);
+        }
+        return records;
+    }
+}
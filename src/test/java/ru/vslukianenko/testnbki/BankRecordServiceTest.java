@@ -0,0 +1,216 @@
+package ru.vslukianenko.testnbki;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import ru.vslukianenko.testnbki.dto.BatchReport;
+import ru.vslukianenko.testnbki.dto.LookupResult;
+import ru.vslukianenko.testnbki.dto.UpsertResult;
+import ru.vslukianenko.testnbki.model.BankRecord;
+import ru.vslukianenko.testnbki.repo.BankRecordRepository;
+import ru.vslukianenko.testnbki.service.BankRecordParallelBatchExecutor;
+import ru.vslukianenko.testnbki.service.BankRecordService;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Set;
+import java.util.UUID;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * Тесты массовых операций {@link BankRecordService}.
+ */
+@SpringBootTest(properties = {
+        "bank-records.upsert.chunk-size=2",
+        "bank-records.parallel-batch.chunk-size=2",
+        "bank-records.parallel-batch.adaptive=false"
+})
+public class BankRecordServiceTest {
+
+    @Autowired
+    private BankRecordRepository recordRepository;
+
+    @Autowired
+    private BankRecordService recordService;
+
+    @Autowired
+    private BankRecordParallelBatchExecutor parallelBatchExecutor;
+
+    @BeforeEach
+    public void setUp() {
+        recordRepository.deleteAll();
+    }
+
+    /**
+     * Проверяет, что массовая вставка назначает записям без идентификатора UUID версии 7 в порядке
+     * создания, сохраняет данные и версию 0 и не трогает заданные идентификаторы.
+     */
+    @Test
+    public void testBulkInsertAssignsUuidV7AndPersistsData() {
+        UUID assignedId = UUID.randomUUID();
+        List<BankRecord> records = new ArrayList<>();
+        for (int i = 0; i < 5; i++) {
+            records.add(record(null, "bulk " + i));
+        }
+        records.add(record(assignedId, "assigned"));
+
+        recordService.bulkInsertBankRecords(records);
+
+        List<UUID> generated = records.subList(0, 5).stream().map(BankRecord::getId).toList();
+        generated.forEach(id -> assertEquals(7, id.version()));
+        assertEquals(generated, generated.stream().sorted().toList());
+        assertEquals(5, Set.copyOf(generated).size());
+        assertEquals(assignedId, records.get(5).getId());
+        assertEquals(6, recordRepository.count());
+        for (BankRecord record : records) {
+            BankRecord stored = recordRepository.findById(record.getId()).orElseThrow();
+            assertEquals(record.getData(), stored.getData());
+            assertEquals(0L, stored.getVersion());
+        }
+    }
+
+    /**
+     * Проверяет, что массовая вставка сбрасывает кэш чтения для вставленных идентификаторов:
+     * запись, удаленная в обход сервиса и вставленная заново, читается с новыми данными.
+     */
+    @Test
+    public void testBulkInsertInvalidatesCache() {
+        UUID id = recordService.createBankRecord(record(null, "old")).getId();
+        assertEquals("old", recordService.getBankRecordById(id).orElseThrow().getData());
+        recordRepository.deleteById(id);
+
+        recordService.bulkInsertBankRecords(List.of(record(id, "new")));
+
+        assertEquals("new", recordService.getBankRecordById(id).orElseThrow().getData());
+    }
+
+    /**
+     * Проверяет, что upsert возвращает количество вставленных и обновленных записей по каждому пакету.
+     */
+    @Test
+    public void testBatchUpsertReportsInsertedAndUpdatedPerBatch() {
+        UUID existingId = recordService.createBankRecord(record(null, "old")).getId();
+
+        List<BankRecord> records = new ArrayList<>();
+        records.add(record(existingId, "updated"));
+        records.add(record(UUID.randomUUID(), "new 1"));
+        records.add(record(null, "new 2"));
+        UpsertResult result = recordService.batchUpsertBankRecords(records);
+
+        assertEquals(2, result.inserted());
+        assertEquals(1, result.updated());
+        assertEquals(List.of(new UpsertResult.Batch(0, 1, 1), new UpsertResult.Batch(1, 1, 0)), result.batches());
+        assertEquals(3, recordRepository.count());
+        assertEquals("updated", recordService.getBankRecordById(existingId).orElseThrow().getData());
+    }
+
+    /**
+     * Проверяет, что upsert существующей записи увеличивает ее версию, сбрасывает кэш чтения,
+     * а повтор идентификатора внутри пакета сохраняет последнюю запись.
+     */
+    @Test
+    public void testBatchUpsertUpdatesVersionAndCache() {
+        UUID id = recordService.createBankRecord(record(null, "old")).getId();
+        assertEquals("old", recordService.getBankRecordById(id).orElseThrow().getData());
+
+        UpsertResult result = recordService.batchUpsertBankRecords(List.of(record(id, "first"), record(id, "last")));
+
+        assertEquals(0, result.inserted());
+        assertEquals(1, result.updated());
+        BankRecord cached = recordService.getBankRecordById(id).orElseThrow();
+        assertEquals("last", cached.getData());
+        assertEquals(1L, cached.getVersion());
+    }
+
+    /**
+     * Проверяет, что массовое удаление возвращает только идентификаторы существовавших записей,
+     * а одиночное удаление сообщает, была ли запись удалена.
+     */
+    @Test
+    public void testDeleteReportsDeletedIds() {
+        UUID first = recordService.createBankRecord(record(null, "first")).getId();
+        UUID second = recordService.createBankRecord(record(null, "second")).getId();
+        UUID third = recordService.createBankRecord(record(null, "third")).getId();
+        UUID missing = UUID.randomUUID();
+
+        List<UUID> deleted = recordService.batchDeleteBankRecords(List.of(first, missing, second));
+
+        assertEquals(Set.of(first, second), Set.copyOf(deleted));
+        assertEquals(1, recordRepository.count());
+        assertTrue(recordService.deleteBankRecord(third));
+        assertFalse(recordService.deleteBankRecord(third));
+    }
+
+    /**
+     * Проверяет, что пакетный поиск возвращает найденные записи в порядке запроса
+     * и список отсутствующих идентификаторов, с кэшем и без него.
+     */
+    @Test
+    public void testLookupReturnsFoundAndMissing() {
+        UUID first = recordService.createBankRecord(record(null, "first")).getId();
+        UUID second = recordService.createBankRecord(record(null, "second")).getId();
+        UUID missing = UUID.randomUUID();
+        recordService.getBankRecordById(second);
+
+        for (boolean useCache : new boolean[]{true, false}) {
+            LookupResult result = recordService.getBankRecordsByIds(List.of(second, missing, first, second), useCache);
+
+            assertEquals(List.of(second, first), result.found().stream().map(BankRecord::getId).toList());
+            assertEquals(List.of("second", "first"), result.found().stream().map(BankRecord::getData).toList());
+            assertEquals(List.of(missing), result.missing());
+        }
+    }
+
+    /**
+     * Проверяет, что ошибка в одной части параллельной операции не откатывает остальные части
+     * и отражается в отчете.
+     */
+    @Test
+    public void testParallelCreateReportsFailedChunk() {
+        UUID existingId = recordService.createBankRecord(record(null, "existing")).getId();
+        List<BankRecord> records = new ArrayList<>();
+        for (int i = 0; i < 6; i++) {
+            records.add(record(i == 3 ? existingId : null, "parallel " + i));
+        }
+
+        BatchReport report = parallelBatchExecutor.createAll(records);
+
+        assertEquals(4, report.processed());
+        assertEquals(2, report.failed());
+        assertEquals(List.of(0, 2, 4), report.chunks().stream().map(BatchReport.Chunk::offset).toList());
+        assertEquals(List.of(true, false, true), report.chunks().stream().map(BatchReport.Chunk::success).toList());
+        assertEquals(5, recordRepository.count());
+        assertEquals(4, report.inserted());
+    }
+
+    /**
+     * Проверяет, что параллельная вставка-или-обновление суммирует количество вставленных
+     * и обновленных записей по частям.
+     */
+    @Test
+    public void testParallelUpsertReportsInsertedAndUpdated() {
+        List<BankRecord> records = new ArrayList<>();
+        for (int i = 0; i < 5; i++) {
+            UUID id = i % 2 == 0 ? recordService.createBankRecord(record(null, "old " + i)).getId() : null;
+            records.add(record(id, "upserted " + i));
+        }
+
+        BatchReport report = parallelBatchExecutor.upsertAll(records);
+
+        assertEquals(5, report.processed());
+        assertEquals(2, report.inserted());
+        assertEquals(3, report.updated());
+        assertEquals(5, report.chunks().stream().mapToLong(c -> c.inserted() + c.updated()).sum());
+    }
+
+    private static BankRecord record(UUID id, String data) {
+        BankRecord record = new BankRecord();
+        record.setId(id);
+        record.setData(data);
+        return record;
+    }
+}
@@ -0,0 +1,150 @@
+package ru.vslukianenko.testnbki;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.web.servlet.AutoConfigureMockMvc;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.MediaType;
+import org.springframework.test.web.servlet.MockMvc;
+import ru.vslukianenko.testnbki.model.BankRecord;
+import ru.vslukianenko.testnbki.repo.BankRecordRepository;
+import ru.vslukianenko.testnbki.service.BankRecordService;
+
+import java.util.List;
+import java.util.UUID;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.get;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.put;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.content;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.header;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.jsonPath;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.status;
+
+/**
+ * Тесты версионирования записей банка: ETag, условные запросы и оптимистичная блокировка.
+ */
+@SpringBootTest
+@AutoConfigureMockMvc
+public class BankRecordVersionTest {
+
+    @Autowired
+    private MockMvc mockMvc;
+
+    @Autowired
+    private BankRecordRepository recordRepository;
+
+    @Autowired
+    private BankRecordService recordService;
+
+    @BeforeEach
+    public void setUp() {
+        recordRepository.deleteAll();
+    }
+
+    /**
+     * Проверяет, что GET возвращает ETag с версией, а повторный запрос с {@code If-None-Match} - статус 304 без тела.
+     */
+    @Test
+    public void testConditionalGetReturnsNotModified() throws Exception {
+        UUID id = createRecord("initial");
+
+        mockMvc.perform(get("/api/records/{id}", id))
+                .andExpect(status().isOk())
+                .andExpect(header().string(HttpHeaders.ETAG, "\"0\""))
+                .andExpect(jsonPath("$.version").value(0));
+
+        mockMvc.perform(get("/api/records/{id}", id).header(HttpHeaders.IF_NONE_MATCH, "\"0\""))
+                .andExpect(status().isNotModified())
+                .andExpect(content().string(""));
+
+        recordService.updateBankRecord(id, details("changed"));
+
+        mockMvc.perform(get("/api/records/{id}", id).header(HttpHeaders.IF_NONE_MATCH, "\"0\""))
+                .andExpect(status().isOk())
+                .andExpect(header().string(HttpHeaders.ETAG, "\"1\""))
+                .andExpect(jsonPath("$.data").value("changed"));
+    }
+
+    /**
+     * Проверяет, что PUT с актуальным {@code If-Match} обновляет запись, а с устаревшим - возвращает 412
+     * и не изменяет запись.
+     */
+    @Test
+    public void testConditionalPutRejectsStaleVersion() throws Exception {
+        UUID id = createRecord("initial");
+
+        mockMvc.perform(put("/api/records/{id}", id)
+                        .header(HttpHeaders.IF_MATCH, "\"0\"")
+                        .contentType(MediaType.APPLICATION_JSON)
+                        .content("{\"data\": \"first writer\"}"))
+                .andExpect(status().isOk())
+                .andExpect(header().string(HttpHeaders.ETAG, "\"1\""))
+                .andExpect(jsonPath("$.version").value(1));
+
+        mockMvc.perform(put("/api/records/{id}", id)
+                        .header(HttpHeaders.IF_MATCH, "\"0\"")
+                        .contentType(MediaType.APPLICATION_JSON)
+                        .content("{\"data\": \"second writer\"}"))
+                .andExpect(status().isPreconditionFailed());
+
+        mockMvc.perform(put("/api/records/{id}", UUID.randomUUID())
+                        .header(HttpHeaders.IF_MATCH, "\"0\"")
+                        .contentType(MediaType.APPLICATION_JSON)
+                        .content("{\"data\": \"missing\"}"))
+                .andExpect(status().isNotFound());
+
+        BankRecord stored = recordRepository.findById(id).orElseThrow();
+        assertEquals("first writer", stored.getData());
+        assertEquals(1L, stored.getVersion());
+    }
+
+    /**
+     * Проверяет, что массовое обновление без версий обновляет записи и увеличивает их версии,
+     * а массовый upsert увеличивает версии существующих записей.
+     */
+    @Test
+    public void testBatchOperationsIncrementVersions() {
+        UUID id = createRecord("initial");
+        BankRecord update = details("batch update");
+        update.setId(id);
+
+        recordService.batchUpdateBankRecords(List.of(update));
+        assertEquals(1L, recordRepository.findById(id).orElseThrow().getVersion());
+
+        BankRecord upsert = details("batch upsert");
+        upsert.setId(id);
+        recordService.batchUpsertBankRecords(List.of(upsert));
+        BankRecord stored = recordRepository.findById(id).orElseThrow();
+        assertEquals("batch upsert", stored.getData());
+        assertEquals(2L, stored.getVersion());
+    }
+
+    /**
+     * Проверяет, что массовое обновление с устаревшей версией отклоняется со статусом 412 целиком.
+     */
+    @Test
+    public void testBatchUpdateRejectsStaleVersion() throws Exception {
+        UUID id = createRecord("initial");
+        recordService.updateBankRecord(id, details("changed"));
+
+        mockMvc.perform(put("/api/records/list")
+                        .contentType(MediaType.APPLICATION_JSON)
+                        .content("[{\"id\": \"" + id + "\", \"data\": \"stale\", \"version\": 0}]"))
+                .andExpect(status().isPreconditionFailed());
+
+        assertEquals("changed", recordRepository.findById(id).orElseThrow().getData());
+    }
+
+    private UUID createRecord(String data) {
+        return recordService.createBankRecord(details(data)).getId();
+    }
+
+    private static BankRecord details(String data) {
+        BankRecord bankRecord = new BankRecord();
+        bankRecord.setData(data);
+        return bankRecord;
+    }
+}
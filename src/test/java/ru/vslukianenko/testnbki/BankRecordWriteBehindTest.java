@@ -0,0 +1,125 @@
+package ru.vslukianenko.testnbki;
+
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.web.servlet.AutoConfigureMockMvc;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.test.annotation.DirtiesContext;
+import org.springframework.test.web.servlet.MockMvc;
+import ru.vslukianenko.testnbki.model.BankRecord;
+import ru.vslukianenko.testnbki.repo.BankRecordRepository;
+import ru.vslukianenko.testnbki.service.BankRecordService;
+import ru.vslukianenko.testnbki.service.BankRecordWriteBehindQueue;
+
+import java.util.UUID;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.get;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.post;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.header;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.jsonPath;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.status;
+
+/**
+ * Тесты асинхронного режима создания записей банка.
+ *
+ * <p>Окно группировки задано заведомо большим, поэтому записи остаются в очереди до остановки,
+ * и тесты сохраняют их остановкой очереди. Остановленная очередь новых записей не принимает,
+ * поэтому контекст пересоздается для каждого теста.</p>
+ */
+@SpringBootTest(properties = {
+        "bank-records.write-behind.enabled=true",
+        "bank-records.write-behind.max-delay=1m"
+})
+@AutoConfigureMockMvc
+@DirtiesContext(classMode = DirtiesContext.ClassMode.AFTER_EACH_TEST_METHOD)
+public class BankRecordWriteBehindTest {
+
+    @Autowired
+    private MockMvc mockMvc;
+
+    @Autowired
+    private BankRecordRepository recordRepository;
+
+    @Autowired
+    private BankRecordWriteBehindQueue writeBehindQueue;
+
+    @Autowired
+    private BankRecordService recordService;
+
+    @Test
+    public void testAcceptedRecordsAreFlushedOnStop() throws Exception {
+        recordRepository.deleteAll();
+
+        mockMvc.perform(post("/api/records")
+                        .contentType("application/json")
+                        .content("{\"data\": \"async 1\"}"))
+                .andExpect(status().isAccepted())
+                .andExpect(header().exists("Location"))
+                .andExpect(jsonPath("$.id").isNotEmpty());
+        for (int i = 2; i <= 3; i++) {
+            BankRecord record = new BankRecord();
+            record.setData("async " + i);
+            assertTrue(writeBehindQueue.enqueue(record));
+        }
+
+        writeBehindQueue.stop();
+
+        assertEquals(3, recordRepository.count());
+    }
+
+    /**
+     * Проверяет, что запись, которую не удалось сохранить, попадает в очередь недоставленных записей
+     * и сохраняется повторной попыткой после устранения причины ошибки.
+     */
+    @Test
+    public void testFailedRecordsAreDeadLetteredAndRetried() throws Exception {
+        recordRepository.deleteAll();
+        UUID conflictingId = recordService.createBankRecord(record(null, "existing")).getId();
+
+        assertTrue(writeBehindQueue.enqueue(record(conflictingId, "duplicate")));
+        assertTrue(writeBehindQueue.enqueue(record(null, "fresh")));
+        writeBehindQueue.stop();
+
+        assertEquals(2, recordRepository.count());
+        mockMvc.perform(get("/api/records/write-behind/failed"))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$.length()").value(1))
+                .andExpect(jsonPath("$[0].record.id").value(conflictingId.toString()))
+                .andExpect(jsonPath("$[0].record.data").value("duplicate"))
+                .andExpect(jsonPath("$[0].error").isNotEmpty());
+
+        recordService.deleteBankRecord(conflictingId);
+        mockMvc.perform(post("/api/records/write-behind/failed/retry"))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$.length()").value(0));
+
+        assertEquals("duplicate", recordService.getBankRecordById(conflictingId).orElseThrow().getData());
+        assertTrue(writeBehindQueue.getFailed().isEmpty());
+    }
+
+    /**
+     * Проверяет, что запись, уже сохраненная с теми же данными (как в секции, зафиксированной до сбоя
+     * другой секции), при сохранении по одной не попадает в очередь недоставленных записей.
+     */
+    @Test
+    public void testAlreadyStoredRecordIsNotDeadLettered() throws Exception {
+        recordRepository.deleteAll();
+        UUID storedId = recordService.createBankRecord(record(null, "stored")).getId();
+
+        assertTrue(writeBehindQueue.enqueue(record(storedId, "stored")));
+        assertTrue(writeBehindQueue.enqueue(record(null, "fresh")));
+        writeBehindQueue.stop();
+
+        assertEquals(2, recordRepository.count());
+        assertTrue(writeBehindQueue.getFailed().isEmpty());
+    }
+
+    private static BankRecord record(UUID id, String data) {
+        BankRecord record = new BankRecord();
+        record.setId(id);
+        record.setData(data);
+        return record;
+    }
+}
@@ -0,0 +1,174 @@
+package ru.vslukianenko.testnbki;
+
+import com.fasterxml.jackson.core.type.TypeReference;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.dataformat.smile.SmileFactory;
+import com.fasterxml.jackson.dataformat.smile.SmileGenerator;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.web.servlet.AutoConfigureMockMvc;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.http.converter.cbor.MappingJackson2CborHttpMessageConverter;
+import org.springframework.http.converter.smile.MappingJackson2SmileHttpMessageConverter;
+import org.springframework.test.web.servlet.MockMvc;
+import ru.vslukianenko.testnbki.dto.LookupResult;
+import ru.vslukianenko.testnbki.model.BankRecord;
+import ru.vslukianenko.testnbki.repo.BankRecordRepository;
+
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.UUID;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.delete;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.post;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.content;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.status;
+
+/**
+ * Тесты обмена записями банка в двоичных форматах Smile и CBOR.
+ *
+ * <p>Запросы кодируются и ответы разбираются теми же {@link ObjectMapper}, что и конвертеры
+ * {@link ru.vslukianenko.testnbki.config.BinaryWireFormatConfiguration}; кодирование UUID проверяется
+ * по байтам ответов сервера.</p>
+ */
+@SpringBootTest
+@AutoConfigureMockMvc
+public class BinaryWireFormatTest {
+
+    private static final String SMILE = "application/x-jackson-smile";
+
+    private static final String CBOR = "application/cbor";
+
+    /**
+     * Маркер двоичного значения Smile и длина 16 в формате VInt.
+     */
+    private static final byte[] SMILE_UUID_PREFIX = {(byte) 0xFD, (byte) 0x90};
+
+    /**
+     * Заголовок байтовой строки CBOR длиной 16 (основной тип 2).
+     */
+    private static final byte[] CBOR_UUID_PREFIX = {0x50};
+
+    /**
+     * Флаг заголовка Smile: двоичные значения записаны без 7-битного кодирования.
+     */
+    private static final int SMILE_RAW_BINARY_FLAG = 0x04;
+
+    @Autowired
+    private MockMvc mockMvc;
+
+    @Autowired
+    private ObjectMapper jsonMapper;
+
+    private ObjectMapper smileMapper;
+
+    private ObjectMapper cborMapper;
+
+    @Autowired
+    private BankRecordRepository recordRepository;
+
+    @BeforeEach
+    public void setUp(@Autowired MappingJackson2SmileHttpMessageConverter smileConverter,
+                      @Autowired MappingJackson2CborHttpMessageConverter cborConverter) {
+        smileMapper = smileConverter.getObjectMapper();
+        cborMapper = cborConverter.getObjectMapper();
+        recordRepository.deleteAll();
+    }
+
+    /**
+     * Проверяет создание записей в Smile, поиск в CBOR и удаление в Smile.
+     */
+    @Test
+    public void testBatchEndpointsAcceptAndProduceBinaryFormats() throws Exception {
+        List<BankRecord> records = new ArrayList<>();
+        for (int i = 0; i < 3; i++) {
+            BankRecord record = new BankRecord();
+            record.setData("record " + i);
+            records.add(record);
+        }
+        mockMvc.perform(post("/api/records/list")
+                        .contentType(SMILE)
+                        .content(smileMapper.writeValueAsBytes(records)))
+                .andExpect(status().isOk());
+        List<UUID> ids = recordRepository.findAll().stream().map(BankRecord::getId).toList();
+        assertEquals(3, ids.size());
+
+        List<UUID> lookupIds = new ArrayList<>(ids);
+        lookupIds.add(UUID.randomUUID());
+        byte[] lookupResponse = mockMvc.perform(post("/api/records/lookup")
+                        .contentType(CBOR)
+                        .accept(CBOR)
+                        .content(cborMapper.writeValueAsBytes(lookupIds)))
+                .andExpect(status().isOk())
+                .andExpect(content().contentType(CBOR))
+                .andReturn().getResponse().getContentAsByteArray();
+        LookupResult lookup = cborMapper.readValue(lookupResponse, LookupResult.class);
+        assertEquals(3, lookup.found().size());
+        assertEquals(List.of(lookupIds.get(3)), lookup.missing());
+        for (UUID id : lookupIds) {
+            assertTrue(contains(lookupResponse, CBOR_UUID_PREFIX, id));
+        }
+
+        byte[] deleteResponse = mockMvc.perform(delete("/api/records/list")
+                        .contentType(SMILE)
+                        .accept(SMILE)
+                        .content(smileMapper.writeValueAsBytes(ids)))
+                .andExpect(status().isOk())
+                .andReturn().getResponse().getContentAsByteArray();
+        List<UUID> deleted = smileMapper.readValue(deleteResponse, new TypeReference<>() {
+        });
+        assertEquals(ids.size(), deleted.size());
+        assertEquals(0, recordRepository.count());
+        assertTrue((deleteResponse[3] & SMILE_RAW_BINARY_FLAG) != 0);
+        for (UUID id : ids) {
+            assertTrue(contains(deleteResponse, SMILE_UUID_PREFIX, id));
+        }
+    }
+
+    /**
+     * Проверяет настройки конвертеров приложения: Smile пишет двоичные значения без 7-битного
+     * кодирования, а UUID в обоих форматах кодируются 16 байтами и компактнее, чем в JSON.
+     */
+    @Test
+    public void testUuidsAreEncodedAsBinary() throws Exception {
+        assertFalse(((SmileFactory) smileMapper.getFactory()).isEnabled(SmileGenerator.Feature.ENCODE_BINARY_AS_7BIT));
+
+        List<UUID> ids = new ArrayList<>();
+        for (int i = 0; i < 100; i++) {
+            ids.add(UUID.randomUUID());
+        }
+        byte[] smile = smileMapper.writeValueAsBytes(ids);
+        byte[] cbor = cborMapper.writeValueAsBytes(ids);
+
+        assertTrue(contains(smile, SMILE_UUID_PREFIX, ids.get(0)));
+        assertTrue(contains(cbor, CBOR_UUID_PREFIX, ids.get(0)));
+        assertTrue(smile.length < jsonMapper.writeValueAsBytes(ids).length / 2);
+        assertTrue(cbor.length < jsonMapper.writeValueAsBytes(ids).length / 2);
+    }
+
+    /**
+     * Проверяет, что в данных есть UUID, записанный 16 байтами после заголовка {@code prefix}.
+     */
+    private static boolean contains(byte[] data, byte[] prefix, UUID id) {
+        byte[] needle = ByteBuffer.allocate(prefix.length + 16)
+                .put(prefix)
+                .putLong(id.getMostSignificantBits())
+                .putLong(id.getLeastSignificantBits())
+                .array();
+        outer:
+        for (int i = 0; i + needle.length <= data.length; i++) {
+            for (int j = 0; j < needle.length; j++) {
+                if (data[i + j] != needle[j]) {
+                    continue outer;
+                }
+            }
+            return true;
+        }
+        return false;
+    }
+}
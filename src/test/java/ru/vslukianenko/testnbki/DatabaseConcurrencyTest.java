@@ -0,0 +1,74 @@
+package ru.vslukianenko.testnbki;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.condition.EnabledForJreRange;
+import org.junit.jupiter.api.condition.JRE;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.boot.test.context.runner.ApplicationContextRunner;
+import org.springframework.core.NestedExceptionUtils;
+import ru.vslukianenko.testnbki.config.ConcurrencyLimitedDataSource;
+import ru.vslukianenko.testnbki.config.VirtualThreadsConfiguration;
+
+import javax.sql.DataSource;
+import java.sql.Connection;
+import java.sql.SQLTransientConnectionException;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertInstanceOf;
+import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * Тесты ограничения количества одновременных соединений с базой данных.
+ */
+@SpringBootTest(properties = {
+        "bank-records.db-concurrency.max-concurrent=2",
+        "bank-records.db-concurrency.acquire-timeout=100ms"
+})
+public class DatabaseConcurrencyTest {
+
+    @Autowired
+    private DataSource dataSource;
+
+    /**
+     * Проверяет, что соединение сверх лимита не выдается, а закрытие соединения возвращает разрешение.
+     */
+    @Test
+    public void testConnectionsAreLimitedAndPermitsReleasedOnClose() throws Exception {
+        ConcurrencyLimitedDataSource limited = assertInstanceOf(ConcurrencyLimitedDataSource.class, dataSource);
+
+        try (Connection first = dataSource.getConnection()) {
+            Connection second = dataSource.getConnection();
+            assertEquals(0, limited.getAvailablePermits());
+            assertThrows(SQLTransientConnectionException.class, dataSource::getConnection);
+
+            second.close();
+            second.close();
+            try (Connection third = dataSource.getConnection()) {
+                assertEquals(0, limited.getAvailablePermits());
+            }
+        }
+        assertEquals(2, limited.getAvailablePermits());
+    }
+
+    /**
+     * Проверяет, что на Java до 21 запрос режима виртуальных потоков завершает запуск ошибкой,
+     * а не подменяется платформенными потоками.
+     */
+    @Test
+    @EnabledForJreRange(max = JRE.JAVA_20)
+    public void testVirtualThreadsRequireJava21() {
+        ApplicationContextRunner runner = new ApplicationContextRunner()
+                .withUserConfiguration(VirtualThreadsConfiguration.class);
+
+        runner.withPropertyValues("spring.threads.virtual.enabled=true").run(context -> {
+            assertNotNull(context.getStartupFailure());
+            assertTrue(NestedExceptionUtils.getMostSpecificCause(context.getStartupFailure()).getMessage()
+                    .contains("requires Java 21+"));
+        });
+        runner.run(context -> assertNull(context.getStartupFailure()));
+    }
+}
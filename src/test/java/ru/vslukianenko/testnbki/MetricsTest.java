@@ -0,0 +1,53 @@
+package ru.vslukianenko.testnbki;
+
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.actuate.observability.AutoConfigureObservability;
+import org.springframework.boot.test.autoconfigure.web.servlet.AutoConfigureMockMvc;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.http.MediaType;
+import org.springframework.test.web.servlet.MockMvc;
+
+import static org.hamcrest.Matchers.containsString;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.get;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.post;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.content;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.status;
+
+/**
+ * Тесты публикации метрик контроллера, сервиса и стадий работы с базой данных.
+ */
+@SpringBootTest
+@AutoConfigureMockMvc
+@AutoConfigureObservability
+public class MetricsTest {
+
+    @Autowired
+    private MockMvc mockMvc;
+
+    /**
+     * Проверяет, что после вызова эндпоинтов метрики всех уровней доступны в формате Prometheus.
+     */
+    @Test
+    public void testHotPathMetricsAreScrapable() throws Exception {
+        mockMvc.perform(post("/api/records/list")
+                        .contentType(MediaType.APPLICATION_JSON)
+                        .content("[{\"data\": \"record 1\"}, {\"data\": \"record 2\"}]"))
+                .andExpect(status().is2xxSuccessful());
+        mockMvc.perform(get("/api/records/count"))
+                .andExpect(status().isOk());
+
+        mockMvc.perform(get("/actuator/prometheus"))
+                .andExpect(status().isOk())
+                .andExpect(content().string(containsString("http_server_requests_seconds_bucket{")))
+                .andExpect(content().string(containsString("uri=\"/api/records/list\"")))
+                .andExpect(content().string(containsString(
+                        "bank_records_service_seconds{class=\"ru.vslukianenko.testnbki.service.BankRecordService\",exception=\"none\",method=\"batchCreateBankRecords\",quantile=\"0.99\"")))
+                .andExpect(content().string(containsString(
+                        "bank_records_persistence_stage_seconds_count{operation=\"batchCreateBankRecords\",stage=\"flush\"}")))
+                .andExpect(content().string(containsString("bank_records_persistence_batch_size_count")))
+                .andExpect(content().string(containsString("hibernate_statements_total")))
+                .andExpect(content().string(containsString("hikaricp_connections_acquire_seconds")))
+                .andExpect(content().string(containsString("bank_records_db_concurrency_acquire_seconds")));
+    }
+}
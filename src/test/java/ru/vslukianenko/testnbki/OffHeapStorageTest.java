@@ -0,0 +1,157 @@
+package ru.vslukianenko.testnbki;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.context.properties.EnableConfigurationProperties;
+import org.springframework.boot.test.autoconfigure.web.servlet.AutoConfigureMockMvc;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.boot.test.context.runner.ApplicationContextRunner;
+import org.springframework.core.NestedExceptionUtils;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.MediaType;
+import org.springframework.test.context.DynamicPropertyRegistry;
+import org.springframework.test.context.DynamicPropertySource;
+import org.springframework.test.web.servlet.MockMvc;
+import ru.vslukianenko.testnbki.config.BankRecordCompressionProperties;
+import ru.vslukianenko.testnbki.config.BankRecordStorageProperties;
+import ru.vslukianenko.testnbki.config.OffHeapStorageConfiguration;
+import ru.vslukianenko.testnbki.model.BankRecord;
+import ru.vslukianenko.testnbki.repo.BankRecordRepository;
+import ru.vslukianenko.testnbki.repo.offheap.OffHeapBankRecordStore;
+import ru.vslukianenko.testnbki.service.BankRecordSearchService;
+import ru.vslukianenko.testnbki.service.BankRecordService;
+
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.UUID;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.get;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.put;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.header;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.jsonPath;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.status;
+
+/**
+ * Тесты работы сервиса записей банка с хранилищем вне кучи вместо JPA.
+ */
+@SpringBootTest
+@AutoConfigureMockMvc
+public class OffHeapStorageTest {
+
+    @TempDir
+    static Path directory;
+
+    @Autowired
+    private MockMvc mockMvc;
+
+    @Autowired
+    private BankRecordService recordService;
+
+    @Autowired
+    private BankRecordSearchService searchService;
+
+    @Autowired
+    private BankRecordRepository recordRepository;
+
+    @Autowired
+    private OffHeapBankRecordStore store;
+
+    @DynamicPropertySource
+    static void storageProperties(DynamicPropertyRegistry registry) {
+        registry.add("bank-records.storage.mode", () -> "off-heap");
+        registry.add("bank-records.storage.off-heap.log-path", () -> directory.resolve("records.log").toString());
+        registry.add("bank-records.search.full-text-enabled", () -> "true");
+    }
+
+    /**
+     * Проверяет, что хранилище вне кучи не запускается со сжатием данных, которое оно не применяет.
+     */
+    @Test
+    public void testCompressionIsRejected() {
+        new ApplicationContextRunner()
+                .withUserConfiguration(StorageProperties.class, OffHeapStorageConfiguration.class)
+                .withPropertyValues("bank-records.storage.mode=off-heap",
+                        "bank-records.storage.off-heap.log-path=" + directory.resolve("compressed.log"),
+                        "bank-records.compression.enabled=true")
+                .run(context -> assertTrue(NestedExceptionUtils.getMostSpecificCause(context.getStartupFailure())
+                        .getMessage().contains("Off-heap storage does not compress record data")));
+    }
+
+    @EnableConfigurationProperties({BankRecordStorageProperties.class, BankRecordCompressionProperties.class})
+    static class StorageProperties {
+    }
+
+    @BeforeEach
+    public void setUp() {
+        recordService.batchDeleteBankRecords(recordService.getBankRecordsPage(null, Integer.MAX_VALUE).stream()
+                .map(BankRecord::getId)
+                .toList());
+    }
+
+    /**
+     * Проверяет, что операции сервиса и API выполняются в хранилище вне кучи, а не в базе данных JPA.
+     */
+    @Test
+    public void testServiceUsesOffHeapStore() throws Exception {
+        long jpaRecords = recordRepository.count();
+        long logSize = store.getLogSize();
+        UUID id = recordService.createBankRecord(details("initial")).getId();
+
+        mockMvc.perform(get("/api/records/{id}", id))
+                .andExpect(status().isOk())
+                .andExpect(header().string(HttpHeaders.ETAG, "\"0\""))
+                .andExpect(jsonPath("$.data").value("initial"));
+        mockMvc.perform(put("/api/records/{id}", id)
+                        .header(HttpHeaders.IF_MATCH, "\"0\"")
+                        .contentType(MediaType.APPLICATION_JSON)
+                        .content("{\"data\": \"changed\"}"))
+                .andExpect(status().isOk())
+                .andExpect(header().string(HttpHeaders.ETAG, "\"1\""));
+        mockMvc.perform(put("/api/records/{id}", id)
+                        .header(HttpHeaders.IF_MATCH, "\"0\"")
+                        .contentType(MediaType.APPLICATION_JSON)
+                        .content("{\"data\": \"stale\"}"))
+                .andExpect(status().isPreconditionFailed());
+
+        assertEquals(jpaRecords, recordRepository.count());
+        assertTrue(store.getLogSize() > logSize);
+        assertTrue(recordService.deleteBankRecord(id));
+        assertTrue(recordService.getBankRecordById(id).isEmpty());
+    }
+
+    /**
+     * Проверяет массовые операции и поиск поверх хранилища вне кучи.
+     */
+    @Test
+    public void testBatchOperationsAndSearch() {
+        List<BankRecord> records = new ArrayList<>();
+        for (int i = 0; i < 50; i++) {
+            records.add(details(i % 2 == 0 ? "apple pie " + i : "banana split " + i));
+        }
+        recordService.batchCreateBankRecords(records);
+        assertEquals(50, recordService.countBankRecords());
+
+        BankRecord update = details("apple jam");
+        update.setId(records.get(1).getId());
+        recordService.batchUpdateBankRecords(List.of(update));
+
+        assertEquals(26, searchService.findByDataPrefix("apple", null, 100).records().size());
+        assertEquals(1, searchService.findByData("apple jam", null, 10).records().size());
+        assertEquals(1, searchService.searchFullText("JAM apple", null, 10).records().size());
+
+        List<UUID> ids = records.stream().map(BankRecord::getId).toList();
+        assertEquals(50, recordService.batchDeleteBankRecords(ids).size());
+        assertEquals(0, recordService.countBankRecords());
+    }
+
+    private static BankRecord details(String data) {
+        BankRecord bankRecord = new BankRecord();
+        bankRecord.setData(data);
+        return bankRecord;
+    }
+}
@@ -0,0 +1,192 @@
+package ru.vslukianenko.testnbki;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.dao.OptimisticLockingFailureException;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.datasource.DriverManagerDataSource;
+import org.springframework.test.util.ReflectionTestUtils;
+import ru.vslukianenko.testnbki.config.ConcurrencyLimitedDataSource;
+import ru.vslukianenko.testnbki.dto.SearchPage;
+import ru.vslukianenko.testnbki.model.BankRecord;
+import ru.vslukianenko.testnbki.repo.PartitionedBankRecordStore;
+import ru.vslukianenko.testnbki.service.BankRecordSearchService;
+import ru.vslukianenko.testnbki.service.BankRecordService;
+
+import javax.sql.DataSource;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.UUID;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * Тесты секционированного хранилища записей банка на трех локальных базах данных H2.
+ */
+@SpringBootTest(properties = {
+        "bank-records.storage.mode=partitioned",
+        "bank-records.storage.partitions[0].url=" + PartitionedStorageTest.URL_PREFIX + "0;DB_CLOSE_DELAY=-1",
+        "bank-records.storage.partitions[1].url=" + PartitionedStorageTest.URL_PREFIX + "1;DB_CLOSE_DELAY=-1",
+        "bank-records.storage.partitions[2].url=" + PartitionedStorageTest.URL_PREFIX + "2;DB_CLOSE_DELAY=-1"
+})
+public class PartitionedStorageTest {
+
+    static final String URL_PREFIX = "jdbc:h2:mem:partition-test-";
+
+    private static final int PARTITIONS = 3;
+
+    @Autowired
+    private BankRecordService recordService;
+
+    @Autowired
+    private BankRecordSearchService searchService;
+
+    @Autowired
+    private PartitionedBankRecordStore store;
+
+    private final List<JdbcTemplate> partitions = new ArrayList<>();
+
+    @BeforeEach
+    public void setUp() {
+        for (int i = 0; i < PARTITIONS; i++) {
+            JdbcTemplate partition = new JdbcTemplate(new DriverManagerDataSource(URL_PREFIX + i, "sa", ""));
+            partition.update("DELETE FROM bank_record");
+            partitions.add(partition);
+        }
+    }
+
+    /**
+     * Проверяет, что пулы соединений секций ограничены {@link ConcurrencyLimitedDataSource}.
+     */
+    @Test
+    public void testPartitionPoolsAreConcurrencyLimited() {
+        @SuppressWarnings("unchecked")
+        List<DataSource> dataSources = (List<DataSource>) ReflectionTestUtils.getField(store, "dataSources");
+
+        assertEquals(PARTITIONS, dataSources.size());
+        for (DataSource dataSource : dataSources) {
+            assertTrue(dataSource instanceof ConcurrencyLimitedDataSource);
+        }
+    }
+
+    /**
+     * Проверяет, что каждая запись хранится только в секции хеша своего идентификатора,
+     * а чтение списков и страниц объединяет все секции.
+     */
+    @Test
+    public void testRecordsAreRoutedByIdHash() {
+        List<BankRecord> records = records(300, "record");
+        recordService.batchCreateBankRecords(records);
+
+        for (int i = 0; i < PARTITIONS; i++) {
+            List<UUID> stored = partitions.get(i).queryForList("SELECT id FROM bank_record", UUID.class);
+            assertFalse(stored.isEmpty());
+            for (UUID id : stored) {
+                assertEquals(i, store.partitionOf(id));
+            }
+        }
+        assertEquals(300, recordService.countBankRecords());
+
+        List<UUID> ids = records.stream().map(BankRecord::getId).toList();
+        assertEquals(300, recordService.getBankRecordsByIds(ids, false).found().size());
+
+        Set<UUID> paged = new HashSet<>();
+        UUID after = null;
+        List<BankRecord> page;
+        while (!(page = recordService.getBankRecordsPage(after, 50)).isEmpty()) {
+            page.forEach(record -> paged.add(record.getId()));
+            after = page.get(page.size() - 1).getId();
+        }
+        assertEquals(new HashSet<>(ids), paged);
+    }
+
+    /**
+     * Проверяет операции с одной записью: создание, чтение, условное обновление и удаление.
+     */
+    @Test
+    public void testSingleRecordOperations() {
+        BankRecord created = recordService.createBankRecord(details("initial"));
+        UUID id = created.getId();
+        assertEquals(1, (int) partitions.get(store.partitionOf(id))
+                .queryForObject("SELECT COUNT(*) FROM bank_record WHERE id = ?", Integer.class, id));
+
+        assertEquals("initial", recordService.getBankRecordById(id).orElseThrow().getData());
+        assertEquals(1L, recordService.updateBankRecord(id, details("changed"), 0L).orElseThrow().getVersion());
+        assertThrows(OptimisticLockingFailureException.class,
+                () -> recordService.updateBankRecord(id, details("stale"), 0L));
+        assertEquals("changed", recordService.getBankRecordById(id).orElseThrow().getData());
+
+        assertTrue(recordService.deleteBankRecord(id));
+        assertTrue(recordService.getBankRecordById(id).isEmpty());
+    }
+
+    /**
+     * Проверяет массовое обновление с версиями и без, а также массовое удаление по всем секциям.
+     */
+    @Test
+    public void testBatchUpdateAndDeleteAcrossPartitions() {
+        List<BankRecord> records = records(30, "initial");
+        recordService.bulkInsertBankRecords(records);
+
+        List<BankRecord> updates = new ArrayList<>();
+        for (BankRecord record : records) {
+            BankRecord update = details("updated");
+            update.setId(record.getId());
+            updates.add(update);
+        }
+        recordService.batchUpdateBankRecords(updates);
+        List<UUID> ids = records.stream().map(BankRecord::getId).toList();
+        recordService.getBankRecordsByIds(ids, false).found().forEach(record -> {
+            assertEquals("updated", record.getData());
+            assertEquals(1L, record.getVersion());
+        });
+
+        BankRecord stale = details("stale");
+        stale.setId(ids.get(0));
+        stale.setVersion(0L);
+        assertThrows(OptimisticLockingFailureException.class, () -> recordService.batchUpdateBankRecords(List.of(stale)));
+        assertEquals("updated", recordService.getBankRecordById(ids.get(0)).orElseThrow().getData());
+
+        assertEquals(30, recordService.batchDeleteBankRecords(ids).size());
+        assertEquals(0, recordService.countBankRecords());
+    }
+
+    /**
+     * Проверяет, что keyset-поиск сливает страницы секций без пропусков и повторов.
+     */
+    @Test
+    public void testSearchMergesPartitionPages() {
+        recordService.bulkInsertBankRecords(records(20, "same"));
+
+        Set<UUID> found = new HashSet<>();
+        String cursor = null;
+        do {
+            SearchPage page = searchService.findByData("same", cursor, 3);
+            page.records().forEach(record -> assertTrue(found.add(record.getId())));
+            cursor = page.next();
+        } while (cursor != null);
+        assertEquals(20, found.size());
+        assertEquals(20, searchService.findByDataPrefix("sa", null, 100).records().size());
+    }
+
+    private static List<BankRecord> records(int count, String data) {
+        List<BankRecord> records = new ArrayList<>(count);
+        for (int i = 0; i < count; i++) {
+            records.add(details(data));
+        }
+        return records;
+    }
+
+    private static BankRecord details(String data) {
+        BankRecord bankRecord = new BankRecord();
+        bankRecord.setData(data);
+        return bankRecord;
+    }
+}
@@ -0,0 +1,329 @@
+package ru.vslukianenko.testnbki.repo.offheap;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.springframework.dao.OptimisticLockingFailureException;
+import ru.vslukianenko.testnbki.config.BankRecordStorageProperties;
+import ru.vslukianenko.testnbki.model.BankRecord;
+
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+import java.util.TreeSet;
+import java.util.UUID;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * Тесты хранилища записей вне кучи {@link OffHeapBankRecordStore}: воспроизведение журнала, сжатие
+ * и атомарность массовых операций.
+ */
+public class OffHeapBankRecordStoreTest {
+
+    @TempDir
+    private Path directory;
+
+    /**
+     * Проверяет, что после перезапуска хранилище восстанавливает записи и версии из журнала.
+     */
+    @Test
+    public void testLogIsReplayedAfterRestart() throws Exception {
+        List<BankRecord> records = records(100, "record");
+        List<UUID> ids;
+        Map<UUID, BankRecord> expected;
+        OffHeapBankRecordStore store = open();
+        try {
+            store.insertAll(records);
+            ids = records.stream().map(BankRecord::getId).toList();
+            store.updateIfVersionMatches(ids.get(0), "updated", 0L);
+            store.upsertAll(List.of(record(ids.get(1), "upserted")));
+            store.deleteAllByIds(ids.subList(90, 100));
+            expected = byId(store.findAllByIds(ids));
+        } finally {
+            store.destroy();
+        }
+
+        OffHeapBankRecordStore reopened = open();
+        try {
+            assertEquals(90, reopened.count());
+            Map<UUID, BankRecord> replayed = byId(reopened.findAllByIds(expected.keySet()));
+            assertEquals(expected.keySet(), replayed.keySet());
+            expected.forEach((id, record) -> {
+                assertEquals(record.getData(), replayed.get(id).getData());
+                assertEquals(record.getVersion(), replayed.get(id).getVersion());
+            });
+            assertEquals("updated", replayed.get(ids.get(0)).getData());
+            assertEquals(1L, replayed.get(ids.get(0)).getVersion());
+        } finally {
+            reopened.destroy();
+        }
+    }
+
+    /**
+     * Проверяет, что сжатие уменьшает журнал до актуальных записей и журнал после сжатия воспроизводится.
+     */
+    @Test
+    public void testCompactionShrinksLog() throws Exception {
+        List<BankRecord> records = records(100, "record");
+        OffHeapBankRecordStore store = open();
+        long compactedSize;
+        try {
+            store.insertAll(records);
+            for (int round = 1; round <= 20; round++) {
+                store.upsertAll(records(records, "round " + round));
+            }
+            long logSize = store.getLogSize();
+            store.compact();
+            compactedSize = store.getLogSize();
+            assertTrue(compactedSize * 10 < logSize, compactedSize + " vs " + logSize);
+            assertEquals("round 20", store.findAllByIds(List.of(records.get(0).getId())).get(0).getData());
+        } finally {
+            store.destroy();
+        }
+
+        OffHeapBankRecordStore reopened = open();
+        try {
+            assertEquals(compactedSize, reopened.getLogSize());
+            BankRecord first = reopened.findAllByIds(List.of(records.get(0).getId())).get(0);
+            assertEquals("round 20", first.getData());
+            assertEquals(20L, first.getVersion());
+        } finally {
+            reopened.destroy();
+        }
+    }
+
+    /**
+     * Проверяет, что недописанная запись в конце журнала отбрасывается при воспроизведении.
+     */
+    @Test
+    public void testTornTailIsDiscarded() throws Exception {
+        OffHeapBankRecordStore store = open();
+        long logSize;
+        try {
+            store.insertAll(records(10, "record"));
+            logSize = store.getLogSize();
+        } finally {
+            store.destroy();
+        }
+        Files.write(logFile(), new byte[]{0, 0, 0, 100, 1, 2, 3}, StandardOpenOption.APPEND);
+
+        OffHeapBankRecordStore reopened = open();
+        try {
+            assertEquals(10, reopened.count());
+            assertEquals(logSize, reopened.getLogSize());
+        } finally {
+            reopened.destroy();
+        }
+    }
+
+    /**
+     * Проверяет, что пакет, не дописанный в журнал до конца (аварийная остановка посреди записи),
+     * при воспроизведении отбрасывается целиком, а не применяется частично.
+     */
+    @Test
+    public void testBatchTornMidWriteIsDiscardedWhole() throws Exception {
+        List<BankRecord> first = records(10, "first");
+        List<BankRecord> second = records(10, "second");
+        OffHeapBankRecordStore store = open();
+        long firstBatchLogSize;
+        long logSize;
+        try {
+            store.insertAll(first);
+            firstBatchLogSize = store.getLogSize();
+            store.insertAll(second);
+            logSize = store.getLogSize();
+        } finally {
+            store.destroy();
+        }
+        try (FileChannel channel = FileChannel.open(logFile(), StandardOpenOption.WRITE)) {
+            channel.truncate(logSize - 20);
+        }
+
+        OffHeapBankRecordStore reopened = open();
+        try {
+            assertEquals(10, reopened.count());
+            assertEquals(10, reopened.findAllByIds(first.stream().map(BankRecord::getId).toList()).size());
+            assertTrue(reopened.findAllByIds(second.stream().map(BankRecord::getId).toList()).isEmpty());
+            assertEquals(firstBatchLogSize, reopened.getLogSize());
+        } finally {
+            reopened.destroy();
+        }
+    }
+
+    /**
+     * Проверяет, что массовое обновление с устаревшей версией не применяет ни одной записи.
+     */
+    @Test
+    public void testStaleVersionRejectsWholeBatch() throws Exception {
+        OffHeapBankRecordStore store = open();
+        try {
+            List<BankRecord> records = records(3, "initial");
+            store.insertAll(records);
+            List<BankRecord> updates = records(records, "updated");
+            updates.forEach(update -> update.setVersion(0L));
+            updates.get(2).setVersion(5L);
+
+            assertThrows(OptimisticLockingFailureException.class, () -> store.updateAll(updates));
+            store.findAllByIds(records.stream().map(BankRecord::getId).toList())
+                    .forEach(record -> assertTrue(record.getData().startsWith("initial")));
+        } finally {
+            store.destroy();
+        }
+    }
+
+    /**
+     * Сверяет индекс на примитивных массивах с {@link HashMap} на случайных вставках и удалениях.
+     */
+    @Test
+    public void testIndexMatchesHashMap() {
+        UuidLongHashMap index = new UuidLongHashMap(16);
+        Map<UUID, Long> expected = new HashMap<>();
+        List<UUID> keys = new ArrayList<>();
+        Random random = new Random(42);
+        for (int i = 0; i < 2000; i++) {
+            keys.add(new UUID(random.nextInt(100), random.nextLong()));
+        }
+        for (int i = 0; i < 100_000; i++) {
+            UUID key = keys.get(random.nextInt(keys.size()));
+            if (random.nextInt(3) == 0) {
+                Long removed = expected.remove(key);
+                assertEquals(removed == null ? UuidLongHashMap.NO_VALUE : removed, index.remove(key));
+            } else {
+                long value = random.nextInt(1_000_000);
+                Long previous = expected.put(key, value);
+                assertEquals(previous == null ? UuidLongHashMap.NO_VALUE : previous, index.put(key, value));
+            }
+        }
+        assertEquals(expected.size(), index.size());
+        for (UUID key : keys) {
+            assertEquals(expected.getOrDefault(key, UuidLongHashMap.NO_VALUE), index.get(key));
+        }
+    }
+
+    /**
+     * Сверяет упорядоченный индекс идентификаторов с {@link TreeSet} на случайных вставках, удалениях
+     * и очистках, включая UUID с отрицательными половинами (порядок H2 беззнаковый).
+     */
+    @Test
+    public void testSortedIdsMatchTreeSet() {
+        Comparator<UUID> unsigned = Comparator.comparing(UUID::getMostSignificantBits, Long::compareUnsigned)
+                .thenComparing(UUID::getLeastSignificantBits, Long::compareUnsigned);
+        SortedUuidIndex sortedIds = new SortedUuidIndex();
+        UuidLongHashMap live = new UuidLongHashMap(16);
+        TreeSet<UUID> expected = new TreeSet<>(unsigned);
+        List<UUID> keys = new ArrayList<>();
+        Random random = new Random(42);
+        for (int i = 0; i < 5000; i++) {
+            keys.add(new UUID(random.nextLong(), random.nextLong()));
+        }
+        for (int i = 0; i < 50_000; i++) {
+            UUID key = keys.get(random.nextInt(keys.size()));
+            if (random.nextInt(3) == 0) {
+                live.remove(key);
+                expected.remove(key);
+            } else if (live.put(key, 0) == UuidLongHashMap.NO_VALUE) {
+                sortedIds.add(key);
+                expected.add(key);
+            }
+            if (i % 10_000 == 0) {
+                sortedIds.purge(live);
+            }
+            if (i % 1000 == 0) {
+                UUID after = random.nextBoolean() ? null : keys.get(random.nextInt(keys.size()));
+                List<UUID> page = new ArrayList<>();
+                sortedIds.forEachAfter(after, id -> {
+                    if (live.get(id) != UuidLongHashMap.NO_VALUE) {
+                        page.add(id);
+                    }
+                    return page.size() < 50;
+                });
+                List<UUID> expectedPage = (after == null ? expected : expected.tailSet(after, false)).stream()
+                        .limit(50)
+                        .toList();
+                assertEquals(expectedPage, page);
+            }
+        }
+    }
+
+    /**
+     * Проверяет постраничный обход хранилища по идентификаторам после удалений и сжатия.
+     */
+    @Test
+    public void testPagesFollowIdOrderAfterDeletesAndCompaction() throws Exception {
+        OffHeapBankRecordStore store = open();
+        try {
+            List<BankRecord> records = records(3000, "record");
+            store.insertAll(records);
+            List<UUID> deleted = records.stream().map(BankRecord::getId).filter(id -> id.hashCode() % 3 == 0).toList();
+            store.deleteAllByIds(deleted);
+
+            List<UUID> beforeCompaction = allPages(store);
+            store.compact();
+            List<UUID> afterCompaction = allPages(store);
+
+            assertEquals(3000 - deleted.size(), beforeCompaction.size());
+            assertEquals(beforeCompaction, afterCompaction);
+            assertEquals(records.stream().map(BankRecord::getId).filter(id -> !deleted.contains(id)).sorted().toList(),
+                    beforeCompaction);
+        } finally {
+            store.destroy();
+        }
+    }
+
+    private static List<UUID> allPages(OffHeapBankRecordStore store) {
+        List<UUID> ids = new ArrayList<>();
+        UUID after = null;
+        List<BankRecord> page;
+        while (!(page = store.findPageAfter(after, 100)).isEmpty()) {
+            page.forEach(record -> ids.add(record.getId()));
+            after = ids.get(ids.size() - 1);
+        }
+        return ids;
+    }
+
+    private OffHeapBankRecordStore open() {
+        BankRecordStorageProperties.OffHeap properties = new BankRecordStorageProperties.OffHeap();
+        properties.setLogPath(logFile());
+        properties.setCompactionInterval(Duration.ofHours(1));
+        return new OffHeapBankRecordStore(properties);
+    }
+
+    private Path logFile() {
+        return directory.resolve("records.log");
+    }
+
+    private static List<BankRecord> records(int count, String data) {
+        List<BankRecord> records = new ArrayList<>(count);
+        for (int i = 0; i < count; i++) {
+            records.add(record(null, data + " " + i));
+        }
+        return records;
+    }
+
+    private static List<BankRecord> records(List<BankRecord> existing, String data) {
+        return existing.stream().map(record -> record(record.getId(), data)).toList();
+    }
+
+    private static BankRecord record(UUID id, String data) {
+        BankRecord record = new BankRecord();
+        record.setId(id);
+        record.setData(data);
+        return record;
+    }
+
+    private static Map<UUID, BankRecord> byId(List<BankRecord> records) {
+        Map<UUID, BankRecord> byId = new HashMap<>();
+        records.forEach(record -> byId.put(record.getId(), record));
+        return byId;
+    }
+}